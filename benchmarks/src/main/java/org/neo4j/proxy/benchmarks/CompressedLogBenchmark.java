@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.BinaryDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.BinarySerializer;
+import org.neo4j.proxy.eventmodel.serialization.Compression;
+import org.neo4j.proxy.eventmodel.serialization.JacksonDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.JacksonSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of writing and reading generated event logs with each serializer, comparing the compressed
+ * binary formats with the uncompressed JSON the recorder writes by default. The events counter reports
+ * events per second and the bytes counter bytes written per second, so their ratio is the size of an event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressedLogBenchmark {
+
+    @Param({"WRITE", "TRAVERSAL", "ITERATOR"})
+    public EventLogGenerator.Mix mix;
+
+    @Param({"jackson", "binary", "lz4", "deflate"})
+    public String format;
+
+    @Param({"10000"})
+    public int size;
+
+    private List<Event> events;
+    private byte[] log;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long events;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void generateLog() {
+        String json = new EventLogGenerator(mix, size).generate();
+        events = new ArrayList<Event>();
+        for (Event event : new JacksonDeserializer(new BufferedReader(new StringReader(json)))) {
+            events.add(event);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(output);
+        log = output.toByteArray();
+    }
+
+    @Benchmark
+    public void record(Counters counters) {
+        final Counters counting = counters;
+        write(new OutputStream() {
+            public void write(int b) {
+                counting.bytes++;
+            }
+
+            public void write(byte[] b, int off, int len) {
+                counting.bytes += len;
+            }
+        });
+        counters.events += events.size();
+    }
+
+    @Benchmark
+    public void read(Counters counters, Blackhole blackhole) {
+        Iterable<Event> reader;
+        if ("jackson".equals(format)) {
+            reader = new JacksonDeserializer(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(log))));
+        } else {
+            reader = new BinaryDeserializer(new ByteArrayInputStream(log));
+        }
+        for (Event event : reader) {
+            blackhole.consume(event);
+            counters.events++;
+        }
+        counters.bytes += log.length;
+    }
+
+    private void write(OutputStream output) {
+        if ("jackson".equals(format)) {
+            JacksonSerializer serializer = new JacksonSerializer(output);
+            writeEvents(serializer);
+            serializer.flush();
+        } else {
+            BinarySerializer serializer = new BinarySerializer(output, compression(), BinarySerializer.DEFAULT_EVENTS_PER_BLOCK);
+            writeEvents(serializer);
+            serializer.flush();
+        }
+    }
+
+    private void writeEvents(Event.Listener serializer) {
+        for (Event event : events) {
+            serializer.onEvent(event);
+        }
+    }
+
+    private Compression compression() {
+        if ("binary".equals(format)) {
+            return Compression.NONE;
+        } else if ("lz4".equals(format)) {
+            return Compression.LZ4;
+        } else if ("deflate".equals(format)) {
+            return Compression.DEFLATE;
+        }
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+}
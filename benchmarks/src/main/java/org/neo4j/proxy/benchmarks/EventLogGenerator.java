@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.JacksonSerializer;
+import org.neo4j.proxy.recording.RecordingGraphDatabase;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Generates event logs by recording a synthetic workload against a fresh database, so that the logs can be
+ * played back against another fresh database. The workloads never delete, so every recorded id stays valid.
+ */
+public class EventLogGenerator {
+
+    public enum Mix {
+        /**
+         * Creates nodes, sets properties and connects each node to the one before it.
+         */
+        WRITE,
+        /**
+         * Builds a chain, then follows single relationships from randomly chosen nodes.
+         */
+        TRAVERSAL,
+        /**
+         * Builds a chain, then iterates over relationships and property keys.
+         */
+        ITERATOR
+    }
+
+    private static final int CHAIN_LENGTH = 100;
+    private static final int OPERATIONS_PER_TRANSACTION = 100;
+
+    private final Mix mix;
+    private final int size;
+    private final Random random = new Random(42);
+    private int events;
+
+    public EventLogGenerator(Mix mix, int size) {
+        this.mix = mix;
+        this.size = size;
+    }
+
+    /**
+     * @return a JSON event log of at least the requested size
+     */
+    public String generate() {
+        File storeDir = GraphFixture.temporaryStoreDir("event-log");
+        StringWriter log = new StringWriter();
+        final JacksonSerializer serializer = new JacksonSerializer(new PrintWriter(log));
+        GraphDatabaseService database = RecordingGraphDatabase.create(new Event.Listener() {
+            public void onEvent(Event event) {
+                events++;
+                serializer.onEvent(event);
+            }
+        }, new EmbeddedGraphDatabase(storeDir.getAbsolutePath()));
+        try {
+            long[] nodeIds = GraphFixture.createChain(database, CHAIN_LENGTH);
+            while (events < size) {
+                Transaction transaction = database.beginTx();
+                for (int i = 0; i < OPERATIONS_PER_TRANSACTION; i++) {
+                    operation(database, nodeIds);
+                }
+                transaction.success();
+                transaction.finish();
+            }
+        } finally {
+            database.shutdown();
+            GraphFixture.delete(storeDir);
+        }
+        serializer.flush();
+        return log.toString();
+    }
+
+    private void operation(GraphDatabaseService database, long[] nodeIds) {
+        Node node = database.getNodeById(nodeIds[random.nextInt(nodeIds.length)]);
+        switch (mix) {
+            case WRITE:
+                Node created = database.createNode();
+                created.setProperty("name", "generated" + events);
+                created.setProperty("weight", random.nextDouble());
+                node.createRelationshipTo(created, GraphFixture.Types.NEXT);
+                break;
+            case TRAVERSAL:
+                Relationship relationship = node.getSingleRelationship(GraphFixture.Types.NEXT, Direction.OUTGOING);
+                if (relationship != null) {
+                    relationship.getOtherNode(node).getProperty("name");
+                }
+                break;
+            case ITERATOR:
+                for (Relationship each : node.getRelationships()) {
+                    each.getType();
+                }
+                Iterator<String> keys = node.getPropertyKeys().iterator();
+                while (keys.hasNext()) {
+                    node.getProperty(keys.next());
+                }
+                break;
+        }
+    }
+}
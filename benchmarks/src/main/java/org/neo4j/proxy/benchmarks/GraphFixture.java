@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.graphdb.*;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A database holding a chain of nodes, each connected to the next by a NEXT relationship.
+ */
+public class GraphFixture {
+
+    public enum Types implements RelationshipType {
+        NEXT
+    }
+
+    public static File temporaryStoreDir(String prefix) {
+        try {
+            File storeDir = File.createTempFile(prefix, "");
+            if (!storeDir.delete() || !storeDir.mkdirs()) {
+                throw new IOException("Could not create store directory " + storeDir);
+            }
+            return storeDir;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static long[] createChain(GraphDatabaseService database, int length) {
+        long[] nodeIds = new long[length];
+        Transaction transaction = database.beginTx();
+        try {
+            Node previous = null;
+            for (int i = 0; i < length; i++) {
+                Node node = database.createNode();
+                node.setProperty("name", "node" + i);
+                node.setProperty("position", i);
+                if (previous != null) {
+                    previous.createRelationshipTo(node, Types.NEXT);
+                }
+                nodeIds[i] = node.getId();
+                previous = node;
+            }
+            transaction.success();
+        } finally {
+            transaction.finish();
+        }
+        return nodeIds;
+    }
+
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.JacksonAdaptor;
+import org.neo4j.proxy.eventmodel.serialization.JacksonDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.JacksonSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of writing JSON by building a JsonNode tree, and by streaming through the serializer's
+ * generator, either straight to a stream or line by line to a PrintWriter. Run with {@code -prof gc} to see
+ * the bytes allocated per event, which is what streaming saves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private Event event;
+    private JacksonSerializer streamSerializer;
+    private JacksonSerializer writerSerializer;
+
+    @Setup
+    public void createEvent() {
+        String json = new EventLogGenerator(EventLogGenerator.Mix.WRITE, 100).generate();
+        for (Event generated : new JacksonDeserializer(new BufferedReader(new StringReader(json)))) {
+            if ("setProperty".equals(generated.getMethodName())) {
+                event = generated;
+                break;
+            }
+        }
+        streamSerializer = new JacksonSerializer(new OutputStream() {
+            public void write(int b) {
+            }
+
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        writerSerializer = new JacksonSerializer(new PrintWriter(new Writer() {
+            public void write(char[] buffer, int off, int len) {
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        }));
+    }
+
+    @Benchmark
+    public void tree(Blackhole blackhole) {
+        blackhole.consume(JacksonAdaptor.serializeEvent(event).toString());
+    }
+
+    @Benchmark
+    public void streamToOutputStream() {
+        streamSerializer.onEvent(event);
+    }
+
+    @Benchmark
+    public void streamToPrintWriter() {
+        writerSerializer.onEvent(event);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.proxy.playback.PlaybackState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the lookups made for every parameter during playback, once the state holds many captured results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlaybackStateBenchmark {
+
+    @Param({"100000"})
+    public int captured;
+
+    private File storeDir;
+    private EmbeddedGraphDatabase database;
+    private PlaybackState playbackState;
+    private long[] nodeIds;
+    private int next;
+
+    @Setup
+    public void captureResults() {
+        storeDir = GraphFixture.temporaryStoreDir("playback-state");
+        database = new EmbeddedGraphDatabase(storeDir.getAbsolutePath());
+        nodeIds = GraphFixture.createChain(database, captured);
+        playbackState = new PlaybackState(database);
+        for (long nodeId : nodeIds) {
+            playbackState.capture(database.getNodeById(nodeId));
+            playbackState.capture(Collections.emptyList());
+        }
+    }
+
+    @TearDown
+    public void deleteDatabase() {
+        database.shutdown();
+        GraphFixture.delete(storeDir);
+    }
+
+    @Benchmark
+    public Node getNode() {
+        next = (next + 1) % nodeIds.length;
+        return playbackState.getNode(nodeIds[next]);
+    }
+
+    @Benchmark
+    public Object findBySurrogateIdentifier() {
+        next = (next + 1) % nodeIds.length;
+        return playbackState.findBySurrogateIdentifier(Iterable.class, next);
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.JacksonSerializer;
+import org.neo4j.proxy.recording.RecordingGraphDatabase;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation cost of recording, against the raw database. Writes are committed in batches so that
+ * transaction overhead is amortised equally across all configurations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecordingOverheadBenchmark {
+
+    private static final int CHAIN_LENGTH = 1000;
+    private static final int OPERATIONS_PER_TRANSACTION = 1000;
+    private static final int ACCUMULATED_EVENTS = 100000;
+
+    @Param({"raw", "noop", "memory", "jackson"})
+    public String listener;
+
+    @Param({"proxy", "wrapper"})
+    public String recording;
+
+    private File storeDir;
+    private EmbeddedGraphDatabase delegate;
+    private GraphDatabaseService database;
+    private long[] nodeIds;
+    private int next;
+    private Transaction transaction;
+    private int operationsInTransaction;
+
+    @Setup
+    public void createDatabase() {
+        storeDir = GraphFixture.temporaryStoreDir("recording-overhead");
+        delegate = new EmbeddedGraphDatabase(storeDir.getAbsolutePath());
+        nodeIds = GraphFixture.createChain(delegate, CHAIN_LENGTH);
+
+        if ("raw".equals(listener)) {
+            database = delegate;
+        } else if ("proxy".equals(recording)) {
+            database = RecordingGraphDatabase.create(createListener(), delegate);
+        } else {
+            database = RecordingGraphDatabase.createWithWrappers(createListener(), delegate);
+        }
+    }
+
+    private Event.Listener createListener() {
+        if ("noop".equals(listener)) {
+            return new Event.Listener() {
+                public void onEvent(Event event) {
+                }
+            };
+        }
+        if ("memory".equals(listener)) {
+            return new Event.Listener() {
+                private final List<Event> events = new ArrayList<Event>();
+
+                public void onEvent(Event event) {
+                    if (events.size() == ACCUMULATED_EVENTS) {
+                        events.clear();
+                    }
+                    events.add(event);
+                }
+            };
+        }
+        if ("jackson".equals(listener)) {
+            return new JacksonSerializer(new OutputStream() {
+                public void write(int b) {
+                }
+
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+        }
+        throw new IllegalArgumentException("Unknown listener: " + listener);
+    }
+
+    @Setup(Level.Iteration)
+    public void beginTransaction() {
+        transaction = database.beginTx();
+        operationsInTransaction = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void finishTransaction() {
+        transaction.success();
+        transaction.finish();
+    }
+
+    @TearDown
+    public void deleteDatabase() {
+        delegate.shutdown();
+        GraphFixture.delete(storeDir);
+    }
+
+    @Benchmark
+    public Node createNode() {
+        Node node = database.createNode();
+        writeDone();
+        return node;
+    }
+
+    @Benchmark
+    public void setProperty() {
+        database.getNodeById(nextNodeId()).setProperty("counter", next);
+        writeDone();
+    }
+
+    @Benchmark
+    public Relationship createRelationshipTo() {
+        Node start = database.getNodeById(nextNodeId());
+        Node end = database.getNodeById(nextNodeId());
+        Relationship relationship = start.createRelationshipTo(end, GraphFixture.Types.NEXT);
+        writeDone();
+        return relationship;
+    }
+
+    @Benchmark
+    public long iterateRelationships() {
+        long sum = 0;
+        for (Relationship relationship : database.getNodeById(nextNodeId()).getRelationships()) {
+            sum += relationship.getId();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long iterateAllNodes() {
+        long sum = 0;
+        for (Node node : database.getAllNodes()) {
+            sum += node.getId();
+        }
+        return sum;
+    }
+
+    private void writeDone() {
+        if (++operationsInTransaction == OPERATIONS_PER_TRANSACTION) {
+            finishTransaction();
+            beginTransaction();
+        }
+    }
+
+    private long nextNodeId() {
+        next = (next + 1) % nodeIds.length;
+        return nodeIds[next];
+    }
+}
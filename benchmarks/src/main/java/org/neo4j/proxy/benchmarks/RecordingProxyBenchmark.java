@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.recording.RecordingGraphDatabase;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares recording through dynamic proxies with recording through the hand-written wrappers, on reads that
+ * return entities and iterators. Events are discarded, so only the cost of recording itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecordingProxyBenchmark {
+
+    private static final int CHAIN_LENGTH = 1000;
+
+    @Param({"none", "proxy", "wrapper"})
+    public String recording;
+
+    private File storeDir;
+    private EmbeddedGraphDatabase delegate;
+    private GraphDatabaseService database;
+    private long[] nodeIds;
+    private int next;
+
+    @Setup
+    public void createDatabase() {
+        storeDir = GraphFixture.temporaryStoreDir("recording-proxy");
+        delegate = new EmbeddedGraphDatabase(storeDir.getAbsolutePath());
+        nodeIds = GraphFixture.createChain(delegate, CHAIN_LENGTH);
+
+        Event.Listener discard = new Event.Listener() {
+            public void onEvent(Event event) {
+            }
+        };
+        if ("proxy".equals(recording)) {
+            database = RecordingGraphDatabase.create(discard, delegate);
+        } else if ("wrapper".equals(recording)) {
+            database = RecordingGraphDatabase.createWithWrappers(discard, delegate);
+        } else {
+            database = delegate;
+        }
+    }
+
+    @TearDown
+    public void deleteDatabase() {
+        delegate.shutdown();
+        GraphFixture.delete(storeDir);
+    }
+
+    @Benchmark
+    public Object followSingleRelationship() {
+        Node node = database.getNodeById(nextNodeId());
+        Relationship relationship = node.getSingleRelationship(GraphFixture.Types.NEXT, Direction.OUTGOING);
+        if (relationship == null) {
+            return node.getProperty("name");
+        }
+        return relationship.getOtherNode(node).getProperty("name");
+    }
+
+    @Benchmark
+    public long iterateRelationships() {
+        Node node = database.getNodeById(nextNodeId());
+        long sum = 0;
+        for (Relationship relationship : node.getRelationships()) {
+            sum += relationship.getId();
+        }
+        return sum;
+    }
+
+    private long nextNodeId() {
+        next = (next + 1) % nodeIds.length;
+        return nodeIds[next];
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.benchmarks;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.JacksonAdaptor;
+import org.neo4j.proxy.eventmodel.serialization.JacksonDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.ParallelJacksonDeserializer;
+import org.neo4j.proxy.playback.PlaybackDriver;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each replay stage on generated event logs. The events counter reports events per second;
+ * run with -prof gc to see the allocation rate of each stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReplayBenchmark {
+
+    @Param({"WRITE", "TRAVERSAL", "ITERATOR"})
+    public EventLogGenerator.Mix mix;
+
+    @Param({"10000"})
+    public int size;
+
+    private static final int PARSER_THREADS = 4;
+
+    private String log;
+    private String[] lines;
+    private List<Event> events;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class EventCounter {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FreshDatabase {
+        File storeDir;
+        EmbeddedGraphDatabase database;
+
+        @Setup(Level.Invocation)
+        public void create() {
+            storeDir = GraphFixture.temporaryStoreDir("replay");
+            database = new EmbeddedGraphDatabase(storeDir.getAbsolutePath());
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() {
+            database.shutdown();
+            GraphFixture.delete(storeDir);
+        }
+    }
+
+    @Setup
+    public void generateLog() {
+        log = new EventLogGenerator(mix, size).generate();
+        lines = log.split("\n");
+        events = new ArrayList<Event>();
+        for (Event event : deserializer()) {
+            events.add(event);
+        }
+    }
+
+    @Benchmark
+    public void deserializeLog(EventCounter counter, Blackhole blackhole) {
+        for (Event event : deserializer()) {
+            blackhole.consume(event);
+            counter.events++;
+        }
+    }
+
+    @Benchmark
+    public void deserializeLogInParallel(EventCounter counter, Blackhole blackhole) {
+        for (Event event : new ParallelJacksonDeserializer(new StringReader(log), PARSER_THREADS)) {
+            blackhole.consume(event);
+            counter.events++;
+        }
+    }
+
+    @Benchmark
+    public void parseEventTrees(EventCounter counter, Blackhole blackhole) throws IOException {
+        for (String line : lines) {
+            blackhole.consume(JacksonAdaptor.parseEvent(mapper.readTree(line)));
+            counter.events++;
+        }
+    }
+
+    @Benchmark
+    public void playback(FreshDatabase fresh, EventCounter counter) {
+        new PlaybackDriver(fresh.database).playback(events);
+        counter.events += events.size();
+    }
+
+    private JacksonDeserializer deserializer() {
+        return new JacksonDeserializer(new BufferedReader(new StringReader(log)));
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An entry of a segment's index: where a block of events starts in the segment, how long it is, and the
+ * range of sequence numbers and timestamps of the events in it. Every block starts with a reset record, so
+ * it can be decoded without reading anything before it.
+ */
+class Block {
+
+    static final int INDEX_ENTRY_LENGTH = 6 * 8;
+
+    final long offset;
+    final long length;
+    final long minSequenceNumber;
+    final long maxSequenceNumber;
+    final long minTimestamp;
+    final long maxTimestamp;
+
+    Block(long offset, long length, long minSequenceNumber, long maxSequenceNumber, long minTimestamp, long maxTimestamp) {
+        this.offset = offset;
+        this.length = length;
+        this.minSequenceNumber = minSequenceNumber;
+        this.maxSequenceNumber = maxSequenceNumber;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    /**
+     * A block that has not been indexed, such as the tail of a segment that is still being written.
+     */
+    static Block unindexed(long offset, long length) {
+        return new Block(offset, length, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    static Block read(ByteBuffer index) {
+        return new Block(index.getLong(), index.getLong(), index.getLong(), index.getLong(), index.getLong(), index.getLong());
+    }
+
+    void write(ByteBuffer index) {
+        index.putLong(offset).putLong(length)
+                .putLong(minSequenceNumber).putLong(maxSequenceNumber)
+                .putLong(minTimestamp).putLong(maxTimestamp);
+    }
+}
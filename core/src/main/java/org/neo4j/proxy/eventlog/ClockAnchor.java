@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reading of the wall clock and of {@link System#nanoTime()} taken together, which event timestamps are
+ * measured by. Nano time only means something relative to other readings in the same JVM, so each segment
+ * keeps the anchor taken when it was opened, and wall-clock times are converted through it.
+ */
+class ClockAnchor {
+
+    static final int LENGTH = 2 * 8;
+
+    final long currentTimeMillis;
+    final long nanoTime;
+
+    ClockAnchor(long currentTimeMillis, long nanoTime) {
+        this.currentTimeMillis = currentTimeMillis;
+        this.nanoTime = nanoTime;
+    }
+
+    static ClockAnchor now() {
+        return new ClockAnchor(System.currentTimeMillis(), System.nanoTime());
+    }
+
+    /**
+     * @return the timestamp an event recorded at the given wall-clock time would have
+     */
+    long timestampAt(long currentTimeMillis) {
+        return nanoTime + (currentTimeMillis - this.currentTimeMillis) * 1000000L;
+    }
+
+    /**
+     * @return the wall-clock time at which an event with the given timestamp was recorded
+     */
+    long currentTimeMillisAt(long timestamp) {
+        return currentTimeMillis + Math.round((timestamp - nanoTime) / 1e6);
+    }
+
+    static ClockAnchor read(ByteBuffer index) {
+        return new ClockAnchor(index.getLong(), index.getLong());
+    }
+
+    void write(ByteBuffer index) {
+        index.putLong(currentTimeMillis).putLong(nanoTime);
+    }
+}
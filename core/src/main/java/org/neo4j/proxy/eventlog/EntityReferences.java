@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The nodes and relationships that the events of a segment use without having created them, which are
+ * what playback needs to know the playback ids of before it can start at that segment.
+ */
+class EntityReferences {
+
+    static final long[] NONE = new long[0];
+
+    private final LongSet createdNodes = new LongSet();
+    private final LongSet createdRelationships = new LongSet();
+    private final LongSet referencedNodes = new LongSet();
+    private final LongSet referencedRelationships = new LongSet();
+
+    void add(Event event) {
+        reference(event.getTarget());
+        for (Parameter parameter : event.getParameters()) {
+            reference(parameter);
+        }
+        String methodName = event.getMethodName();
+        if ("createNode".equals(methodName) || "createRelationshipTo".equals(methodName)) {
+            create(event.getResult());
+        } else {
+            reference(event.getResult());
+        }
+    }
+
+    void clear() {
+        createdNodes.clear();
+        createdRelationships.clear();
+        referencedNodes.clear();
+        referencedRelationships.clear();
+    }
+
+    void write(File file) {
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                writeIds(output, referencedNodes);
+                writeIds(output, referencedRelationships);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the referenced node ids and the referenced relationship ids, each in ascending order
+     */
+    static long[][] read(File file) {
+        if (!file.exists()) {
+            return new long[][]{NONE, NONE};
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                return new long[][]{readIds(input), readIds(input)};
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void reference(Parameter parameter) {
+        Class type = parameter.getType().getWrappedType();
+        if (type == Node.class) {
+            long id = (Long) parameter.getValueForSerialization();
+            if (!createdNodes.contains(id)) {
+                referencedNodes.add(id);
+            }
+        } else if (type == Relationship.class) {
+            long id = (Long) parameter.getValueForSerialization();
+            if (!createdRelationships.contains(id)) {
+                referencedRelationships.add(id);
+            }
+        }
+    }
+
+    private void create(Parameter parameter) {
+        Class type = parameter.getType().getWrappedType();
+        if (type == Node.class) {
+            createdNodes.add((Long) parameter.getValueForSerialization());
+        } else if (type == Relationship.class) {
+            createdRelationships.add((Long) parameter.getValueForSerialization());
+        }
+    }
+
+    private static void writeIds(DataOutputStream output, LongSet ids) throws IOException {
+        long[] sorted = ids.toSortedArray();
+        output.writeInt(sorted.length);
+        for (long id : sorted) {
+            output.writeLong(id);
+        }
+    }
+
+    private static long[] readIds(DataInputStream input) throws IOException {
+        long[] ids = new long[input.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = input.readLong();
+        }
+        return ids;
+    }
+}
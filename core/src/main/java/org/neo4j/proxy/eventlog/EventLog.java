@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a directory of segments written by {@link EventLogWriter}, in the order they were written, or just the
+ * events within a window of sequence numbers, timestamps or wall-clock times, found through the index of each
+ * segment.
+ */
+public class EventLog implements Iterable<Event> {
+
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String DATA_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String REFERENCES_SUFFIX = ".refs";
+    static final String JOURNAL_SUFFIX = ".journal";
+
+    private final List<Segment> segments;
+
+    public EventLog(File directory) {
+        List<Segment> segments = new ArrayList<Segment>();
+        for (long number : segmentNumbers(directory)) {
+            segments.add(new Segment(number, dataFile(directory, number), indexFile(directory, number), referencesFile(directory, number), journalFile(directory, number)));
+        }
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public Iterator<Event> iterator() {
+        return new SegmentsIterator(Window.EVERYTHING);
+    }
+
+    /**
+     * Sequence numbers are given out as calls are recorded, so the events of a window are read in log order
+     * rather than strictly by sequence number.
+     */
+    public Iterable<Event> sequenceNumbersBetween(long from, long to) {
+        return window(Window.sequenceNumbers(from, to));
+    }
+
+    /**
+     * Timestamps are {@link System#nanoTime()} readings, so they can only be compared within a single run of
+     * the recording JVM; to find events across runs, use {@link #timestampsBetween(Date, Date)}.
+     */
+    public Iterable<Event> timestampsBetween(long from, long to) {
+        return window(Window.timestamps(from, to));
+    }
+
+    /**
+     * The events recorded between two wall-clock times, converted to timestamps through the clock anchor of
+     * each segment.
+     */
+    public Iterable<Event> timestampsBetween(Date from, Date to) {
+        return window(Window.wallClock(from.getTime(), to.getTime()));
+    }
+
+    private Iterable<Event> window(final Window window) {
+        return new Iterable<Event>() {
+            public Iterator<Event> iterator() {
+                return new SegmentsIterator(window);
+            }
+        };
+    }
+
+    static File dataFile(File directory, long number) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, number, DATA_SUFFIX));
+    }
+
+    static File indexFile(File directory, long number) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, number, INDEX_SUFFIX));
+    }
+
+    static File referencesFile(File directory, long number) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, number, REFERENCES_SUFFIX));
+    }
+
+    static File journalFile(File directory, long number) {
+        return new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, number, JOURNAL_SUFFIX));
+    }
+
+    /**
+     * @return the numbers of the segments in the directory, in ascending order
+     */
+    static List<Long> segmentNumbers(File directory) {
+        String[] names = directory.list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(DATA_SUFFIX);
+            }
+        });
+        List<Long> numbers = new ArrayList<Long>();
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    numbers.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - DATA_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private class SegmentsIterator implements Iterator<Event> {
+        private final Window window;
+        private final Iterator<Segment> remainingSegments = segments.iterator();
+        private Iterator<Event> current;
+
+        SegmentsIterator(Window window) {
+            this.window = window;
+        }
+
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (!remainingSegments.hasNext()) {
+                    return false;
+                }
+                current = remainingSegments.next().window(window).iterator();
+            }
+            return true;
+        }
+
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.UnitsOfWork;
+import org.neo4j.proxy.eventmodel.serialization.BinaryEncoder;
+import org.neo4j.proxy.eventmodel.serialization.BinaryFormat;
+import org.neo4j.proxy.eventmodel.serialization.Compression;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes events in the binary format to a directory of segments, each a complete binary log. Events are
+ * written in blocks that start with a reset record, and each finished block is added to the segment's index
+ * with the range of sequence numbers and timestamps in it, so that {@link EventLog} can start reading at any
+ * block. The index starts with a {@link ClockAnchor} taken when the segment is opened, through which the
+ * timestamps can be related to the wall clock, so the writer must run in the JVM whose calls it records.
+ *
+ * A new segment is started once the current one has grown past the segment size or is older than the
+ * maximum segment age, as soon as no recorded thread is inside a transaction, so that each segment can be
+ * played back on its own. Alongside each segment go the ids of the nodes and relationships it uses but did
+ * not create. If transactions keep overlapping until the segment has grown to twice its size, it is closed
+ * anyway. Closed segments are pruned by the retention policy.
+ *
+ * With a {@link Compression}, each block is collected in memory and written as one compressed record when it
+ * ends, which is also when it is indexed, so a compressed log can still be read from any block. To sync at the
+ * end of a transaction without cutting the block short, the records collected so far are appended to the
+ * segment's journal instead: the offset the block will have in the segment, followed by its records as they
+ * would be written uncompressed. The journal is only read if the segment ends before that offset, and is
+ * deleted when the segment is closed.
+ */
+public class EventLogWriter implements Event.Listener, Flushable, Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+    public static final long MAX_SEGMENT_SIZE = 1024L * 1024 * 1024;
+    public static final int DEFAULT_EVENTS_PER_BLOCK = 1024;
+
+    private final File directory;
+    private final long segmentSize;
+    private final int eventsPerBlock;
+    private final BinaryEncoder encoder = new BinaryEncoder();
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(Block.INDEX_ENTRY_LENGTH);
+    private final EntityReferences references = new EntityReferences();
+    private final Map<Long, Integer> transactionDepths = new HashMap<Long, Integer>();
+
+    private long maxSegmentAgeMillis = Long.MAX_VALUE;
+    private Retention retention = Retention.keepAll();
+    private SyncPolicy syncPolicy = SyncPolicy.NEVER;
+    private Compression compression = Compression.NONE;
+    private Compression blockCompression = Compression.NONE;
+    private ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+
+    private long segmentNumber;
+    private FileOutputStream dataFile;
+    private FileOutputStream indexFile;
+    private FileOutputStream journal;
+    private long journalBlockOffset;
+    private int journaled;
+    private BufferedOutputStream data;
+    private BufferedOutputStream index;
+    private long position;
+    private long segmentOpened;
+
+    private int blockEvents;
+    private long blockOffset;
+    private long minSequenceNumber;
+    private long maxSequenceNumber;
+    private long minTimestamp;
+    private long maxTimestamp;
+
+    public EventLogWriter(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_EVENTS_PER_BLOCK);
+    }
+
+    /**
+     * @param segmentSize the size in bytes after which to start a new segment
+     * @param eventsPerBlock how many events to write between index entries
+     */
+    public EventLogWriter(File directory, long segmentSize, int eventsPerBlock) {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE / 2) {
+            throw new IllegalArgumentException("Segment size must be between 1 and " + MAX_SEGMENT_SIZE / 2 + ": " + segmentSize);
+        }
+        if (eventsPerBlock <= 0) {
+            throw new IllegalArgumentException("Events per block must be positive: " + eventsPerBlock);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Could not create event log directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.eventsPerBlock = eventsPerBlock;
+        List<Long> existing = EventLog.segmentNumbers(directory);
+        this.segmentNumber = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+    }
+
+    public synchronized void setMaxSegmentAge(long age, TimeUnit unit) {
+        maxSegmentAgeMillis = unit.toMillis(age);
+    }
+
+    public synchronized void setRetention(Retention retention) {
+        this.retention = retention;
+    }
+
+    public synchronized void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * Applies from the next block on.
+     */
+    public synchronized void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public synchronized void onEvent(Event event) {
+        if (data == null) {
+            openSegment();
+        }
+        if (blockEvents == 0) {
+            startBlock(event);
+        }
+        writeRecords(encoder.encode(event));
+        references.add(event);
+
+        minSequenceNumber = Math.min(minSequenceNumber, event.getSequenceNumber());
+        maxSequenceNumber = Math.max(maxSequenceNumber, event.getSequenceNumber());
+        minTimestamp = Math.min(minTimestamp, event.getTimestamp());
+        maxTimestamp = Math.max(maxTimestamp, event.getTimestamp());
+        boolean finishesTransaction = trackTransactions(event);
+        if (++blockEvents == eventsPerBlock) {
+            endBlock();
+        }
+
+        if (shouldRoll()) {
+            closeSegment();
+            prune();
+        } else if (finishesTransaction && syncPolicy == SyncPolicy.TRANSACTION) {
+            if (blockEvents > 0 && compressing()) {
+                journalBlock();
+            } else {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * Flushes what has been written; when compressing, the events of the block being collected are first
+     * written as a block of their own.
+     */
+    public synchronized void flush() {
+        try {
+            if (data != null) {
+                if (blockEvents > 0 && compressing()) {
+                    endBlock();
+                }
+                data.flush();
+                index.flush();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Indexes the block being written and closes the current segment.
+     */
+    public synchronized void close() {
+        if (data != null) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * @return whether the event finished the outermost transaction of its thread
+     */
+    private boolean trackTransactions(Event event) {
+        if (UnitsOfWork.beginsTransaction(event)) {
+            Integer depth = transactionDepths.get(event.getThreadId());
+            transactionDepths.put(event.getThreadId(), depth == null ? 1 : depth + 1);
+        } else if (UnitsOfWork.endsTransaction(event)) {
+            Integer depth = transactionDepths.get(event.getThreadId());
+            if (depth != null) {
+                if (depth > 1) {
+                    transactionDepths.put(event.getThreadId(), depth - 1);
+                } else {
+                    transactionDepths.remove(event.getThreadId());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean shouldRoll() {
+        long age = System.currentTimeMillis() - segmentOpened;
+        boolean due = position >= segmentSize || age >= maxSegmentAgeMillis;
+        return due && (transactionDepths.isEmpty() || position >= segmentSize * 2);
+    }
+
+    private void openSegment() {
+        segmentNumber++;
+        try {
+            dataFile = new FileOutputStream(EventLog.dataFile(directory, segmentNumber));
+            indexFile = new FileOutputStream(EventLog.indexFile(directory, segmentNumber));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        data = new BufferedOutputStream(dataFile, 64 * 1024);
+        index = new BufferedOutputStream(indexFile, 4 * 1024);
+        ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_LENGTH);
+        BinaryFormat.writeHeader(header);
+        header.flip();
+        position = 0;
+        segmentOpened = System.currentTimeMillis();
+        writeData(header);
+        writeAnchor();
+    }
+
+    /**
+     * Written through at once, so that a reader that opens the segment while it is being written can seek by
+     * wall-clock time.
+     */
+    private void writeAnchor() {
+        ByteBuffer anchor = ByteBuffer.allocate(ClockAnchor.LENGTH);
+        ClockAnchor.now().write(anchor);
+        try {
+            index.write(anchor.array(), 0, anchor.position());
+            index.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void startBlock(Event event) {
+        blockOffset = position;
+        minSequenceNumber = maxSequenceNumber = event.getSequenceNumber();
+        minTimestamp = maxTimestamp = event.getTimestamp();
+        blockCompression = compression;
+        writeRecords(encoder.encodeReset());
+    }
+
+    private void endBlock() {
+        if (blockCompression != Compression.NONE) {
+            writeData(blockCompression.compressBlock(block.array(), block.position()));
+            block.clear();
+        }
+        indexEntry.clear();
+        new Block(blockOffset, position - blockOffset, minSequenceNumber, maxSequenceNumber, minTimestamp, maxTimestamp).write(indexEntry);
+        try {
+            index.write(indexEntry.array(), 0, indexEntry.position());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        blockEvents = 0;
+        if (syncPolicy == SyncPolicy.BLOCK || syncPolicy == SyncPolicy.TRANSACTION) {
+            sync();
+        }
+    }
+
+    /**
+     * Appends the records of the block being collected that are not yet in the journal, starting the journal
+     * over for a new block, and syncs it.
+     */
+    private void journalBlock() {
+        try {
+            if (journal == null) {
+                journal = new FileOutputStream(EventLog.journalFile(directory, segmentNumber));
+                journalBlockOffset = -1;
+            }
+            if (journalBlockOffset != blockOffset) {
+                journal.getChannel().truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(8);
+                header.putLong(blockOffset);
+                journal.write(header.array());
+                journalBlockOffset = blockOffset;
+                journaled = 0;
+            }
+            journal.write(block.array(), journaled, block.position() - journaled);
+            journaled = block.position();
+            journal.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void closeSegment() {
+        if (blockEvents > 0) {
+            endBlock();
+        }
+        references.write(EventLog.referencesFile(directory, segmentNumber));
+        references.clear();
+        try {
+            if (syncPolicy != SyncPolicy.NEVER) {
+                sync();
+            }
+            data.close();
+            index.close();
+            if (journal != null) {
+                journal.close();
+                EventLog.journalFile(directory, segmentNumber).delete();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            data = null;
+            index = null;
+            journal = null;
+        }
+    }
+
+    private void sync() {
+        try {
+            data.flush();
+            index.flush();
+            dataFile.getFD().sync();
+            indexFile.getFD().sync();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void prune() {
+        List<Long> closed = EventLog.segmentNumbers(directory);
+        int toDelete = retention.segmentsToDelete(directory, closed);
+        for (int i = 0; i < toDelete; i++) {
+            long number = closed.get(i);
+            EventLog.indexFile(directory, number).delete();
+            EventLog.referencesFile(directory, number).delete();
+            EventLog.journalFile(directory, number).delete();
+            if (!EventLog.dataFile(directory, number).delete()) {
+                throw new IllegalStateException("Could not delete segment " + EventLog.dataFile(directory, number));
+            }
+        }
+    }
+
+    private boolean compressing() {
+        return blockCompression != Compression.NONE;
+    }
+
+    private void writeRecords(ByteBuffer records) {
+        if (blockCompression == Compression.NONE) {
+            writeData(records);
+        } else {
+            if (block.remaining() < records.remaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(block.capacity() * 2, block.position() + records.remaining()));
+                block.flip();
+                larger.put(block);
+                block = larger;
+            }
+            block.put(records);
+        }
+    }
+
+    private void writeData(ByteBuffer buffer) {
+        try {
+            data.write(buffer.array(), buffer.position(), buffer.remaining());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        position += buffer.remaining();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative longs with open addressing and linear probing in one flat array, so that the ids a
+ * segment uses are not boxed as it is written. Not thread safe.
+ */
+class LongSet {
+
+    private static final long FREE = -1;
+    private static final double MAX_LOAD = 0.6;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private int size;
+    private int resizeAt;
+
+    LongSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    boolean contains(long key) {
+        checkKey(key);
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                return true;
+            }
+            if (found == FREE) {
+                return false;
+            }
+        }
+    }
+
+    void add(long key) {
+        checkKey(key);
+        if (size >= resizeAt) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                return;
+            }
+            if (found == FREE) {
+                keys[slot] = key;
+                size++;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Empties the set, keeping its capacity unless it grew beyond the initial one.
+     */
+    void clear() {
+        if (keys.length > INITIAL_CAPACITY) {
+            allocate(INITIAL_CAPACITY);
+        } else {
+            Arrays.fill(keys, FREE);
+            size = 0;
+        }
+    }
+
+    long[] toSortedArray() {
+        long[] sorted = new long[size];
+        int i = 0;
+        for (long key : keys) {
+            if (key != FREE) {
+                sorted[i++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void checkKey(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative: " + key);
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        allocate(oldKeys.length * 2);
+        for (long key : oldKeys) {
+            if (key != FREE) {
+                add(key);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        size = 0;
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+}
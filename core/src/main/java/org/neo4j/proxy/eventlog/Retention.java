@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many of the closed segments {@link EventLogWriter} keeps. Segments are always pruned oldest first,
+ * and the segment being written is never pruned.
+ */
+public abstract class Retention {
+
+    /**
+     * @param closedSegments the numbers of the closed segments, oldest first
+     * @return how many of the oldest segments to delete
+     */
+    abstract int segmentsToDelete(File directory, List<Long> closedSegments);
+
+    public static Retention keepAll() {
+        return new Retention() {
+            int segmentsToDelete(File directory, List<Long> closedSegments) {
+                return 0;
+            }
+        };
+    }
+
+    public static Retention keepSegments(final int count) {
+        return new Retention() {
+            int segmentsToDelete(File directory, List<Long> closedSegments) {
+                return Math.max(0, closedSegments.size() - count);
+            }
+        };
+    }
+
+    /**
+     * Keeps as many of the newest segments as fit in the given number of bytes.
+     */
+    public static Retention keepBytes(final long bytes) {
+        return new Retention() {
+            int segmentsToDelete(File directory, List<Long> closedSegments) {
+                long kept = 0;
+                for (int i = closedSegments.size() - 1; i >= 0; i--) {
+                    kept += EventLog.dataFile(directory, closedSegments.get(i)).length();
+                    if (kept > bytes) {
+                        return i + 1;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Keeps the segments last written to within the given time.
+     */
+    public static Retention keepFor(long duration, TimeUnit unit) {
+        final long millis = unit.toMillis(duration);
+        return new Retention() {
+            int segmentsToDelete(File directory, List<Long> closedSegments) {
+                long cutOff = System.currentTimeMillis() - millis;
+                int expired = 0;
+                while (expired < closedSegments.size()
+                        && EventLog.dataFile(directory, closedSegments.get(expired)).lastModified() < cutOff) {
+                    expired++;
+                }
+                return expired;
+            }
+        };
+    }
+}
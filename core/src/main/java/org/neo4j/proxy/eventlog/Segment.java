@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.BinaryDecoder;
+import org.neo4j.proxy.eventmodel.serialization.BinaryFormat;
+import org.neo4j.proxy.eventmodel.serialization.Compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * One file of an {@link EventLog}, mapped into memory together with its index. Iterating over a segment
+ * decodes only the blocks the index says may hold events in the window asked for, expanding those that were
+ * compressed. If the writer stopped while collecting a compressed block it had journaled, the journal stands
+ * in for whatever it left after the last indexed block. Each iterator has its own
+ * decoder, so separate segments, or separate windows of one segment, can be read on separate threads.
+ */
+public class Segment implements Iterable<Event> {
+
+    private final long number;
+    private final ByteBuffer data;
+    private final ClockAnchor anchor;
+    private final List<Block> blocks;
+    private final ByteBuffer journal;
+    private final File referencesFile;
+
+    Segment(long number, File dataFile, File indexFile, File referencesFile, File journalFile) {
+        this.number = number;
+        this.data = map(dataFile);
+        BinaryFormat.readHeader(data.duplicate());
+        ByteBuffer index = indexFile.exists() ? map(indexFile) : ByteBuffer.allocate(0);
+        this.anchor = index.remaining() >= ClockAnchor.LENGTH ? ClockAnchor.read(index) : null;
+        List<Block> indexed = readIndex(index);
+        long indexedEnd = indexed.isEmpty() ? BinaryFormat.HEADER_LENGTH : indexed.get(indexed.size() - 1).offset + indexed.get(indexed.size() - 1).length;
+        this.journal = readJournal(journalFile, indexedEnd);
+        if (journal == null && data.limit() > indexedEnd) {
+            indexed.add(Block.unindexed(indexedEnd, data.limit() - indexedEnd));
+        }
+        this.blocks = Collections.unmodifiableList(indexed);
+        this.referencesFile = referencesFile;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * @return the recorded ids of the nodes the segment uses without having created them, in ascending order,
+     * or none if the segment has not been closed
+     */
+    public long[] getReferencedNodeIds() {
+        return EntityReferences.read(referencesFile)[0];
+    }
+
+    /**
+     * @return the recorded ids of the relationships the segment uses without having created them
+     */
+    public long[] getReferencedRelationshipIds() {
+        return EntityReferences.read(referencesFile)[1];
+    }
+
+    public Iterator<Event> iterator() {
+        return new EventIterator(Window.EVERYTHING);
+    }
+
+    public Iterable<Event> sequenceNumbersBetween(long from, long to) {
+        return window(Window.sequenceNumbers(from, to));
+    }
+
+    public Iterable<Event> timestampsBetween(long from, long to) {
+        return window(Window.timestamps(from, to));
+    }
+
+    public Iterable<Event> timestampsBetween(Date from, Date to) {
+        return window(Window.wallClock(from.getTime(), to.getTime()));
+    }
+
+    /**
+     * @return the wall-clock time in milliseconds at which an event of this segment was recorded
+     * @throws IllegalStateException if the segment is still being opened and has no clock anchor yet
+     */
+    public long currentTimeMillis(Event event) {
+        if (anchor == null) {
+            throw new IllegalStateException("Segment " + number + " has no clock anchor");
+        }
+        return anchor.currentTimeMillisAt(event.getTimestamp());
+    }
+
+    Iterable<Event> window(Window window) {
+        final Window anchored = window.anchoredAt(anchor);
+        return new Iterable<Event>() {
+            public Iterator<Event> iterator() {
+                return new EventIterator(anchored);
+            }
+        };
+    }
+
+    private static ByteBuffer map(File file) {
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<Block> readIndex(ByteBuffer index) {
+        List<Block> blocks = new ArrayList<Block>();
+        while (index.remaining() >= Block.INDEX_ENTRY_LENGTH) {
+            blocks.add(Block.read(index));
+        }
+        return blocks;
+    }
+
+    /**
+     * @return the journaled records of the block that would have followed the indexed ones, or null if there
+     * is no journal or it is of a block that has since been indexed
+     */
+    private static ByteBuffer readJournal(File journalFile, long indexedEnd) {
+        if (!journalFile.exists()) {
+            return null;
+        }
+        ByteBuffer journal = map(journalFile);
+        if (journal.remaining() < 8 || journal.getLong() != indexedEnd) {
+            return null;
+        }
+        return journal.slice();
+    }
+
+    private class EventIterator implements Iterator<Event> {
+        private final Window window;
+        private final BinaryDecoder decoder = new BinaryDecoder();
+        private final Iterator<Block> remainingBlocks;
+        private ByteBuffer block;
+        private ByteBuffer expanded;
+        private boolean journalRead;
+        private Event next;
+
+        EventIterator(Window window) {
+            this.window = window;
+            this.remainingBlocks = blocks.iterator();
+        }
+
+        public boolean hasNext() {
+            while (next == null) {
+                Event event;
+                if (expanded != null && expanded.hasRemaining()) {
+                    event = decodeRecord(expanded);
+                } else if (block == null || !block.hasRemaining()) {
+                    if (!nextBlock()) {
+                        return false;
+                    }
+                    continue;
+                } else {
+                    event = decodeRecord(block);
+                }
+                if (event != null && window.contains(event)) {
+                    next = event;
+                }
+            }
+            return true;
+        }
+
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Event event = next;
+            next = null;
+            return event;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean nextBlock() {
+            while (remainingBlocks.hasNext()) {
+                Block candidate = remainingBlocks.next();
+                if (window.overlaps(candidate)) {
+                    block = data.duplicate();
+                    block.limit((int) (candidate.offset + candidate.length));
+                    block.position((int) candidate.offset);
+                    decoder.reset();
+                    return true;
+                }
+            }
+            if (journal != null && !journalRead) {
+                journalRead = true;
+                block = journal.duplicate();
+                decoder.reset();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the decoded event, or null for other records and for a record cut short at the end of the data
+         */
+        private Event decodeRecord(ByteBuffer block) {
+            int start = block.position();
+            int length;
+            try {
+                length = (int) BinaryFormat.readVarLong(block);
+            } catch (BufferUnderflowException e) {
+                block.position(block.limit());
+                return null;
+            }
+            if (length > block.remaining()) {
+                block.position(block.limit());
+                return null;
+            }
+            ByteBuffer record = block.slice();
+            record.limit(length);
+            block.position(block.position() + length);
+            try {
+                if (Compression.isCompressedBlock(record)) {
+                    expanded = Compression.expandBlock(record);
+                    return null;
+                }
+                return decoder.decode(record);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Malformed record at offset " + start + " of segment " + number, e);
+            }
+        }
+    }
+}
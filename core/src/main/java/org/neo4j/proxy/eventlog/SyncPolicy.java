@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+/**
+ * When {@link EventLogWriter} forces what it has written to disk, trading recording throughput for how
+ * much of the log survives a crash of the machine.
+ */
+public enum SyncPolicy {
+    /**
+     * Leave it to the operating system.
+     */
+    NEVER,
+    /**
+     * When a segment is closed.
+     */
+    SEGMENT,
+    /**
+     * When a block is indexed, and when a segment is closed.
+     */
+    BLOCK,
+    /**
+     * After every event that finishes a transaction, and whenever {@link #BLOCK} would. When compressing, the
+     * block being collected is not ended for this: its records so far are appended to the segment's journal,
+     * and only the journal is synced.
+     */
+    TRANSACTION
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+/**
+ * Which events to read: those whose sequence number, timestamp or wall-clock time lies in an inclusive range.
+ */
+abstract class Window {
+
+    static final Window EVERYTHING = new Window() {
+        boolean overlaps(Block block) {
+            return true;
+        }
+
+        boolean contains(Event event) {
+            return true;
+        }
+    };
+
+    abstract boolean overlaps(Block block);
+
+    abstract boolean contains(Event event);
+
+    /**
+     * @return the window for a segment whose timestamps are measured from the given anchor
+     */
+    Window anchoredAt(ClockAnchor anchor) {
+        return this;
+    }
+
+    static Window sequenceNumbers(final long from, final long to) {
+        return new Window() {
+            boolean overlaps(Block block) {
+                return block.maxSequenceNumber >= from && block.minSequenceNumber <= to;
+            }
+
+            boolean contains(Event event) {
+                return event.getSequenceNumber() >= from && event.getSequenceNumber() <= to;
+            }
+        };
+    }
+
+    static Window timestamps(final long from, final long to) {
+        return new Window() {
+            boolean overlaps(Block block) {
+                return block.maxTimestamp >= from && block.minTimestamp <= to;
+            }
+
+            boolean contains(Event event) {
+                return event.getTimestamp() >= from && event.getTimestamp() <= to;
+            }
+        };
+    }
+
+    /**
+     * Wall-clock times can only be compared with timestamps through the clock anchor of a segment, so the
+     * window must be anchored before it is used.
+     */
+    static Window wallClock(final long fromMillis, final long toMillis) {
+        return new Window() {
+            boolean overlaps(Block block) {
+                throw new IllegalStateException("Wall-clock window used without a clock anchor");
+            }
+
+            boolean contains(Event event) {
+                throw new IllegalStateException("Wall-clock window used without a clock anchor");
+            }
+
+            Window anchoredAt(ClockAnchor anchor) {
+                if (anchor == null) {
+                    throw new IllegalStateException("Segment has no clock anchor to convert wall-clock times with");
+                }
+                return timestamps(anchor.timestampAt(fromMillis), anchor.timestampAt(toMillis));
+            }
+        };
+    }
+}
@@ -30,16 +30,51 @@ public class Event {
         void onEvent(Event event);
     }
 
+    public static final long NO_SEQUENCE_NUMBER = -1;
+    public static final long NO_TIMESTAMP = -1;
+    public static final long NO_DURATION = -1;
+
     private Parameter target;
     private String methodName;
     private Parameter[] parameters;
     private Parameter result;
+    private long threadId;
+    private long sequenceNumber;
+    private long timestamp;
+    private long duration;
 
     public Event(Parameter target, String methodName, Parameter[] parameters, Parameter result) {
+        this(target, methodName, parameters, result, 0, NO_SEQUENCE_NUMBER);
+    }
+
+    /**
+     * @param threadId the id of the thread that made the call
+     * @param sequenceNumber the position of the call among all calls recorded on the same database, from every thread
+     */
+    public Event(Parameter target, String methodName, Parameter[] parameters, Parameter result, long threadId, long sequenceNumber) {
+        this(target, methodName, parameters, result, threadId, sequenceNumber, NO_TIMESTAMP);
+    }
+
+    /**
+     * @param timestamp when the call was recorded, from {@link System#nanoTime()}
+     */
+    public Event(Parameter target, String methodName, Parameter[] parameters, Parameter result, long threadId, long sequenceNumber, long timestamp) {
+        this(target, methodName, parameters, result, threadId, sequenceNumber, timestamp, NO_DURATION);
+    }
+
+    /**
+     * @param timestamp when the call was made, from {@link System#nanoTime()}
+     * @param duration how long the call took on the recorded database, in nanoseconds
+     */
+    public Event(Parameter target, String methodName, Parameter[] parameters, Parameter result, long threadId, long sequenceNumber, long timestamp, long duration) {
         this.target = target;
         this.methodName = methodName;
         this.parameters = parameters;
         this.result = result;
+        this.threadId = threadId;
+        this.sequenceNumber = sequenceNumber;
+        this.timestamp = timestamp;
+        this.duration = duration;
     }
 
     public Parameter getTarget() {
@@ -58,6 +93,25 @@ public class Event {
         return result;
     }
 
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the duration of the recorded call in nanoseconds, or {@link #NO_DURATION} if it was not measured
+     */
+    public long getDuration() {
+        return duration;
+    }
+
     public String toString() {
         return JacksonAdaptor.serializeEvent(this).toString();
     }
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Puts events back into the order of their sequence numbers, for logs where events from different threads
+ * were written out of order, as by {@link org.neo4j.proxy.recording.PerThreadBufferingListener}.
+ *
+ * Sequence numbers are expected to be dense. Events are held back until the next expected number arrives; if
+ * more than the reorder limit are waiting, the next expected number is assumed to be missing and the earliest
+ * waiting event is released. The first expected number is the lowest among the first events, since a stream
+ * such as a segment of an event log or a window of one starts wherever the recording had got to. Events
+ * without a sequence number are passed through as they arrive.
+ */
+public class SequencedEvents implements Iterable<Event> {
+
+    public static final int DEFAULT_REORDER_LIMIT = 100000;
+
+    private static final int SEED_EVENTS = 1024;
+
+    private static final Comparator<Event> bySequenceNumber = new Comparator<Event>() {
+        public int compare(Event first, Event second) {
+            long a = first.getSequenceNumber();
+            long b = second.getSequenceNumber();
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    };
+
+    private final Iterable<Event> events;
+    private final int reorderLimit;
+
+    public SequencedEvents(Iterable<Event> events) {
+        this(events, DEFAULT_REORDER_LIMIT);
+    }
+
+    public SequencedEvents(Iterable<Event> events, int reorderLimit) {
+        this.events = events;
+        this.reorderLimit = reorderLimit;
+    }
+
+    public Iterator<Event> iterator() {
+        final Iterator<Event> source = events.iterator();
+        return new Iterator<Event>() {
+            private final PriorityQueue<Event> waiting = new PriorityQueue<Event>(64, bySequenceNumber);
+            private final int seedEvents = Math.min(SEED_EVENTS, reorderLimit);
+            private boolean seeded;
+            private long nextSequenceNumber;
+            private Event next;
+
+            private void fillBuffer() {
+                while (next == null) {
+                    Event head = waiting.peek();
+                    if (!seeded && head != null && (waiting.size() >= seedEvents || !source.hasNext())) {
+                        seeded = true;
+                        nextSequenceNumber = head.getSequenceNumber();
+                    }
+                    if (head != null && ((seeded && head.getSequenceNumber() <= nextSequenceNumber)
+                            || waiting.size() > reorderLimit || !source.hasNext())) {
+                        release(waiting.poll());
+                        return;
+                    }
+                    if (!source.hasNext()) {
+                        return;
+                    }
+                    Event event = source.next();
+                    if (event.getSequenceNumber() == Event.NO_SEQUENCE_NUMBER) {
+                        next = event;
+                    } else {
+                        waiting.add(event);
+                    }
+                }
+            }
+
+            private void release(Event event) {
+                nextSequenceNumber = Math.max(nextSequenceNumber, event.getSequenceNumber() + 1);
+                next = event;
+            }
+
+            public boolean hasNext() {
+                fillBuffer();
+                return next != null;
+            }
+
+            public Event next() {
+                fillBuffer();
+                if (next == null) {
+                    throw new IllegalStateException("next() called at end of events");
+                }
+                Event result = next;
+                next = null;
+                return result;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
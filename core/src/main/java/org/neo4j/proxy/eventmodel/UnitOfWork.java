@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events of one recorded thread from the start of a top level transaction to its finish, or a run of
+ * events that the thread made outside any transaction.
+ */
+public class UnitOfWork {
+
+    private final long threadId;
+    private final boolean transaction;
+    private final List<Event> events = new ArrayList<Event>();
+    private boolean success;
+    private boolean failure;
+    private boolean finished;
+
+    public UnitOfWork(long threadId, boolean transaction) {
+        this.threadId = threadId;
+        this.transaction = transaction;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return true if the events were made inside a transaction
+     */
+    public boolean isTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return true if the transaction was finished within the log; false if the log ended first
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return true if the transaction was marked successful, never marked as failed, and finished
+     */
+    public boolean isCommitted() {
+        return transaction && finished && success && !failure;
+    }
+
+    void add(Event event) {
+        events.add(event);
+    }
+
+    void success() {
+        success = true;
+    }
+
+    void failure() {
+        failure = true;
+    }
+
+    void finish() {
+        finished = true;
+    }
+}
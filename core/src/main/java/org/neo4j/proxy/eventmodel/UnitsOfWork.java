@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.*;
+
+/**
+ * Groups a stream of events into {@link UnitOfWork}s per recorded thread, yielding each unit as soon as its
+ * last event has been read. Nested transactions belong to the unit of their top level transaction. Runs of
+ * events outside any transaction are cut into units of at most {@link #MAX_EVENTS_OUTSIDE_TRANSACTION}.
+ * As in the kernel, only success on the top level transaction counts, but failure at any level rolls back.
+ *
+ * Units are yielded in the order in which they ended, so the events should be in recorded order; see
+ * {@link SequencedEvents}. Units still open when the events run out are yielded last.
+ */
+public class UnitsOfWork implements Iterable<UnitOfWork> {
+
+    public static final int MAX_EVENTS_OUTSIDE_TRANSACTION = 1000;
+
+    private final Iterable<Event> events;
+
+    public UnitsOfWork(Iterable<Event> events) {
+        this.events = events;
+    }
+
+    public static boolean beginsTransaction(Event event) {
+        return "beginTx".equals(event.getMethodName()) && targets(event, GraphDatabaseService.class);
+    }
+
+    public static boolean endsTransaction(Event event) {
+        return "finish".equals(event.getMethodName()) && targets(event, Transaction.class);
+    }
+
+    private static boolean targets(Event event, Class type) {
+        return event.getTarget().getType().getWrappedType() == type;
+    }
+
+    public Iterator<UnitOfWork> iterator() {
+        final Iterator<Event> source = events.iterator();
+        return new Iterator<UnitOfWork>() {
+            private final Map<Long, OpenUnit> openUnits = new LinkedHashMap<Long, OpenUnit>();
+            private final Queue<UnitOfWork> ended = new LinkedList<UnitOfWork>();
+
+            private void fillBuffer() {
+                while (ended.isEmpty() && source.hasNext()) {
+                    add(source.next());
+                }
+                if (ended.isEmpty() && !openUnits.isEmpty()) {
+                    for (OpenUnit open : openUnits.values()) {
+                        ended.add(open.unit);
+                    }
+                    openUnits.clear();
+                }
+            }
+
+            private void add(Event event) {
+                long threadId = event.getThreadId();
+                OpenUnit open = openUnits.get(threadId);
+                if (beginsTransaction(event) && open != null && open.depth == 0) {
+                    end(threadId);
+                    open = null;
+                }
+                if (open == null) {
+                    open = new OpenUnit(new UnitOfWork(threadId, beginsTransaction(event)));
+                    openUnits.put(threadId, open);
+                }
+                open.unit.add(event);
+
+                if (beginsTransaction(event)) {
+                    open.depth++;
+                } else if (targets(event, Transaction.class)) {
+                    if ("success".equals(event.getMethodName()) && open.depth == 1) {
+                        open.unit.success();
+                    } else if ("failure".equals(event.getMethodName())) {
+                        open.unit.failure();
+                    } else if (endsTransaction(event) && open.depth > 0 && --open.depth == 0) {
+                        open.unit.finish();
+                        end(threadId);
+                    }
+                } else if (open.depth == 0 && open.unit.getEvents().size() >= MAX_EVENTS_OUTSIDE_TRANSACTION) {
+                    end(threadId);
+                }
+            }
+
+            private void end(long threadId) {
+                ended.add(openUnits.remove(threadId).unit);
+            }
+
+            public boolean hasNext() {
+                fillBuffer();
+                return !ended.isEmpty();
+            }
+
+            public UnitOfWork next() {
+                fillBuffer();
+                if (ended.isEmpty()) {
+                    throw new IllegalStateException("next() called at end of events");
+                }
+                return ended.remove();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static class OpenUnit {
+        final UnitOfWork unit;
+        int depth;
+
+        OpenUnit(UnitOfWork unit) {
+            this.unit = unit;
+        }
+    }
+}
@@ -23,15 +23,30 @@ import org.neo4j.graphdb.*;
 import org.neo4j.proxy.eventmodel.parameter.types.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ParameterFactory {
 
-    public final List<ParameterType> types = new ArrayList<ParameterType>();
+    /**
+     * The registered types, in the order they are tried for an object; unmodifiable, since the lookups by
+     * class and by name are built from it.
+     */
+    public final List<ParameterType> types;
+
+    private final ParameterType nullType = new NullParameterType();
+    private final ConcurrentMap<Class, ParameterType> typesByClass = new ConcurrentHashMap<Class, ParameterType>();
+    private final Map<Class, ParameterType> typesByWrappedType = new HashMap<Class, ParameterType>();
+    private final Map<String, ParameterType> typesByName = new HashMap<String, ParameterType>();
 
     public ParameterFactory() {
-        types.add(new NullParameterType());
+        List<ParameterType> types = new ArrayList<ParameterType>();
+        types.add(nullType);
         types.add(new GraphDatabaseServiceParameterType());
         types.add(new TransactionParameterType());
         types.add(new NodeParameterType());
@@ -65,24 +80,57 @@ public class ParameterFactory {
         types.add(new PrimitiveParameterType(double[].class));
         types.add(new PrimitiveParameterType(Double[].class));
         types.add(new PrimitiveParameterType(String[].class));
+
+        for (ParameterType type : types) {
+            if (!typesByWrappedType.containsKey(type.getWrappedType())) {
+                typesByWrappedType.put(type.getWrappedType(), type);
+            }
+            if (!typesByName.containsKey(type.getTypeName())) {
+                typesByName.put(type.getTypeName(), type);
+            }
+        }
+        this.types = Collections.unmodifiableList(types);
     }
 
+    /**
+     * Finds the type by the class of the argument. The first lookup for each class scans the types in order,
+     * and the answer is remembered for that class.
+     */
     public Parameter fromObject(Object argument) {
+        if (argument == null) {
+            return nullType.fromObject(null);
+        }
+        Class argumentClass = argument.getClass();
+        ParameterType type = typesByClass.get(argumentClass);
+        if (type == null) {
+            type = scanForType(argument);
+            typesByClass.put(argumentClass, type);
+        }
+        return type.fromObject(argument);
+    }
+
+    private ParameterType scanForType(Object argument) {
         for (ParameterType type : types) {
             if (type.acceptObject(argument)) {
-                return type.fromObject(argument);
+                return type;
             }
         }
         throw new IllegalArgumentException("Cannot accept type of argument: " + argument.getClass());
     }
 
     public Parameter fromObjectWithSpecificType(Object argument, Class interfaceType) {
-        for (ParameterType type : types) {
-            if (type.getWrappedType() == interfaceType) {
-                return type.fromObject(argument);
-            }
+        ParameterType type = typesByWrappedType.get(interfaceType);
+        if (type == null) {
+            throw new IllegalArgumentException("Cannot accept type of argument: " + interfaceType);
         }
-        throw new IllegalArgumentException("Cannot accept type of argument: " + interfaceType);
+        return type.fromObject(argument);
+    }
+
+    /**
+     * @return the type that serialized parameters with this name, or null if there is none
+     */
+    public ParameterType forTypeName(String typeName) {
+        return typesByName.get(typeName);
     }
 
 }
@@ -40,10 +40,21 @@ public abstract class ParameterType {
         return serializedType;
     }
 
+    /**
+     * The name this type is serialized under.
+     */
+    public String getTypeName() {
+        return wrappedType.getSimpleName();
+    }
+
     public boolean acceptTypeName(String typeString) {
-        return wrappedType.getSimpleName().equals(typeString);
+        return getTypeName().equals(typeString);
     }
 
+    /**
+     * For any object other than null, the answer must depend only on the class of the object, because
+     * {@link org.neo4j.proxy.eventmodel.parameter.ParameterFactory} remembers it per class.
+     */
     public boolean acceptObject(Object object) {
         return wrappedType.isAssignableFrom(object.getClass());
     }
@@ -22,9 +22,11 @@ package org.neo4j.proxy.eventmodel.parameter.types;
 import org.neo4j.proxy.eventmodel.EntityFinder;
 import org.neo4j.proxy.eventmodel.parameter.Parameter;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class SurrogateIdentifierParameterType extends ParameterType {
 
-    private int idSequence = 0;
+    private final AtomicInteger idSequence = new AtomicInteger();
 
     public SurrogateIdentifierParameterType(Class wrappedType) {
         super(wrappedType, int.class);
@@ -39,6 +41,6 @@ public class SurrogateIdentifierParameterType extends ParameterType {
     }
 
     public Parameter fromObject(Object entity) {
-        return new Parameter(this, idSequence++);
+        return new Parameter(this, idSequence.getAndIncrement());
     }
 }
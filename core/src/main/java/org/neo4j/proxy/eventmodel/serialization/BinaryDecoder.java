@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.parameter.types.ParameterType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.neo4j.proxy.eventmodel.serialization.BinaryFormat.*;
+
+/**
+ * Decodes binary records, building up the dictionary from the definition records it has seen. Not thread safe.
+ */
+public class BinaryDecoder {
+
+    private static final ParameterFactory parameterFactory = new ParameterFactory();
+
+    private final List<String> methodNames = new ArrayList<String>();
+    private final List<ParameterType> types = new ArrayList<ParameterType>();
+    private long previousTimestamp;
+
+    /**
+     * @param record the body of one record, from its tag up to its limit
+     * @return the event, or null if the record was a dictionary definition or a reset
+     */
+    public Event decode(ByteBuffer record) {
+        byte tag = record.get();
+        switch (tag) {
+            case EVENT:
+                return readEvent(record);
+            case METHOD_DEFINITION:
+                define(methodNames, (int) readVarLong(record), BinaryValues.readString(record));
+                return null;
+            case TYPE_DEFINITION:
+                define(types, (int) readVarLong(record), typeNamed(BinaryValues.readString(record)));
+                return null;
+            case RESET:
+                reset();
+                return null;
+            case COMPRESSED:
+                throw new IllegalArgumentException("Compressed blocks must be expanded before they are decoded");
+            default:
+                throw new IllegalArgumentException("Unknown record tag: " + tag);
+        }
+    }
+
+    /**
+     * Forgets all dictionary entries, for reading a stream that was written after {@link BinaryEncoder#reset()}.
+     */
+    public void reset() {
+        methodNames.clear();
+        types.clear();
+        previousTimestamp = 0;
+    }
+
+    private Event readEvent(ByteBuffer record) {
+        String methodName = methodNames.get((int) readVarLong(record));
+        long threadId = readVarLong(record);
+        long sequenceNumber = readZigZag(record);
+        long timestamp = previousTimestamp + readZigZag(record);
+        previousTimestamp = timestamp;
+        long duration = readVarLong(record) - 1;
+        Parameter target = readParameter(record);
+        Parameter[] parameters = new Parameter[(int) readVarLong(record)];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = readParameter(record);
+        }
+        Parameter result = readParameter(record);
+        return new Event(target, methodName, parameters, result, threadId, sequenceNumber, timestamp, duration);
+    }
+
+    private Parameter readParameter(ByteBuffer record) {
+        ParameterType type = types.get((int) readVarLong(record));
+        Object serializedValue = BinaryValues.read(record, type.getSerializedType());
+        return type.fromSerializedValue(type.getTypeName(), serializedValue);
+    }
+
+    private static ParameterType typeNamed(String typeName) {
+        ParameterType type = parameterFactory.forTypeName(typeName);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown parameter type: " + typeName);
+        }
+        return type;
+    }
+
+    private static <T> void define(List<T> dictionary, int code, T entry) {
+        if (code != dictionary.size()) {
+            throw new IllegalArgumentException("Dictionary entry " + code + " defined out of order");
+        }
+        dictionary.add(entry);
+    }
+}
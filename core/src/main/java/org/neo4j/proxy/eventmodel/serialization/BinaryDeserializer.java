@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+public class BinaryDeserializer implements Iterable<Event> {
+    private DataInputStream input;
+
+    public BinaryDeserializer(InputStream input) {
+        this.input = new DataInputStream(input);
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        try {
+            BinaryFormat.readHeader(input);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new Iterator<Event>() {
+            private final BinaryDecoder decoder = new BinaryDecoder();
+            private byte[] buffer = new byte[256];
+            private ByteBuffer block;
+            private Event event;
+
+            private void fillBuffer() {
+                try {
+                    while (event == null) {
+                        if (block != null && block.hasRemaining()) {
+                            ByteBuffer record = block.slice();
+                            int length = (int) BinaryFormat.readVarLong(record);
+                            record.limit(record.position() + length);
+                            block.position(block.position() + record.limit());
+                            event = decoder.decode(record);
+                            continue;
+                        }
+                        long length = BinaryFormat.readVarLong(input);
+                        if (length < 0) {
+                            return;
+                        }
+                        if (length > buffer.length) {
+                            buffer = new byte[(int) Math.max(length, buffer.length * 2L)];
+                        }
+                        input.readFully(buffer, 0, (int) length);
+                        ByteBuffer record = ByteBuffer.wrap(buffer, 0, (int) length);
+                        if (Compression.isCompressedBlock(record)) {
+                            block = Compression.expandBlock(record);
+                        } else {
+                            event = decoder.decode(record);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                fillBuffer();
+                return event != null;
+            }
+
+            @Override
+            public Event next() {
+                fillBuffer();
+                if (event == null) {
+                    throw new IllegalStateException("next() called at end of input");
+                }
+                Event result = event;
+                event = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.types.ParameterType;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.neo4j.proxy.eventmodel.serialization.BinaryFormat.*;
+
+/**
+ * Encodes events as binary records, keeping the dictionary of method names and parameter types that have
+ * already been defined in the stream. Not thread safe.
+ */
+public class BinaryEncoder {
+
+    private final Map<String, Integer> methodCodes = new HashMap<String, Integer>();
+    private final Map<ParameterType, Integer> typeCodes = new HashMap<ParameterType, Integer>();
+    private ByteBuffer body = ByteBuffer.allocate(256);
+    private ByteBuffer records = ByteBuffer.allocate(512);
+    private long previousTimestamp;
+
+    /**
+     * @return framed records for any new dictionary entries followed by the event itself, ready to be read.
+     * The buffer is reused by the next call.
+     */
+    public ByteBuffer encode(Event event) {
+        records.clear();
+        defineMethod(event.getMethodName());
+        defineType(event.getTarget());
+        for (Parameter parameter : event.getParameters()) {
+            defineType(parameter);
+        }
+        defineType(event.getResult());
+
+        while (true) {
+            try {
+                body.clear();
+                body.put(EVENT);
+                writeEvent(event);
+                break;
+            } catch (BufferOverflowException e) {
+                body = ByteBuffer.allocate(body.capacity() * 2);
+            }
+        }
+        appendRecord();
+        previousTimestamp = event.getTimestamp();
+        records.flip();
+        return records;
+    }
+
+    /**
+     * Forgets all dictionary entries, so that the next event starts a self-contained stream.
+     */
+    public void reset() {
+        methodCodes.clear();
+        typeCodes.clear();
+        previousTimestamp = 0;
+    }
+
+    /**
+     * Forgets all dictionary entries, as {@link #reset()} does, and returns a framed reset record that tells the
+     * decoder to do the same, ready to be read. The buffer is reused by the next call.
+     */
+    public ByteBuffer encodeReset() {
+        reset();
+        records.clear();
+        body.clear();
+        body.put(RESET);
+        appendRecord();
+        records.flip();
+        return records;
+    }
+
+    private void writeEvent(Event event) {
+        writeVarLong(body, methodCodes.get(event.getMethodName()));
+        writeVarLong(body, event.getThreadId());
+        writeZigZag(body, event.getSequenceNumber());
+        writeZigZag(body, event.getTimestamp() - previousTimestamp);
+        writeVarLong(body, event.getDuration() + 1);
+        writeParameter(event.getTarget());
+        Parameter[] parameters = event.getParameters();
+        writeVarLong(body, parameters.length);
+        for (Parameter parameter : parameters) {
+            writeParameter(parameter);
+        }
+        writeParameter(event.getResult());
+    }
+
+    private void writeParameter(Parameter parameter) {
+        ParameterType type = parameter.getType();
+        writeVarLong(body, typeCodes.get(type));
+        BinaryValues.write(body, type.getSerializedType(), parameter.getValueForSerialization());
+    }
+
+    private void defineMethod(String methodName) {
+        if (!methodCodes.containsKey(methodName)) {
+            int code = methodCodes.size();
+            methodCodes.put(methodName, code);
+            appendDefinition(METHOD_DEFINITION, code, methodName);
+        }
+    }
+
+    private void defineType(Parameter parameter) {
+        ParameterType type = parameter.getType();
+        if (!typeCodes.containsKey(type)) {
+            int code = typeCodes.size();
+            typeCodes.put(type, code);
+            appendDefinition(TYPE_DEFINITION, code, type.getTypeName());
+        }
+    }
+
+    private void appendDefinition(byte tag, int code, String name) {
+        while (true) {
+            try {
+                body.clear();
+                body.put(tag);
+                writeVarLong(body, code);
+                BinaryValues.writeString(body, name);
+                break;
+            } catch (BufferOverflowException e) {
+                body = ByteBuffer.allocate(body.capacity() * 2);
+            }
+        }
+        appendRecord();
+    }
+
+    private void appendRecord() {
+        int length = body.position();
+        int required = varLongLength(length) + length;
+        if (records.remaining() < required) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(records.capacity() * 2, records.position() + required));
+            records.flip();
+            larger.put(records);
+            records = larger;
+        }
+        writeVarLong(records, length);
+        records.put(body.array(), 0, length);
+    }
+}
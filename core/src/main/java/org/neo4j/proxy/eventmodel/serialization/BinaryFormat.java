@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the binary event log.
+ *
+ * A log starts with {@link #MAGIC} followed by a version byte, then a sequence of records. Every record is
+ * a varint length followed by that many bytes: a tag byte and the record body. Method names and parameter
+ * types are written once as definition records, and events refer to them by their dictionary code.
+ *
+ * An event holds the method code, the recording thread id, its sequence number, the timestamp as the difference
+ * from the previous event's timestamp, and the duration plus one, so that zero means it was not measured;
+ * then the target, the arguments and the result. A reset record clears the dictionary, so that reading can
+ * start at any reset record. A compressed record holds a block of framed records, starting with a reset
+ * record: a byte naming the {@link Compression}, the varint length of the records, and then the compressed
+ * records.
+ */
+public final class BinaryFormat {
+
+    public static final byte[] MAGIC = {'N', '4', 'J', 'P'};
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    public static final byte EVENT = 0;
+    public static final byte METHOD_DEFINITION = 1;
+    public static final byte TYPE_DEFINITION = 2;
+    public static final byte RESET = 3;
+    public static final byte COMPRESSED = 4;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private BinaryFormat() {
+    }
+
+    public static void writeHeader(ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+    }
+
+    public static void readHeader(ByteBuffer buffer) {
+        for (byte expected : MAGIC) {
+            if (buffer.get() != expected) {
+                throw new IllegalArgumentException("Not a binary event log");
+            }
+        }
+        checkVersion(buffer.get());
+    }
+
+    public static void readHeader(InputStream in) throws IOException {
+        for (byte expected : MAGIC) {
+            if (in.read() != expected) {
+                throw new IllegalArgumentException("Not a binary event log");
+            }
+        }
+        checkVersion((byte) in.read());
+    }
+
+    private static void checkVersion(byte version) {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary event log version: " + version);
+        }
+    }
+
+    public static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * @return the decoded value, or -1 if the stream ended before the first byte
+     */
+    public static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Truncated varint");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static void writeZigZag(ByteBuffer buffer, long value) {
+        writeVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readZigZag(ByteBuffer buffer) {
+        long encoded = readVarLong(buffer);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    public static int varLongLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
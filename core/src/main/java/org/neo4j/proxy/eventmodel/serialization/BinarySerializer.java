@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes events in the binary format. With a {@link Compression} other than none, events are collected into
+ * blocks of the given number of events, and each block is written as one compressed record.
+ */
+public class BinarySerializer implements Event.Listener, Flushable {
+
+    public static final int DEFAULT_EVENTS_PER_BLOCK = 1024;
+
+    private final OutputStream output;
+    private final BinaryEncoder encoder = new BinaryEncoder();
+    private final Compression compression;
+    private final int eventsPerBlock;
+    private ByteBuffer block;
+    private int blockEvents;
+
+    public BinarySerializer(OutputStream output) {
+        this(output, Compression.NONE, DEFAULT_EVENTS_PER_BLOCK);
+    }
+
+    public BinarySerializer(OutputStream output, Compression compression, int eventsPerBlock) {
+        if (eventsPerBlock <= 0) {
+            throw new IllegalArgumentException("Events per block must be positive: " + eventsPerBlock);
+        }
+        this.output = output;
+        this.compression = compression;
+        this.eventsPerBlock = eventsPerBlock;
+        if (compression != Compression.NONE) {
+            block = ByteBuffer.allocate(64 * 1024);
+        }
+        ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_LENGTH);
+        BinaryFormat.writeHeader(header);
+        write(header.array(), header.position());
+    }
+
+    public synchronized void onEvent(Event event) {
+        if (compression == Compression.NONE) {
+            ByteBuffer records = encoder.encode(event);
+            write(records.array(), records.limit());
+            return;
+        }
+        if (blockEvents == 0) {
+            append(encoder.encodeReset());
+        }
+        append(encoder.encode(event));
+        if (++blockEvents == eventsPerBlock) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the events of a partly filled block as a block of their own, and flushes the output.
+     */
+    public synchronized void flush() {
+        if (blockEvents > 0) {
+            writeBlock();
+        }
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void append(ByteBuffer records) {
+        if (block.remaining() < records.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(block.capacity() * 2, block.position() + records.remaining()));
+            block.flip();
+            larger.put(block);
+            block = larger;
+        }
+        block.put(records);
+    }
+
+    private void writeBlock() {
+        ByteBuffer compressed = compression.compressBlock(block.array(), block.position());
+        write(compressed.array(), compressed.limit());
+        block.clear();
+        blockEvents = 0;
+    }
+
+    private void write(byte[] bytes, int length) {
+        try {
+            output.write(bytes, 0, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.neo4j.proxy.eventmodel.serialization.BinaryFormat.*;
+
+/**
+ * Binary encodings of parameter values, chosen by {@link org.neo4j.proxy.eventmodel.parameter.types.ParameterType#getSerializedType()}.
+ *
+ * Entity ids and surrogate identifiers are unsigned varints, other integral values are zig-zag varints, and
+ * arrays are a varint length followed by the raw elements. Arrays of objects have a bitmap of their elements
+ * that are not null between the two, and leave the null elements out.
+ */
+final class BinaryValues {
+
+    private static abstract class Codec {
+        abstract void write(ByteBuffer buffer, Object value);
+
+        abstract Object read(ByteBuffer buffer);
+    }
+
+    private static final Map<Class, Codec> codecs = new HashMap<Class, Codec>();
+
+    static {
+        codecs.put(long.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                writeVarLong(buffer, (Long) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return readVarLong(buffer);
+            }
+        });
+        codecs.put(int.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                writeVarLong(buffer, (Integer) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return (int) readVarLong(buffer);
+            }
+        });
+        codecs.put(String.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                writeString(buffer, (String) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return readString(buffer);
+            }
+        });
+        codecs.put(Boolean.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                buffer.put((byte) ((Boolean) value ? 1 : 0));
+            }
+
+            Object read(ByteBuffer buffer) {
+                return buffer.get() != 0;
+            }
+        });
+        codecs.put(Byte.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                buffer.put((Byte) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return buffer.get();
+            }
+        });
+        codecs.put(Integer.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                writeZigZag(buffer, (Integer) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return (int) readZigZag(buffer);
+            }
+        });
+        codecs.put(Long.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                writeZigZag(buffer, (Long) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return readZigZag(buffer);
+            }
+        });
+        codecs.put(Float.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                buffer.putFloat((Float) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return buffer.getFloat();
+            }
+        });
+        codecs.put(Double.class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                buffer.putDouble((Double) value);
+            }
+
+            Object read(ByteBuffer buffer) {
+                return buffer.getDouble();
+            }
+        });
+        codecs.put(boolean[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                boolean[] array = (boolean[]) value;
+                writeVarLong(buffer, array.length);
+                for (boolean element : array) {
+                    buffer.put((byte) (element ? 1 : 0));
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                boolean[] array = new boolean[readLength(buffer)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = buffer.get() != 0;
+                }
+                return array;
+            }
+        });
+        codecs.put(Boolean[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                Boolean[] array = (Boolean[]) value;
+                writePresence(buffer, array);
+                for (Boolean element : array) {
+                    if (element != null) {
+                        buffer.put((byte) (element ? 1 : 0));
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                Boolean[] array = new Boolean[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = buffer.get() != 0;
+                    }
+                }
+                return array;
+            }
+        });
+        codecs.put(byte[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                byte[] array = (byte[]) value;
+                writeVarLong(buffer, array.length);
+                buffer.put(array);
+            }
+
+            Object read(ByteBuffer buffer) {
+                byte[] array = new byte[readLength(buffer)];
+                buffer.get(array);
+                return array;
+            }
+        });
+        codecs.put(Byte[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                Byte[] array = (Byte[]) value;
+                writePresence(buffer, array);
+                for (Byte element : array) {
+                    if (element != null) {
+                        buffer.put(element);
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                Byte[] array = new Byte[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = buffer.get();
+                    }
+                }
+                return array;
+            }
+        });
+        codecs.put(int[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                int[] array = (int[]) value;
+                writeVarLong(buffer, array.length);
+                ensureRemaining(buffer, array.length * 4);
+                buffer.asIntBuffer().put(array);
+                buffer.position(buffer.position() + array.length * 4);
+            }
+
+            Object read(ByteBuffer buffer) {
+                int[] array = new int[readLength(buffer)];
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 4);
+                return array;
+            }
+        });
+        codecs.put(Integer[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                Integer[] array = (Integer[]) value;
+                writePresence(buffer, array);
+                for (Integer element : array) {
+                    if (element != null) {
+                        buffer.putInt(element);
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                Integer[] array = new Integer[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = buffer.getInt();
+                    }
+                }
+                return array;
+            }
+        });
+        codecs.put(long[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                long[] array = (long[]) value;
+                writeVarLong(buffer, array.length);
+                ensureRemaining(buffer, array.length * 8);
+                buffer.asLongBuffer().put(array);
+                buffer.position(buffer.position() + array.length * 8);
+            }
+
+            Object read(ByteBuffer buffer) {
+                long[] array = new long[readLength(buffer)];
+                buffer.asLongBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 8);
+                return array;
+            }
+        });
+        codecs.put(Long[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                Long[] array = (Long[]) value;
+                writePresence(buffer, array);
+                for (Long element : array) {
+                    if (element != null) {
+                        buffer.putLong(element);
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                Long[] array = new Long[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = buffer.getLong();
+                    }
+                }
+                return array;
+            }
+        });
+        codecs.put(float[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                float[] array = (float[]) value;
+                writeVarLong(buffer, array.length);
+                ensureRemaining(buffer, array.length * 4);
+                buffer.asFloatBuffer().put(array);
+                buffer.position(buffer.position() + array.length * 4);
+            }
+
+            Object read(ByteBuffer buffer) {
+                float[] array = new float[readLength(buffer)];
+                buffer.asFloatBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 4);
+                return array;
+            }
+        });
+        codecs.put(Float[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                Float[] array = (Float[]) value;
+                writePresence(buffer, array);
+                for (Float element : array) {
+                    if (element != null) {
+                        buffer.putFloat(element);
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                Float[] array = new Float[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = buffer.getFloat();
+                    }
+                }
+                return array;
+            }
+        });
+        codecs.put(double[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                double[] array = (double[]) value;
+                writeVarLong(buffer, array.length);
+                ensureRemaining(buffer, array.length * 8);
+                buffer.asDoubleBuffer().put(array);
+                buffer.position(buffer.position() + array.length * 8);
+            }
+
+            Object read(ByteBuffer buffer) {
+                double[] array = new double[readLength(buffer)];
+                buffer.asDoubleBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 8);
+                return array;
+            }
+        });
+        codecs.put(Double[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                Double[] array = (Double[]) value;
+                writePresence(buffer, array);
+                for (Double element : array) {
+                    if (element != null) {
+                        buffer.putDouble(element);
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                Double[] array = new Double[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = buffer.getDouble();
+                    }
+                }
+                return array;
+            }
+        });
+        codecs.put(String[].class, new Codec() {
+            void write(ByteBuffer buffer, Object value) {
+                String[] array = (String[]) value;
+                writePresence(buffer, array);
+                for (String element : array) {
+                    if (element != null) {
+                        writeString(buffer, element);
+                    }
+                }
+            }
+
+            Object read(ByteBuffer buffer) {
+                String[] array = new String[readLength(buffer)];
+                byte[] presence = readPresence(buffer, array.length);
+                for (int i = 0; i < array.length; i++) {
+                    if (isPresent(presence, i)) {
+                        array[i] = readString(buffer);
+                    }
+                }
+                return array;
+            }
+        });
+    }
+
+    private BinaryValues() {
+    }
+
+    static void write(ByteBuffer buffer, Class serializedType, Object value) {
+        codec(serializedType).write(buffer, value);
+    }
+
+    static Object read(ByteBuffer buffer, Class serializedType) {
+        return codec(serializedType).read(buffer);
+    }
+
+    private static Codec codec(Class serializedType) {
+        Codec codec = codecs.get(serializedType);
+        if (codec == null) {
+            throw new IllegalArgumentException("No binary encoding for " + serializedType);
+        }
+        return codec;
+    }
+
+    static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(UTF8);
+        writeVarLong(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = readLength(buffer);
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, UTF8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Writes the length of an array of objects followed by a bitmap of its elements that are not null, so that
+     * only those need to be written.
+     */
+    private static void writePresence(ByteBuffer buffer, Object[] array) {
+        writeVarLong(buffer, array.length);
+        byte bits = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] != null) {
+                bits |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7 || i == array.length - 1) {
+                buffer.put(bits);
+                bits = 0;
+            }
+        }
+    }
+
+    private static byte[] readPresence(ByteBuffer buffer, int length) {
+        byte[] presence = new byte[(length + 7) / 8];
+        buffer.get(presence);
+        return presence;
+    }
+
+    private static boolean isPresent(byte[] presence, int index) {
+        return (presence[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    private static int readLength(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    private static void ensureRemaining(ByteBuffer buffer, int length) {
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.neo4j.proxy.eventmodel.serialization.BinaryFormat.*;
+
+/**
+ * How a block of binary records is compressed into a single compressed record. Each block starts with a
+ * reset record, so blocks can be expanded and decoded independently of each other, on separate threads.
+ */
+public enum Compression {
+
+    /**
+     * Records are written as they are, without blocks.
+     */
+    NONE((byte) 0) {
+        int compress(byte[] input, int length, byte[] output) {
+            System.arraycopy(input, 0, output, 0, length);
+            return length;
+        }
+
+        void decompress(byte[] input, int offset, int length, byte[] output) {
+            System.arraycopy(input, offset, output, 0, length);
+        }
+    },
+
+    /**
+     * Fast enough to compress while recording.
+     */
+    LZ4((byte) 1) {
+        int compress(byte[] input, int length, byte[] output) {
+            return Lz4.compress(input, length, output);
+        }
+
+        void decompress(byte[] input, int offset, int length, byte[] output) {
+            if (Lz4.decompress(input, offset, length, output) != output.length) {
+                throw new IllegalArgumentException("Compressed block expanded to the wrong length");
+            }
+        }
+    },
+
+    /**
+     * Smaller and slower, for archiving.
+     */
+    DEFLATE((byte) 2) {
+        int compress(byte[] input, int length, byte[] output) {
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(input, 0, length);
+                deflater.finish();
+                int compressed = deflater.deflate(output);
+                if (!deflater.finished()) {
+                    throw new IllegalStateException("Deflated block does not fit in " + output.length + " bytes");
+                }
+                return compressed;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        void decompress(byte[] input, int offset, int length, byte[] output) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(input, offset, length);
+                if (inflater.inflate(output) != output.length || !inflater.finished()) {
+                    throw new IllegalArgumentException("Compressed block expanded to the wrong length");
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Malformed compressed block", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    private final byte code;
+
+    Compression(byte code) {
+        this.code = code;
+    }
+
+    abstract int compress(byte[] input, int length, byte[] output);
+
+    abstract void decompress(byte[] input, int offset, int length, byte[] output);
+
+    /**
+     * @param records framed records, starting with a reset record
+     * @return a framed compressed record holding them, ready to be read
+     */
+    public ByteBuffer compressBlock(byte[] records, int length) {
+        byte[] compressed = new byte[Lz4.maxCompressedLength(length) + 64];
+        int compressedLength = compress(records, length, compressed);
+        int bodyLength = 2 + varLongLength(length) + compressedLength;
+        ByteBuffer block = ByteBuffer.allocate(varLongLength(bodyLength) + bodyLength);
+        writeVarLong(block, bodyLength);
+        block.put(COMPRESSED);
+        block.put(code);
+        writeVarLong(block, length);
+        block.put(compressed, 0, compressedLength);
+        block.flip();
+        return block;
+    }
+
+    /**
+     * @return whether the record, from its tag up to its limit, is a compressed block
+     */
+    public static boolean isCompressedBlock(ByteBuffer record) {
+        return record.get(record.position()) == COMPRESSED;
+    }
+
+    /**
+     * @param record a compressed record, from its tag up to its limit
+     * @return the framed records it holds, ready to be read
+     */
+    public static ByteBuffer expandBlock(ByteBuffer record) {
+        record = record.duplicate();
+        if (record.get() != COMPRESSED) {
+            throw new IllegalArgumentException("Not a compressed block");
+        }
+        Compression compression = forCode(record.get());
+        byte[] records = new byte[(int) readVarLong(record)];
+        if (record.hasArray()) {
+            compression.decompress(record.array(), record.arrayOffset() + record.position(), record.remaining(), records);
+        } else {
+            byte[] compressed = new byte[record.remaining()];
+            record.get(compressed);
+            compression.decompress(compressed, 0, compressed.length, records);
+        }
+        return ByteBuffer.wrap(records);
+    }
+
+    private static Compression forCode(byte code) {
+        for (Compression compression : values()) {
+            if (compression.code == code) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression: " + code);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.parameter.types.ParameterType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class JacksonAdaptor {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static JsonFactory jsonFactory() {
+        return mapper.getJsonFactory();
+    }
+
+    public static JsonNode serializeEvent(Event event) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put("target", serializeParameter(event.getTarget()));
+        node.put("method", event.getMethodName());
+        node.put("args", serializeArguments(event.getParameters()));
+        node.put("result", serializeParameter(event.getResult()));
+        node.put("thread", event.getThreadId());
+        node.put("seq", event.getSequenceNumber());
+        node.put("time", event.getTimestamp());
+        if (event.getDuration() != Event.NO_DURATION) {
+            node.put("duration", event.getDuration());
+        }
+        return node;
+    }
+
+    public static Event parseEvent(JsonNode node) {
+        JsonNode thread = node.get("thread");
+        JsonNode sequenceNumber = node.get("seq");
+        JsonNode timestamp = node.get("time");
+        JsonNode duration = node.get("duration");
+        return new Event(
+                parseParameter(node.get("target")),
+                node.get("method").getTextValue(),
+                parseArguments(node.get("args")),
+                parseParameter(node.get("result")),
+                thread == null ? 0 : thread.getLongValue(),
+                sequenceNumber == null ? Event.NO_SEQUENCE_NUMBER : sequenceNumber.getLongValue(),
+                timestamp == null ? Event.NO_TIMESTAMP : timestamp.getLongValue(),
+                duration == null ? Event.NO_DURATION : duration.getLongValue());
+    }
+
+    public static JsonNode serializeArguments(Parameter[] arguments) {
+        ArrayNode arrayNode = JsonNodeFactory.instance.arrayNode();
+        for (Parameter argument : arguments) {
+            arrayNode.add(serializeParameter(argument));
+        }
+        return arrayNode;
+    }
+
+    public static Parameter[] parseArguments(JsonNode arguments) {
+        Iterator<JsonNode> elements = arguments.getElements();
+        List<Parameter> parameters = new ArrayList<Parameter>();
+        while (elements.hasNext()) {
+            parameters.add(parseParameter(elements.next()));
+        }
+        return parameters.toArray(new Parameter[parameters.size()]);
+    }
+
+    public static JsonNode serializeParameter(Parameter argument) {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+
+        String type = argument.getType().getTypeName();
+
+        Object value = argument.getValueForSerialization();
+        if (value instanceof byte[]) {
+            node.put(type, JsonNodeFactory.instance.binaryNode((byte[]) value));
+        } else {
+            node.put(type, mapper.<JsonNode>valueToTree(value));
+        }
+
+        return node;
+    }
+
+    private static final ParameterFactory parameterFactory = new ParameterFactory();
+
+    public static Parameter parseParameter(JsonNode jsonNode) {
+        Iterator<Map.Entry<String, JsonNode>> fields = ((ObjectNode) jsonNode).getFields();
+        Map.Entry<String, JsonNode> entry = fields.next();
+        if (fields.hasNext()) {
+            throw new IllegalArgumentException("Parameter should only have one field");
+        }
+        String typeName = entry.getKey();
+        ParameterType type = typeNamed(typeName);
+        if (type == null) {
+            throw new IllegalArgumentException("Cannot parse parameter: " + jsonNode);
+        }
+        try {
+            Object serializedValue = mapper.<Object>treeToValue(entry.getValue(), type.getSerializedType());
+            return type.fromSerializedValue(typeName, serializedValue);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ParameterType typeNamed(String typeName) {
+        return parameterFactory.forTypeName(typeName);
+    }
+
+    /**
+     * Writes the same JSON as {@link #serializeEvent(Event)}, without building a tree.
+     */
+    public static void writeEvent(Event event, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("target");
+        writeParameter(event.getTarget(), generator);
+        generator.writeFieldName("method");
+        generator.writeString(event.getMethodName());
+        generator.writeFieldName("args");
+        generator.writeStartArray();
+        for (Parameter argument : event.getParameters()) {
+            writeParameter(argument, generator);
+        }
+        generator.writeEndArray();
+        generator.writeFieldName("result");
+        writeParameter(event.getResult(), generator);
+        generator.writeFieldName("thread");
+        generator.writeNumber(event.getThreadId());
+        generator.writeFieldName("seq");
+        generator.writeNumber(event.getSequenceNumber());
+        generator.writeFieldName("time");
+        generator.writeNumber(event.getTimestamp());
+        if (event.getDuration() != Event.NO_DURATION) {
+            generator.writeFieldName("duration");
+            generator.writeNumber(event.getDuration());
+        }
+        generator.writeEndObject();
+    }
+
+    public static void writeParameter(Parameter argument, JsonGenerator generator) throws IOException {
+        ParameterType type = argument.getType();
+        generator.writeStartObject();
+        generator.writeFieldName(type.getTypeName());
+        JacksonValues.write(generator, type.getSerializedType(), argument.getValueForSerialization());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads an event straight into {@link Parameter}s, without building a tree.
+     *
+     * @param parser positioned on the start of the event object; left on its end
+     */
+    public static Event readEvent(JsonParser parser) throws IOException {
+        expect(JsonToken.START_OBJECT, parser.getCurrentToken());
+        Parameter target = null;
+        String methodName = null;
+        Parameter[] arguments = null;
+        Parameter result = null;
+        long threadId = 0;
+        long sequenceNumber = Event.NO_SEQUENCE_NUMBER;
+        long timestamp = Event.NO_TIMESTAMP;
+        long duration = Event.NO_DURATION;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("target".equals(field)) {
+                target = readParameter(parser);
+            } else if ("method".equals(field)) {
+                methodName = parser.getText();
+            } else if ("args".equals(field)) {
+                arguments = readArguments(parser);
+            } else if ("result".equals(field)) {
+                result = readParameter(parser);
+            } else if ("thread".equals(field)) {
+                threadId = parser.getLongValue();
+            } else if ("seq".equals(field)) {
+                sequenceNumber = parser.getLongValue();
+            } else if ("time".equals(field)) {
+                timestamp = parser.getLongValue();
+            } else if ("duration".equals(field)) {
+                duration = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        expect(JsonToken.END_OBJECT, parser.getCurrentToken());
+        return new Event(target, methodName, arguments, result, threadId, sequenceNumber, timestamp, duration);
+    }
+
+    private static Parameter[] readArguments(JsonParser parser) throws IOException {
+        expect(JsonToken.START_ARRAY, parser.getCurrentToken());
+        List<Parameter> parameters = new ArrayList<Parameter>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parameters.add(readParameter(parser));
+        }
+        return parameters.toArray(new Parameter[parameters.size()]);
+    }
+
+    /**
+     * @param parser positioned on the start of the parameter object; left on its end
+     */
+    public static Parameter readParameter(JsonParser parser) throws IOException {
+        expect(JsonToken.START_OBJECT, parser.getCurrentToken());
+        expect(JsonToken.FIELD_NAME, parser.nextToken());
+        String typeName = parser.getCurrentName();
+        ParameterType type = typeNamed(typeName);
+        if (type == null) {
+            throw new IllegalArgumentException("Cannot parse parameter of type: " + typeName);
+        }
+        parser.nextToken();
+        Object serializedValue = JacksonValues.read(parser, type.getSerializedType());
+        if (parser.nextToken() != JsonToken.END_OBJECT) {
+            throw new IllegalArgumentException("Parameter should only have one field");
+        }
+        return type.fromSerializedValue(typeName, serializedValue);
+    }
+
+    private static void expect(JsonToken expected, JsonToken actual) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " but found " + actual);
+        }
+    }
+}
@@ -19,16 +19,20 @@
  */
 package org.neo4j.proxy.eventmodel.serialization;
 
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.neo4j.proxy.eventmodel.Event;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.Iterator;
 
+/**
+ * Reads events written by {@link JacksonSerializer}, streaming through a single {@link JsonParser} over the
+ * whole reader rather than building a tree per line.
+ */
 public class JacksonDeserializer implements Iterable<Event> {
     private BufferedReader reader;
-    ObjectMapper mapper = new ObjectMapper();
 
     public JacksonDeserializer(BufferedReader reader) {
         this.reader = reader;
@@ -36,13 +40,19 @@ public class JacksonDeserializer implements Iterable<Event> {
 
     @Override
     public Iterator<Event> iterator() {
+        final JsonParser parser;
+        try {
+            parser = JacksonAdaptor.jsonFactory().createJsonParser(reader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         return new Iterator<Event>() {
-            private String line;
+            private JsonToken token;
 
             private void fillBuffer() {
-                if (line == null) {
+                if (token == null) {
                     try {
-                        line = reader.readLine();
+                        token = parser.nextToken();
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
@@ -52,22 +62,22 @@ public class JacksonDeserializer implements Iterable<Event> {
             @Override
             public boolean hasNext() {
                 fillBuffer();
-                return line != null;
+                return token != null;
             }
 
             @Override
             public Event next() {
                 fillBuffer();
-                if (line == null) {
+                if (token == null) {
                     throw new IllegalStateException("next() called at end of reader");
                 }
                 Event event = null;
                 try {
-                    event = JacksonAdaptor.parseEvent(mapper.readTree(line));
+                    event = JacksonAdaptor.readEvent(parser);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
-                line = null;
+                token = null;
                 return event;
             }
 
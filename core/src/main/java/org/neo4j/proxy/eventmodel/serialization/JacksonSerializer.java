@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.PrettyPrinter;
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Writes one JSON event per line, streaming through a single {@link JsonGenerator} rather than building a tree
+ * per event. Only the {@link OutputStream} constructor streams all the way to the output; with a
+ * {@link PrintWriter}, each event is still generated into a String that is printed as a line.
+ */
+public class JacksonSerializer implements Event.Listener, Flushable {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private PrintWriter writer;
+    private StringWriter lineBuffer;
+    private JsonGenerator generator;
+
+    /**
+     * Prints each event to the writer with {@link PrintWriter#println(String)}, which costs a String per event.
+     */
+    public JacksonSerializer(PrintWriter writer) {
+        this.writer = writer;
+        this.lineBuffer = new StringWriter();
+        try {
+            this.generator = JacksonAdaptor.jsonFactory().createJsonGenerator(lineBuffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        generator.setPrettyPrinter(new RootValuesWithoutSeparator());
+    }
+
+    /**
+     * Writes UTF-8 straight to the stream, without an intermediate String per event.
+     */
+    public JacksonSerializer(OutputStream output) {
+        try {
+            this.generator = JacksonAdaptor.jsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        generator.setPrettyPrinter(new RootValuesWithoutSeparator());
+    }
+
+    public synchronized void onEvent(Event event) {
+        try {
+            JacksonAdaptor.writeEvent(event, generator);
+            if (writer != null) {
+                generator.flush();
+                writer.println(lineBuffer.toString());
+                lineBuffer.getBuffer().setLength(0);
+            } else {
+                generator.writeRaw(LINE_SEPARATOR);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void flush() {
+        if (writer != null) {
+            writer.flush();
+        } else {
+            try {
+                generator.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Compact output like the default, except that consecutive events are not separated by a space, because
+     * the serializer ends each one with a line separator itself.
+     */
+    private static class RootValuesWithoutSeparator implements PrettyPrinter {
+        public void writeRootValueSeparator(JsonGenerator generator) {
+        }
+
+        public void writeStartObject(JsonGenerator generator) throws IOException {
+            generator.writeRaw('{');
+        }
+
+        public void writeEndObject(JsonGenerator generator, int numberOfEntries) throws IOException {
+            generator.writeRaw('}');
+        }
+
+        public void writeObjectEntrySeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(',');
+        }
+
+        public void writeObjectFieldValueSeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(':');
+        }
+
+        public void writeStartArray(JsonGenerator generator) throws IOException {
+            generator.writeRaw('[');
+        }
+
+        public void writeEndArray(JsonGenerator generator, int numberOfValues) throws IOException {
+            generator.writeRaw(']');
+        }
+
+        public void writeArrayValueSeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(',');
+        }
+
+        public void beforeArrayValues(JsonGenerator generator) {
+        }
+
+        public void beforeObjectEntries(JsonGenerator generator) {
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON encodings of parameter values, chosen by
+ * {@link org.neo4j.proxy.eventmodel.parameter.types.ParameterType#getSerializedType()}.
+ *
+ * The output is the same as that of {@link JacksonAdaptor#serializeParameter}, which goes through
+ * {@code ObjectMapper.valueToTree}; in particular floats are written widened to doubles, as the tree model does.
+ * Primitive arrays are written straight from the primitive array, with byte arrays as base64 strings. Null
+ * elements of arrays of objects are written as null.
+ */
+final class JacksonValues {
+
+    private static abstract class Codec {
+        abstract void write(JsonGenerator generator, Object value) throws IOException;
+
+        abstract Object read(JsonParser parser) throws IOException;
+    }
+
+    private static final Map<Class, Codec> codecs = new HashMap<Class, Codec>();
+
+    static {
+        Codec longCodec = new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Long) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return parser.getLongValue();
+            }
+        };
+        codecs.put(long.class, longCodec);
+        codecs.put(Long.class, longCodec);
+        Codec intCodec = new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Integer) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return parser.getIntValue();
+            }
+        };
+        codecs.put(int.class, intCodec);
+        codecs.put(Integer.class, intCodec);
+        codecs.put(String.class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeString((String) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return parser.getText();
+            }
+        });
+        codecs.put(Boolean.class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeBoolean((Boolean) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return readBoolean(parser);
+            }
+        });
+        codecs.put(Byte.class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Byte) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return (byte) parser.getIntValue();
+            }
+        });
+        codecs.put(Float.class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((double) (Float) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return parser.getFloatValue();
+            }
+        });
+        codecs.put(Double.class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeNumber((Double) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                return parser.getDoubleValue();
+            }
+        });
+        codecs.put(boolean[].class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeStartArray();
+                for (boolean element : (boolean[]) value) {
+                    generator.writeBoolean(element);
+                }
+                generator.writeEndArray();
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                boolean[] array = new boolean[8];
+                int length = 0;
+                while (nextElement(parser)) {
+                    if (length == array.length) {
+                        boolean[] larger = new boolean[length * 2];
+                        System.arraycopy(array, 0, larger, 0, length);
+                        array = larger;
+                    }
+                    array[length++] = readBoolean(parser);
+                }
+                boolean[] result = new boolean[length];
+                System.arraycopy(array, 0, result, 0, length);
+                return result;
+            }
+        });
+        codecs.put(byte[].class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeBinary((byte[]) value);
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                    return parser.getBinaryValue();
+                }
+                return readLegacyByteArray(parser);
+            }
+        });
+        codecs.put(int[].class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeStartArray();
+                for (int element : (int[]) value) {
+                    generator.writeNumber(element);
+                }
+                generator.writeEndArray();
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                int[] array = new int[8];
+                int length = 0;
+                while (nextElement(parser)) {
+                    if (length == array.length) {
+                        int[] larger = new int[length * 2];
+                        System.arraycopy(array, 0, larger, 0, length);
+                        array = larger;
+                    }
+                    array[length++] = parser.getIntValue();
+                }
+                int[] result = new int[length];
+                System.arraycopy(array, 0, result, 0, length);
+                return result;
+            }
+        });
+        codecs.put(long[].class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeStartArray();
+                for (long element : (long[]) value) {
+                    generator.writeNumber(element);
+                }
+                generator.writeEndArray();
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                long[] array = new long[8];
+                int length = 0;
+                while (nextElement(parser)) {
+                    if (length == array.length) {
+                        long[] larger = new long[length * 2];
+                        System.arraycopy(array, 0, larger, 0, length);
+                        array = larger;
+                    }
+                    array[length++] = parser.getLongValue();
+                }
+                long[] result = new long[length];
+                System.arraycopy(array, 0, result, 0, length);
+                return result;
+            }
+        });
+        codecs.put(float[].class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeStartArray();
+                for (float element : (float[]) value) {
+                    generator.writeNumber((double) element);
+                }
+                generator.writeEndArray();
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                float[] array = new float[8];
+                int length = 0;
+                while (nextElement(parser)) {
+                    if (length == array.length) {
+                        float[] larger = new float[length * 2];
+                        System.arraycopy(array, 0, larger, 0, length);
+                        array = larger;
+                    }
+                    array[length++] = parser.getFloatValue();
+                }
+                float[] result = new float[length];
+                System.arraycopy(array, 0, result, 0, length);
+                return result;
+            }
+        });
+        codecs.put(double[].class, new Codec() {
+            void write(JsonGenerator generator, Object value) throws IOException {
+                generator.writeStartArray();
+                for (double element : (double[]) value) {
+                    generator.writeNumber(element);
+                }
+                generator.writeEndArray();
+            }
+
+            Object read(JsonParser parser) throws IOException {
+                double[] array = new double[8];
+                int length = 0;
+                while (nextElement(parser)) {
+                    if (length == array.length) {
+                        double[] larger = new double[length * 2];
+                        System.arraycopy(array, 0, larger, 0, length);
+                        array = larger;
+                    }
+                    array[length++] = parser.getDoubleValue();
+                }
+                double[] result = new double[length];
+                System.arraycopy(array, 0, result, 0, length);
+                return result;
+            }
+        });
+        codecs.put(Boolean[].class, new ObjectArrayCodec(codecs.get(Boolean.class)) {
+            Object[] newArray(int length) {
+                return new Boolean[length];
+            }
+        });
+        codecs.put(Byte[].class, new ObjectArrayCodec(codecs.get(Byte.class)) {
+            Object[] newArray(int length) {
+                return new Byte[length];
+            }
+        });
+        codecs.put(Integer[].class, new ObjectArrayCodec(intCodec) {
+            Object[] newArray(int length) {
+                return new Integer[length];
+            }
+        });
+        codecs.put(Long[].class, new ObjectArrayCodec(longCodec) {
+            Object[] newArray(int length) {
+                return new Long[length];
+            }
+        });
+        codecs.put(Float[].class, new ObjectArrayCodec(codecs.get(Float.class)) {
+            Object[] newArray(int length) {
+                return new Float[length];
+            }
+        });
+        codecs.put(Double[].class, new ObjectArrayCodec(codecs.get(Double.class)) {
+            Object[] newArray(int length) {
+                return new Double[length];
+            }
+        });
+        codecs.put(String[].class, new ObjectArrayCodec(codecs.get(String.class)) {
+            Object[] newArray(int length) {
+                return new String[length];
+            }
+        });
+    }
+
+    private static abstract class ObjectArrayCodec extends Codec {
+        private final Codec elementCodec;
+
+        ObjectArrayCodec(Codec elementCodec) {
+            this.elementCodec = elementCodec;
+        }
+
+        abstract Object[] newArray(int length);
+
+        void write(JsonGenerator generator, Object value) throws IOException {
+            generator.writeStartArray();
+            for (Object element : (Object[]) value) {
+                if (element == null) {
+                    generator.writeNull();
+                } else {
+                    elementCodec.write(generator, element);
+                }
+            }
+            generator.writeEndArray();
+        }
+
+        Object read(JsonParser parser) throws IOException {
+            List<Object> elements = new ArrayList<Object>();
+            while (nextElement(parser)) {
+                elements.add(parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : elementCodec.read(parser));
+            }
+            return elements.toArray(newArray(elements.size()));
+        }
+    }
+
+    private JacksonValues() {
+    }
+
+    static void write(JsonGenerator generator, Class serializedType, Object value) throws IOException {
+        codec(serializedType).write(generator, value);
+    }
+
+    /**
+     * @param parser positioned on the first token of the value
+     */
+    static Object read(JsonParser parser, Class serializedType) throws IOException {
+        if (serializedType.isArray() && serializedType != byte[].class && parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected array but found " + parser.getCurrentToken());
+        }
+        return codec(serializedType).read(parser);
+    }
+
+    private static Codec codec(Class serializedType) {
+        Codec codec = codecs.get(serializedType);
+        if (codec == null) {
+            throw new IllegalArgumentException("No JSON encoding for " + serializedType);
+        }
+        return codec;
+    }
+
+    /**
+     * Byte arrays used to be boxed and written as arrays of numbers.
+     */
+    private static byte[] readLegacyByteArray(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected base64 string or array but found " + parser.getCurrentToken());
+        }
+        byte[] array = new byte[16];
+        int length = 0;
+        while (nextElement(parser)) {
+            if (length == array.length) {
+                byte[] larger = new byte[length * 2];
+                System.arraycopy(array, 0, larger, 0, length);
+                array = larger;
+            }
+            array[length++] = (byte) parser.getIntValue();
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    private static boolean readBoolean(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_TRUE) return true;
+        if (token == JsonToken.VALUE_FALSE) return false;
+        throw new IllegalArgumentException("Expected boolean but found " + token);
+    }
+
+    /**
+     * Advances to the next element of an array that the parser is positioned on the start of, or inside.
+     */
+    private static boolean nextElement(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new IllegalArgumentException("Unexpected end of input inside array");
+        }
+        return token != JsonToken.END_ARRAY;
+    }
+}
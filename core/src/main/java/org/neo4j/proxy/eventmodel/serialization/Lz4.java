@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+/**
+ * Compressor and decompressor for the LZ4 block format: a sequence of literal runs each followed by a copy
+ * of earlier output, found through a single-entry hash table. It trades ratio for speed, so that compressing
+ * a block costs less than encoding its events did.
+ */
+final class Lz4 {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_BITS = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private Lz4() {
+    }
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * @param output at least {@link #maxCompressedLength(int)} long
+     * @return the compressed length
+     */
+    static int compress(byte[] input, int length, byte[] output) {
+        int[] table = new int[1 << HASH_BITS];
+        int anchor = 0;
+        int in = 1;
+        int out = 0;
+        int limit = length - MATCH_FIND_LIMIT;
+        while (in <= limit) {
+            int sequence = readInt(input, in);
+            int hash = hash(sequence);
+            int candidate = table[hash];
+            table[hash] = in;
+            if (candidate >= in || in - candidate > MAX_DISTANCE || readInt(input, candidate) != sequence) {
+                in += 1 + ((in - anchor) >>> SKIP_TRIGGER);
+                continue;
+            }
+            while (in > anchor && candidate > 0 && input[in - 1] == input[candidate - 1]) {
+                in--;
+                candidate--;
+            }
+            int matchEnd = in + MIN_MATCH;
+            int reference = candidate + MIN_MATCH;
+            while (matchEnd < length - LAST_LITERALS && input[matchEnd] == input[reference]) {
+                matchEnd++;
+                reference++;
+            }
+            out = writeSequence(input, anchor, in - anchor, output, out, matchEnd - in - MIN_MATCH);
+            output[out++] = (byte) (in - candidate);
+            output[out++] = (byte) ((in - candidate) >>> 8);
+            out = writeLength(output, out, matchEnd - in - MIN_MATCH);
+            anchor = in = matchEnd;
+        }
+        return writeSequence(input, anchor, length - anchor, output, out, 0);
+    }
+
+    /**
+     * @return the decompressed length
+     */
+    static int decompress(byte[] input, int offset, int length, byte[] output) {
+        int in = offset;
+        int end = offset + length;
+        int out = 0;
+        try {
+            while (in < end) {
+                int token = input[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int extra;
+                    do {
+                        extra = input[in++] & 0xFF;
+                        literals += extra;
+                    } while (extra == 255);
+                }
+                System.arraycopy(input, in, output, out, literals);
+                in += literals;
+                out += literals;
+                if (in == end) {
+                    break;
+                }
+                int distance = (input[in++] & 0xFF) | (input[in++] & 0xFF) << 8;
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int extra;
+                    do {
+                        extra = input[in++] & 0xFF;
+                        matchLength += extra;
+                    } while (extra == 255);
+                }
+                matchLength += MIN_MATCH;
+                if (distance == 0 || distance > out) {
+                    throw new IllegalArgumentException("Malformed LZ4 block: match distance " + distance + " at " + out);
+                }
+                if (distance >= matchLength) {
+                    System.arraycopy(output, out - distance, output, out, matchLength);
+                    out += matchLength;
+                } else {
+                    for (int from = out - distance, to = out + matchLength; out < to; ) {
+                        output[out++] = output[from++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed LZ4 block", e);
+        }
+        return out;
+    }
+
+    private static int writeSequence(byte[] input, int anchor, int literals, byte[] output, int out, int matchLength) {
+        output[out++] = (byte) (Math.min(literals, 15) << 4 | Math.min(matchLength, 15));
+        out = writeLength(output, out, literals);
+        System.arraycopy(input, anchor, output, out, literals);
+        return out + literals;
+    }
+
+    private static int writeLength(byte[] output, int out, int length) {
+        if (length >= 15) {
+            length -= 15;
+            while (length >= 255) {
+                output[out++] = (byte) 255;
+                length -= 255;
+            }
+            output[out++] = (byte) length;
+        }
+        return out;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | bytes[offset + 3] << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads events written by {@link JacksonSerializer} on background threads, so that parsing overlaps with
+ * whatever the iterating thread does with the events. A reader thread splits the input into chunks of whole
+ * lines, a pool of parser threads turns each chunk into events, and the iterator hands out the chunks' events
+ * in the order the chunks were read. At most two chunks per parser thread are in flight at a time.
+ *
+ * Each call to {@link #iterator()} consumes the reader. An iterator that is abandoned before the end leaves
+ * its daemon threads waiting.
+ */
+public class ParallelJacksonDeserializer implements Iterable<Event> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    private static final Future<List<Event>> END = completed(new Callable<List<Event>>() {
+        public List<Event> call() {
+            return null;
+        }
+    });
+
+    private final Reader reader;
+    private final int parserThreads;
+    private final int chunkSize;
+
+    public ParallelJacksonDeserializer(Reader reader, int parserThreads) {
+        this(reader, parserThreads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize how many characters to read into each chunk; a chunk grows if one line does not fit
+     */
+    public ParallelJacksonDeserializer(Reader reader, int parserThreads, int chunkSize) {
+        if (parserThreads <= 0) {
+            throw new IllegalArgumentException("Parser threads must be positive: " + parserThreads);
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.reader = reader;
+        this.parserThreads = parserThreads;
+        this.chunkSize = chunkSize;
+    }
+
+    public Iterator<Event> iterator() {
+        return new Pipeline();
+    }
+
+    private static <T> Future<T> completed(Callable<T> callable) {
+        FutureTask<T> task = new FutureTask<T>(callable);
+        task.run();
+        return task;
+    }
+
+    private static List<Event> parse(String lines) {
+        List<Event> events = new ArrayList<Event>();
+        for (Event event : new JacksonDeserializer(new BufferedReader(new StringReader(lines)))) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private class Pipeline implements Iterator<Event> {
+        private final BlockingQueue<Future<List<Event>>> chunks = new ArrayBlockingQueue<Future<List<Event>>>(parserThreads * 2 + 1);
+        private final ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Neo4j proxy event parser");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        private Iterator<Event> chunk = Collections.<Event>emptyList().iterator();
+        private boolean finished;
+
+        Pipeline() {
+            Thread splitter = new Thread(new Splitter(), "Neo4j proxy event reader");
+            splitter.setDaemon(true);
+            splitter.start();
+        }
+
+        public boolean hasNext() {
+            while (!chunk.hasNext()) {
+                if (finished) {
+                    return false;
+                }
+                List<Event> events = nextChunk();
+                if (events == null) {
+                    finished = true;
+                    parsers.shutdown();
+                    return false;
+                }
+                chunk = events.iterator();
+            }
+            return true;
+        }
+
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<Event> nextChunk() {
+            try {
+                return chunks.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                finished = true;
+                parsers.shutdownNow();
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        private class Splitter implements Runnable {
+            public void run() {
+                Future<List<Event>> last = END;
+                try {
+                    split();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (final Exception e) {
+                    last = completed(new Callable<List<Event>>() {
+                        public List<Event> call() throws Exception {
+                            throw e;
+                        }
+                    });
+                }
+                try {
+                    chunks.put(last);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            private void split() throws IOException, InterruptedException {
+                char[] buffer = new char[chunkSize];
+                int filled = 0;
+                while (true) {
+                    int read = reader.read(buffer, filled, buffer.length - filled);
+                    if (read < 0) {
+                        if (filled > 0) {
+                            submit(new String(buffer, 0, filled));
+                        }
+                        return;
+                    }
+                    filled += read;
+                    if (filled < buffer.length) {
+                        continue;
+                    }
+                    int end = filled;
+                    while (end > 0 && buffer[end - 1] != '\n') {
+                        end--;
+                    }
+                    if (end == 0) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        continue;
+                    }
+                    submit(new String(buffer, 0, end));
+                    System.arraycopy(buffer, end, buffer, 0, filled - end);
+                    filled -= end;
+                }
+            }
+
+            private void submit(final String lines) throws InterruptedException {
+                chunks.put(parsers.submit(new Callable<List<Event>>() {
+                    public List<Event> call() {
+                        return parse(lines);
+                    }
+                }));
+            }
+        }
+    }
+}
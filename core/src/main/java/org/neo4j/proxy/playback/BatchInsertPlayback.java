@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.SequencedEvents;
+import org.neo4j.proxy.eventmodel.UnitOfWork;
+import org.neo4j.proxy.eventmodel.UnitsOfWork;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds a store from a log of writes through the batch inserter, without transactions, into an empty
+ * store directory. The log may hold createNode, createRelationshipTo, setProperty, removeProperty and delete,
+ * together with transaction events and reads, which are left out.
+ *
+ * The log is read twice. The first pass checks that it holds nothing else and counts how many times each
+ * recorded id was deleted, since the batch inserter cannot delete: an entity that the log goes on to delete
+ * is never inserted, nor is anything done to it. For the same reason the log may only delete entities that
+ * it created itself, and since the store starts empty, it may only write to and relate entities it created,
+ * apart from the reference node. The second pass inserts the rest, collecting the properties
+ * of the entities created by each recorded transaction so that each is inserted with its properties at once.
+ * Transactions that did not commit, and events outside transactions, are skipped.
+ */
+public class BatchInsertPlayback {
+
+    private final String storeDirectory;
+    private final LongLongMap deletedNodes = new LongLongMap(1024);
+    private final LongLongMap deletedRelationships = new LongLongMap(1024);
+    private final LongLongMap createdNodes = new LongLongMap(1024);
+    private final LongLongMap createdRelationships = new LongLongMap(1024);
+    private final LongLongMap nodeIncarnations = new LongLongMap(1024);
+    private final LongLongMap relationshipIncarnations = new LongLongMap(1024);
+    private final IdMapping nodeIds = new PagedIdMapping();
+    private final IdMapping relationshipIds = new PagedIdMapping();
+    private final Map<Long, Map<String, Object>> pendingNodes = new LinkedHashMap<Long, Map<String, Object>>();
+    private final Map<Long, PendingRelationship> pendingRelationships = new LinkedHashMap<Long, PendingRelationship>();
+    private BatchInserter inserter;
+
+    private long transactions;
+    private long skippedTransactions;
+    private long events;
+    private long nodesCreated;
+    private long relationshipsCreated;
+    private long deletedEntitiesSkipped;
+    private long elapsedNanos;
+
+    public BatchInsertPlayback(String storeDirectory) {
+        String[] existing = new File(storeDirectory).list();
+        if (existing != null && existing.length > 0) {
+            throw new IllegalArgumentException("Batch insertion needs an empty store directory: " + storeDirectory);
+        }
+        this.storeDirectory = storeDirectory;
+    }
+
+    /**
+     * @param events read once to check and once to insert, so must be able to iterate more than once
+     * @throws IllegalArgumentException before anything is inserted, if the log holds anything but writes,
+     * transaction events and reads, or deletes, writes to or relates an entity that it did not create
+     */
+    public void playback(Iterable<Event> events) {
+        long start = System.nanoTime();
+        for (UnitOfWork unit : new UnitsOfWork(new SequencedEvents(events))) {
+            if (unit.isCommitted()) {
+                for (Event event : unit.getEvents()) {
+                    check(event);
+                }
+            }
+        }
+        inserter = new BatchInserterImpl(storeDirectory);
+        try {
+            nodeIds.put(0, inserter.getReferenceNode());
+            for (UnitOfWork unit : new UnitsOfWork(new SequencedEvents(events))) {
+                if (!unit.isCommitted()) {
+                    if (unit.isTransaction()) {
+                        skippedTransactions++;
+                    }
+                    continue;
+                }
+                for (Event event : unit.getEvents()) {
+                    insert(event);
+                }
+                insertPending();
+                transactions++;
+            }
+        } finally {
+            inserter.shutdown();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    public long getNodesCreated() {
+        return nodesCreated;
+    }
+
+    public long getRelationshipsCreated() {
+        return relationshipsCreated;
+    }
+
+    /**
+     * @return the nodes and relationships that were not inserted because the log deletes them
+     */
+    public long getDeletedEntitiesSkipped() {
+        return deletedEntitiesSkipped;
+    }
+
+    public long getSkippedTransactions() {
+        return skippedTransactions;
+    }
+
+    /**
+     * @return the inserted id of the node recorded with the given id, or {@link IdMapping#NO_MAPPING}
+     */
+    public long getInsertedNodeId(long recordedId) {
+        return nodeIds.get(recordedId);
+    }
+
+    public void writeReport(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Inserted %d nodes and %d relationships from %d recorded transactions in %.3f s (%.1f events/s)%n",
+                nodesCreated, relationshipsCreated, transactions, seconds, seconds > 0 ? events / seconds : 0.0);
+        out.printf("%d deleted entities never inserted, %d transactions skipped%n", deletedEntitiesSkipped, skippedTransactions);
+    }
+
+    private void check(Event event) {
+        Class targetType = event.getTarget().getType().getWrappedType();
+        String method = event.getMethodName();
+        if (isWrite(targetType, method)) {
+            if ("createNode".equals(method)) {
+                increment(createdNodes, recordedId(event.getResult()));
+            } else if ("createRelationshipTo".equals(method)) {
+                checkCreated(Node.class, recordedId(event.getTarget()), "relates");
+                checkCreated(Node.class, recordedId(event.getParameters()[0]), "relates");
+                increment(createdRelationships, recordedId(event.getResult()));
+            } else if (!"delete".equals(method)) {
+                checkCreated(targetType, recordedId(event.getTarget()), "writes to");
+            } else {
+                boolean node = targetType == Node.class;
+                long recordedId = recordedId(event.getTarget());
+                LongLongMap deletions = node ? deletedNodes : deletedRelationships;
+                if (count(node ? createdNodes : createdRelationships, recordedId) <= count(deletions, recordedId)) {
+                    throw new IllegalArgumentException("Cannot batch insert a log that deletes " + targetType.getSimpleName()
+                            + " " + recordedId + ", which it did not create");
+                }
+                increment(deletions, recordedId);
+            }
+        } else if (!WritesOnly.isRead(event) && !controlsTransaction(method)) {
+            throw new IllegalArgumentException("Not a write-only log, cannot batch insert " + targetType.getSimpleName() + "." + method);
+        }
+    }
+
+    /**
+     * The batch inserter only knows the entities the log inserts, and the reference node.
+     */
+    private void checkCreated(Class type, long recordedId, String action) {
+        boolean node = type == Node.class;
+        if (node && recordedId == 0) {
+            return;
+        }
+        if (count(node ? createdNodes : createdRelationships, recordedId) == 0) {
+            throw new IllegalArgumentException("Cannot batch insert a log that " + action + " " + type.getSimpleName()
+                    + " " + recordedId + ", which it did not create");
+        }
+    }
+
+    static boolean isWrite(Class targetType, String method) {
+        if (targetType == GraphDatabaseService.class) {
+            return "createNode".equals(method);
+        }
+        if (targetType == Node.class && "createRelationshipTo".equals(method)) {
+            return true;
+        }
+        return (targetType == Node.class || targetType == Relationship.class)
+                && ("setProperty".equals(method) || "removeProperty".equals(method) || "delete".equals(method));
+    }
+
+    static boolean controlsTransaction(String method) {
+        return "beginTx".equals(method) || "success".equals(method) || "failure".equals(method) || "finish".equals(method);
+    }
+
+    private void insert(Event event) {
+        Class targetType = event.getTarget().getType().getWrappedType();
+        String method = event.getMethodName();
+        if (!isWrite(targetType, method)) {
+            return;
+        }
+        events++;
+        Parameter[] parameters = event.getParameters();
+        if ("createNode".equals(method)) {
+            long node = recordedId(event.getResult());
+            if (created(nodeIncarnations, deletedNodes, node)) {
+                pendingNodes.put(node, new HashMap<String, Object>());
+            }
+        } else if ("createRelationshipTo".equals(method)) {
+            long relationship = recordedId(event.getResult());
+            if (created(relationshipIncarnations, deletedRelationships, relationship)) {
+                pendingRelationships.put(relationship, new PendingRelationship(recordedId(event.getTarget()),
+                        recordedId(parameters[0]), (RelationshipType) parameters[1].getValueForPlayback(null)));
+            }
+        } else if (targetType == Node.class) {
+            long node = recordedId(event.getTarget());
+            if (!deleted(nodeIncarnations, deletedNodes, node) && !"delete".equals(method)) {
+                Map<String, Object> properties = pendingNodes.get(node);
+                if (properties != null) {
+                    change(properties, method, parameters);
+                } else {
+                    long inserted = inserted(nodeIds, node);
+                    properties = inserter.getNodeProperties(inserted);
+                    change(properties, method, parameters);
+                    inserter.setNodeProperties(inserted, properties);
+                }
+            }
+        } else {
+            long relationship = recordedId(event.getTarget());
+            if (!deleted(relationshipIncarnations, deletedRelationships, relationship) && !"delete".equals(method)) {
+                PendingRelationship pending = pendingRelationships.get(relationship);
+                if (pending != null) {
+                    change(pending.properties, method, parameters);
+                } else {
+                    long inserted = inserted(relationshipIds, relationship);
+                    Map<String, Object> properties = inserter.getRelationshipProperties(inserted);
+                    change(properties, method, parameters);
+                    inserter.setRelationshipProperties(inserted, properties);
+                }
+            }
+        }
+    }
+
+    private void insertPending() {
+        for (Map.Entry<Long, Map<String, Object>> node : pendingNodes.entrySet()) {
+            nodeIds.put(node.getKey(), inserter.createNode(node.getValue()));
+            nodesCreated++;
+        }
+        pendingNodes.clear();
+        for (Map.Entry<Long, PendingRelationship> entry : pendingRelationships.entrySet()) {
+            PendingRelationship relationship = entry.getValue();
+            relationshipIds.put(entry.getKey(), inserter.createRelationship(inserted(nodeIds, relationship.startNode),
+                    inserted(nodeIds, relationship.endNode), relationship.type, relationship.properties));
+            relationshipsCreated++;
+        }
+        pendingRelationships.clear();
+    }
+
+    private static void change(Map<String, Object> properties, String method, Parameter[] parameters) {
+        String key = (String) parameters[0].getValueForSerialization();
+        if ("setProperty".equals(method)) {
+            properties.put(key, parameters[1].getValueForPlayback(null));
+        } else {
+            properties.remove(key);
+        }
+    }
+
+    /**
+     * @return whether this incarnation of the recorded id outlives the log, and so is to be inserted
+     */
+    private boolean created(LongLongMap incarnations, LongLongMap deletions, long recordedId) {
+        long incarnation = count(incarnations, recordedId) + 1;
+        incarnations.put(recordedId, incarnation);
+        if (incarnation <= count(deletions, recordedId)) {
+            deletedEntitiesSkipped++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Only incarnations the log created are ever deleted, so the deletions of an id count its first incarnations.
+     */
+    private static boolean deleted(LongLongMap incarnations, LongLongMap deletions, long recordedId) {
+        long incarnation = count(incarnations, recordedId);
+        return incarnation > 0 && incarnation <= count(deletions, recordedId);
+    }
+
+    private static long inserted(IdMapping ids, long recordedId) {
+        long inserted = ids.get(recordedId);
+        if (inserted == IdMapping.NO_MAPPING) {
+            throw new IllegalStateException("Entity " + recordedId + " is written to before it is created in the log");
+        }
+        return inserted;
+    }
+
+    private static long recordedId(Parameter parameter) {
+        return (Long) parameter.getValueForSerialization();
+    }
+
+    private static long count(LongLongMap counts, long key) {
+        long count = counts.get(key);
+        return count == LongLongMap.NO_VALUE ? 0 : count;
+    }
+
+    private static void increment(LongLongMap counts, long key) {
+        counts.put(key, count(counts, key) + 1);
+    }
+
+    private static class PendingRelationship {
+        final long startNode;
+        final long endNode;
+        final RelationshipType type;
+        final Map<String, Object> properties = new HashMap<String, Object>();
+
+        PendingRelationship(long startNode, long endNode, RelationshipType type) {
+            this.startNode = startNode;
+            this.endNode = endNode;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import java.io.PrintStream;
+
+/**
+ * What a batched playback did: how many recorded transactions were merged into how many commits, how many
+ * were skipped because they never committed, and how fast it went.
+ */
+public class BatchReport {
+
+    private long recordedTransactions;
+    private long skippedTransactions;
+    private long commits;
+    private long events;
+    private long elapsedNanos;
+
+    void played(long eventCount) {
+        events += eventCount;
+    }
+
+    void merged() {
+        recordedTransactions++;
+    }
+
+    void skipped() {
+        skippedTransactions++;
+    }
+
+    void committed() {
+        commits++;
+    }
+
+    void elapsed(long nanos) {
+        elapsedNanos += nanos;
+    }
+
+    /**
+     * @return the committed transactions that were played back as part of a batch
+     */
+    public long getRecordedTransactions() {
+        return recordedTransactions;
+    }
+
+    /**
+     * @return the transactions that were rolled back, or still open when the log ended, and not played back
+     */
+    public long getSkippedTransactions() {
+        return skippedTransactions;
+    }
+
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     * @return how many fewer commits were made than were recorded
+     */
+    public long getMergedCommits() {
+        return recordedTransactions - commits;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public void writeReport(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Played back %d recorded transactions in %d commits, %d commits merged, %d transactions skipped%n",
+                recordedTransactions, commits, getMergedCommits(), skippedTransactions);
+        out.printf("%d events in %.3f s (%.1f events/s, %.1f recorded transactions/s)%n", events, seconds,
+                seconds > 0 ? events / seconds : 0.0, seconds > 0 ? recordedTransactions / seconds : 0.0);
+    }
+}
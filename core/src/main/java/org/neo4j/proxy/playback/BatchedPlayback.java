@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.UnitOfWork;
+import org.neo4j.proxy.eventmodel.UnitsOfWork;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plays back units of work one after the other, committing the work of several recorded transactions in one
+ * playback transaction. The recorded transaction events themselves are not played back, and transactions
+ * that did not commit are skipped altogether, so the store ends up as it would after playing back every
+ * event, with far fewer commits.
+ */
+class BatchedPlayback {
+
+    private final PlaybackDriver driver;
+    private final GraphDatabaseService database;
+    private final int transactionsPerCommit;
+    private final Map<Long, PlaybackState> sessions = new HashMap<Long, PlaybackState>();
+    private final BatchReport report = new BatchReport();
+    private Transaction batch;
+    private int transactionsInBatch;
+
+    BatchedPlayback(PlaybackDriver driver, GraphDatabaseService database, int transactionsPerCommit) {
+        if (transactionsPerCommit <= 0) {
+            throw new IllegalArgumentException("Transactions per commit must be positive: " + transactionsPerCommit);
+        }
+        this.driver = driver;
+        this.database = database;
+        this.transactionsPerCommit = transactionsPerCommit;
+    }
+
+    BatchReport playback(Iterable<UnitOfWork> units, PlaybackDriver.Listener listener) {
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            for (UnitOfWork unit : units) {
+                if (unit.isTransaction() && !unit.isCommitted()) {
+                    report.skipped();
+                    continue;
+                }
+                play(unit, listener);
+            }
+            completed = true;
+        } finally {
+            endBatch(completed);
+            report.elapsed(System.nanoTime() - start);
+        }
+        return report;
+    }
+
+    private void play(UnitOfWork unit, PlaybackDriver.Listener listener) {
+        if (batch == null) {
+            batch = database.beginTx();
+        }
+        PlaybackState session = session(unit.getThreadId());
+        for (Event event : unit.getEvents()) {
+            if (!controlsTransaction(event)) {
+                driver.playback(event, session, listener);
+                report.played(1);
+            }
+        }
+        if (unit.isTransaction()) {
+            session.releaseSurrogateIdentified();
+            report.merged();
+            if (++transactionsInBatch == transactionsPerCommit) {
+                endBatch(true);
+            }
+        }
+    }
+
+    private void endBatch(boolean success) {
+        if (batch == null) {
+            return;
+        }
+        if (success) {
+            batch.success();
+        } else {
+            batch.failure();
+        }
+        batch.finish();
+        batch = null;
+        transactionsInBatch = 0;
+        if (success) {
+            report.committed();
+        }
+    }
+
+    private static boolean controlsTransaction(Event event) {
+        return UnitsOfWork.beginsTransaction(event) || event.getTarget().getType().getWrappedType() == Transaction.class;
+    }
+
+    private PlaybackState session(long threadId) {
+        PlaybackState session = sessions.get(threadId);
+        if (session == null) {
+            session = driver.newSession();
+            sessions.put(threadId, session);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which method was resolved for a target type, method name and the classes of the arguments, so
+ * that each distinct call site is only resolved once during playback.
+ */
+class CallSiteCache {
+
+    private static final Map<Class, Class> boxes = new HashMap<Class, Class>();
+
+    static {
+        boxes.put(boolean.class, Boolean.class);
+        boxes.put(byte.class, Byte.class);
+        boxes.put(char.class, Character.class);
+        boxes.put(short.class, Short.class);
+        boxes.put(int.class, Integer.class);
+        boxes.put(long.class, Long.class);
+        boxes.put(float.class, Float.class);
+        boxes.put(double.class, Double.class);
+    }
+
+    private final Map<CallSite, Method> methods = new ConcurrentHashMap<CallSite, Method>();
+
+    public Method resolve(Class targetClass, String methodName, Object[] arguments) {
+        CallSite callSite = new CallSite(targetClass, methodName, arguments);
+        Method method = methods.get(callSite);
+        if (method == null) {
+            method = deduceMethod(targetClass, methodName, arguments);
+            methods.put(callSite, method);
+        }
+        return method;
+    }
+
+    private static Method deduceMethod(Class targetClass, String methodName, Object[] arguments) {
+        for (Method candidateMethod : targetClass.getMethods()) {
+            if (candidateMethod.getName().equals(methodName)
+                    && areCompatible(candidateMethod.getParameterTypes(), arguments)) {
+                candidateMethod.setAccessible(true);
+                return candidateMethod;
+            }
+        }
+        throw new IllegalArgumentException(String.format("no suitable method named %s on class %s",
+                methodName, targetClass));
+    }
+
+    private static boolean areCompatible(Class<?>[] parameterTypes, Object[] arguments) {
+        if (parameterTypes.length != arguments.length) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            if (arguments[i] == null) {
+                if (parameterType.isPrimitive()) {
+                    return false;
+                }
+            } else {
+                if (parameterType.isPrimitive()) {
+                    parameterType = boxes.get(parameterType);
+                }
+                if (!parameterType.isAssignableFrom(arguments[i].getClass())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class CallSite {
+        private final Class targetClass;
+        private final String methodName;
+        private final Class[] argumentClasses;
+        private final int hashCode;
+
+        CallSite(Class targetClass, String methodName, Object[] arguments) {
+            this.targetClass = targetClass;
+            this.methodName = methodName;
+            argumentClasses = new Class[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                argumentClasses[i] = arguments[i] == null ? null : arguments[i].getClass();
+            }
+            hashCode = 31 * (31 * targetClass.hashCode() + methodName.hashCode()) + Arrays.hashCode(argumentClasses);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CallSite)) {
+                return false;
+            }
+            CallSite other = (CallSite) o;
+            return targetClass == other.targetClass
+                    && methodName.equals(other.methodName)
+                    && Arrays.equals(argumentClasses, other.argumentClasses);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
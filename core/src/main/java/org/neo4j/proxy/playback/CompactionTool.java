@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.proxy.eventlog.EventLog;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.BinarySerializer;
+import org.neo4j.proxy.eventmodel.serialization.Compression;
+import org.neo4j.proxy.eventmodel.serialization.JacksonDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.JacksonSerializer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompactionTool {
+    private int writesInMemory = LogCompactor.DEFAULT_WRITES_IN_MEMORY;
+    private int writesPerTransaction = LogCompactor.DEFAULT_WRITES_PER_TRANSACTION;
+    private int maxFanIn = LogCompactor.DEFAULT_MAX_FAN_IN;
+    private boolean binary = false;
+    private Compression compression = Compression.NONE;
+
+    public static void main(String[] args) throws IOException {
+        CompactionTool tool = new CompactionTool();
+        List<String> arguments = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--writes-in-memory=")) {
+                tool.writesInMemory = Integer.parseInt(arg.substring("--writes-in-memory=".length()));
+            } else if (arg.startsWith("--writes-per-transaction=")) {
+                tool.writesPerTransaction = Integer.parseInt(arg.substring("--writes-per-transaction=".length()));
+            } else if (arg.startsWith("--max-fan-in=")) {
+                tool.maxFanIn = Integer.parseInt(arg.substring("--max-fan-in=".length()));
+            } else if (arg.startsWith("--compression=")) {
+                tool.compression = Compression.valueOf(arg.substring("--compression=".length()).toUpperCase());
+                tool.binary = true;
+            } else if (arg.equals("--binary")) {
+                tool.binary = true;
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (arguments.size() == 2) {
+            tool.run(arguments.get(0), arguments.get(1));
+        } else {
+            System.out.println("Usage: java " + CompactionTool.class + " [--writes-in-memory=<n>] [--writes-per-transaction=<n>] [--max-fan-in=<runs>] [--binary] [--compression=<none|lz4|deflate>] <event-log-file-or-directory> <compacted-log-file>");
+            System.out.println("Memory use grows with --writes-in-memory and --max-fan-in, and with the events of the longest transactions");
+            System.out.println("in the log, which are held until they finish.");
+        }
+    }
+
+    private void run(String eventLog, String compactedLog) throws IOException {
+        File input = new File(eventLog);
+        Iterable<Event> events = input.isDirectory()
+                ? new EventLog(input)
+                : new JacksonDeserializer(new BufferedReader(new FileReader(input)));
+        File runs = new File(compactedLog + ".runs");
+        LogCompactor compactor = new LogCompactor(runs, writesInMemory, writesPerTransaction, maxFanIn);
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(compactedLog));
+        try {
+            if (binary) {
+                BinarySerializer serializer = new BinarySerializer(output, compression, BinarySerializer.DEFAULT_EVENTS_PER_BLOCK);
+                compactor.compact(events, serializer);
+                serializer.flush();
+            } else {
+                JacksonSerializer serializer = new JacksonSerializer(output);
+                compactor.compact(events, serializer);
+                serializer.flush();
+            }
+        } finally {
+            output.close();
+            runs.delete();
+        }
+        compactor.writeReport(System.out);
+    }
+}
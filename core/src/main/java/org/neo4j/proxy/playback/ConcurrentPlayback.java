@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.UnitOfWork;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Schedules units of work on a pool of worker threads as soon as the units they depend on have been played
+ * back. Units are read ahead of playback only as far as a bounded number in flight.
+ */
+class ConcurrentPlayback {
+
+    private static final int UNITS_IN_FLIGHT_PER_THREAD = 64;
+
+    private final PlaybackDriver driver;
+    private final int threads;
+    private final Semaphore inFlight;
+    private final Map<Long, PlaybackState> sessions = new HashMap<Long, PlaybackState>();
+    private final ConcurrentMap<Long, ScheduledUnit> lastByThread = new ConcurrentHashMap<Long, ScheduledUnit>();
+    private final ConcurrentMap<Long, ScheduledUnit> lastByNode = new ConcurrentHashMap<Long, ScheduledUnit>();
+    private final ConcurrentMap<Long, ScheduledUnit> lastByRelationship = new ConcurrentHashMap<Long, ScheduledUnit>();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+    private ExecutorService workers;
+
+    ConcurrentPlayback(PlaybackDriver driver, int threads) {
+        this.driver = driver;
+        this.threads = threads;
+        this.inFlight = new Semaphore(threads * UNITS_IN_FLIGHT_PER_THREAD);
+    }
+
+    void playback(Iterable<UnitOfWork> units, PlaybackDriver.Listener listener) {
+        workers = Executors.newFixedThreadPool(threads);
+        try {
+            for (UnitOfWork unit : units) {
+                if (failure.get() != null) {
+                    break;
+                }
+                inFlight.acquireUninterruptibly();
+                schedule(unit, listener);
+            }
+            inFlight.acquireUninterruptibly(threads * UNITS_IN_FLIGHT_PER_THREAD);
+        } finally {
+            workers.shutdown();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void schedule(UnitOfWork unit, PlaybackDriver.Listener listener) {
+        Set<Long> nodeIds = new HashSet<Long>();
+        Set<Long> relationshipIds = new HashSet<Long>();
+        for (Event event : unit.getEvents()) {
+            touched(event.getTarget(), nodeIds, relationshipIds);
+            for (Parameter parameter : event.getParameters()) {
+                touched(parameter, nodeIds, relationshipIds);
+            }
+            touched(event.getResult(), nodeIds, relationshipIds);
+        }
+
+        ScheduledUnit scheduled = new ScheduledUnit(unit, session(unit.getThreadId()), listener, toArray(nodeIds), toArray(relationshipIds));
+        scheduled.after(lastByThread.put(unit.getThreadId(), scheduled));
+        for (long nodeId : scheduled.nodeIds) {
+            scheduled.after(lastByNode.put(nodeId, scheduled));
+        }
+        for (long relationshipId : scheduled.relationshipIds) {
+            scheduled.after(lastByRelationship.put(relationshipId, scheduled));
+        }
+        scheduled.ready();
+    }
+
+    private static void touched(Parameter parameter, Set<Long> nodeIds, Set<Long> relationshipIds) {
+        Class type = parameter.getType().getWrappedType();
+        if (type == Node.class) {
+            nodeIds.add((Long) parameter.getValueForSerialization());
+        } else if (type == Relationship.class) {
+            relationshipIds.add((Long) parameter.getValueForSerialization());
+        }
+    }
+
+    private static long[] toArray(Set<Long> ids) {
+        long[] array = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            array[i++] = id;
+        }
+        return array;
+    }
+
+    private PlaybackState session(long threadId) {
+        PlaybackState session = sessions.get(threadId);
+        if (session == null) {
+            session = driver.newSession();
+            sessions.put(threadId, session);
+        }
+        return session;
+    }
+
+    private class ScheduledUnit implements Runnable {
+        private UnitOfWork unit;
+        private final long threadId;
+        private final PlaybackState session;
+        private final PlaybackDriver.Listener listener;
+        final long[] nodeIds;
+        final long[] relationshipIds;
+        private final AtomicInteger waitingFor = new AtomicInteger(1);
+        private List<ScheduledUnit> successors = new ArrayList<ScheduledUnit>();
+        private boolean done;
+
+        ScheduledUnit(UnitOfWork unit, PlaybackState session, PlaybackDriver.Listener listener, long[] nodeIds, long[] relationshipIds) {
+            this.unit = unit;
+            this.threadId = unit.getThreadId();
+            this.session = session;
+            this.listener = listener;
+            this.nodeIds = nodeIds;
+            this.relationshipIds = relationshipIds;
+        }
+
+        void after(ScheduledUnit predecessor) {
+            if (predecessor == null || predecessor == this) {
+                return;
+            }
+            waitingFor.incrementAndGet();
+            synchronized (predecessor) {
+                if (!predecessor.done) {
+                    predecessor.successors.add(this);
+                    return;
+                }
+            }
+            waitingFor.decrementAndGet();
+        }
+
+        void ready() {
+            if (waitingFor.decrementAndGet() == 0) {
+                workers.execute(this);
+            }
+        }
+
+        public void run() {
+            try {
+                if (failure.get() == null) {
+                    play();
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                List<ScheduledUnit> next;
+                synchronized (this) {
+                    done = true;
+                    next = successors;
+                    successors = null;
+                }
+                unit = null;
+                lastByThread.remove(threadId, this);
+                for (long nodeId : nodeIds) {
+                    lastByNode.remove(nodeId, this);
+                }
+                for (long relationshipId : relationshipIds) {
+                    lastByRelationship.remove(relationshipId, this);
+                }
+                for (ScheduledUnit successor : next) {
+                    successor.ready();
+                }
+                inFlight.release();
+            }
+        }
+
+        private void play() {
+            for (Event event : unit.getEvents()) {
+                driver.playback(event, session, listener);
+            }
+            if (unit.isTransaction() && !unit.isFinished()) {
+                Transaction transaction = session.getCurrentTransaction();
+                if (transaction != null) {
+                    transaction.failure();
+                    transaction.finish();
+                }
+            }
+        }
+    }
+}
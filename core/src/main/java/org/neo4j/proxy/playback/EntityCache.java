@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Finds the entities that playback has captured, by the id they were recorded with.
+ *
+ * Only the playback id of each captured entity is kept for good, in an {@link IdMapping}. The entities
+ * themselves are held in a fixed number of slots, where a newer entity replaces whichever older one shares
+ * its slot, and are loaded again from the database on a miss. An id that was never captured is taken to be
+ * the same on playback, for entities that existed before the recording.
+ */
+public abstract class EntityCache<T> {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final IdMapping playbackIds;
+    private final AtomicReferenceArray<Entry<T>> entities;
+
+    /**
+     * @param capacity how many entities to hold on to, rounded up to a power of two
+     */
+    protected EntityCache(IdMapping playbackIds, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.playbackIds = playbackIds;
+        int slots = Integer.highestOneBit(capacity);
+        entities = new AtomicReferenceArray<Entry<T>>(slots < capacity ? slots << 1 : slots);
+    }
+
+    public T get(long id) {
+        int slot = slot(id);
+        Entry<T> entry = entities.get(slot);
+        if (entry != null && entry.id == id) {
+            return entry.entity;
+        }
+        T entity = load(playbackId(id));
+        entities.set(slot, new Entry<T>(id, entity));
+        return entity;
+    }
+
+    /**
+     * @return the id the entity recorded with the given id has on playback
+     */
+    public long playbackId(long id) {
+        long playbackId = playbackIds.get(id);
+        return playbackId == IdMapping.NO_MAPPING ? id : playbackId;
+    }
+
+    public void put(T entity) {
+        put(idOf(entity), entity);
+    }
+
+    public void put(long id, T entity) {
+        playbackIds.put(id, idOf(entity));
+        entities.set(slot(id), new Entry<T>(id, entity));
+    }
+
+    protected abstract T load(long playbackId);
+
+    protected abstract long idOf(T entity);
+
+    private int slot(long id) {
+        return LongLongMap.hash(id) & (entities.length() - 1);
+    }
+
+    private static class Entry<T> {
+        final long id;
+        final T entity;
+
+        Entry(long id, T entity) {
+            this.id = id;
+            this.entity = entity;
+        }
+    }
+
+    public static class NodeCache extends EntityCache<Node> {
+        private final GraphDatabaseService graphDatabase;
+
+        public NodeCache(GraphDatabaseService graphDatabase, IdMapping playbackIds, int capacity) {
+            super(playbackIds, capacity);
+            this.graphDatabase = graphDatabase;
+        }
+
+        protected Node load(long playbackId) {
+            return graphDatabase.getNodeById(playbackId);
+        }
+
+        protected long idOf(Node node) {
+            return node.getId();
+        }
+    }
+
+    public static class RelationshipCache extends EntityCache<Relationship> {
+        private final GraphDatabaseService graphDatabase;
+
+        public RelationshipCache(GraphDatabaseService graphDatabase, IdMapping playbackIds, int capacity) {
+            super(playbackIds, capacity);
+            this.graphDatabase = graphDatabase;
+        }
+
+        protected Relationship load(long playbackId) {
+            return graphDatabase.getRelationshipById(playbackId);
+        }
+
+        protected long idOf(Relationship relationship) {
+            return relationship.getId();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+/**
+ * Holds playback ids in primitive hash maps, split into segments that are locked separately.
+ * Costs memory per mapped id rather than per id up to the highest, for recordings whose ids are sparse.
+ */
+public class HashedIdMapping implements IdMapping {
+
+    private static final int SEGMENT_BITS = 4;
+
+    private final LongLongMap[] segments = new LongLongMap[1 << SEGMENT_BITS];
+
+    public HashedIdMapping() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new LongLongMap(1024);
+        }
+    }
+
+    public long get(long recordedId) {
+        LongLongMap segment = segment(recordedId);
+        synchronized (segment) {
+            return segment.get(recordedId);
+        }
+    }
+
+    public void put(long recordedId, long playbackId) {
+        LongLongMap segment = segment(recordedId);
+        synchronized (segment) {
+            segment.put(recordedId, playbackId);
+        }
+    }
+
+    private LongLongMap segment(long recordedId) {
+        return segments[LongLongMap.hash(recordedId) >>> (32 - SEGMENT_BITS)];
+    }
+}
@@ -19,37 +19,18 @@
  */
 package org.neo4j.proxy.playback;
 
-import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Relationship;
-import org.w3c.dom.Entity;
-
-import javax.swing.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-public abstract class EntityCache<T> {
-
-    protected Map<Long, T> cache = new HashMap<Long, T>();
-
-    public T get(long id) {
-        return cache.get(id);
-    }
-
-    public abstract void put(T node);
-
-    public static class NodeCache extends EntityCache<Node> {
+/**
+ * Translates the id an entity was recorded with to the id it was given on playback. Implementations are
+ * safe to use from the worker threads of a concurrent playback.
+ */
+public interface IdMapping {
 
-        public void put(Node node) {
-            cache.put(node.getId(), node);
-        }
-    }
+    long NO_MAPPING = -1;
 
-    public static class RelationshipCache extends EntityCache<Relationship> {
+    /**
+     * @return the playback id, or {@link #NO_MAPPING} if none has been put for the recorded id
+     */
+    long get(long recordedId);
 
-        public void put(Relationship node) {
-            cache.put(node.getId(), node);
-        }
-    }
+    void put(long recordedId, long playbackId);
 }
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The part of the id mappings that playback of one segment of an event log needs: the playback ids of the
+ * nodes and relationships the segment uses without creating them. Reading a snapshot into fresh mappings
+ * lets playback start at that segment against the store the earlier segments were played back into.
+ */
+public class IdMappingSnapshot {
+
+    private IdMappingSnapshot() {
+    }
+
+    /**
+     * Writes the mappings of those of the given recorded ids that have one.
+     */
+    public static void write(File file, long[] nodeIds, long[] relationshipIds, IdMapping nodes, IdMapping relationships) {
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                writeMappings(output, nodeIds, nodes);
+                writeMappings(output, relationshipIds, relationships);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void read(File file, IdMapping nodes, IdMapping relationships) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                readMappings(input, nodes);
+                readMappings(input, relationships);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeMappings(DataOutputStream output, long[] recordedIds, IdMapping mapping) throws IOException {
+        int mapped = 0;
+        for (long recordedId : recordedIds) {
+            if (mapping.get(recordedId) != IdMapping.NO_MAPPING) {
+                mapped++;
+            }
+        }
+        output.writeInt(mapped);
+        for (long recordedId : recordedIds) {
+            long playbackId = mapping.get(recordedId);
+            if (playbackId != IdMapping.NO_MAPPING) {
+                output.writeLong(recordedId);
+                output.writeLong(playbackId);
+            }
+        }
+    }
+
+    private static void readMappings(DataInputStream input, IdMapping mapping) throws IOException {
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            long recordedId = input.readLong();
+            mapping.put(recordedId, input.readLong());
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.statistics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the duration of each played back call, as timed by the driver around the call alone, and reports
+ * latency percentiles per method, the slowest events, and throughput over time. Where the recording carries
+ * the durations of the original calls, which cover the same span, the report compares them with the played
+ * back ones.
+ *
+ * Safe to use from the worker threads of a concurrent playback.
+ */
+public class LatencyReport implements PlaybackDriver.Listener {
+
+    private static final int DEFAULT_SLOWEST_EVENTS = 10;
+
+    private final PlaybackDriver.Listener delegate;
+    private final int slowestEventCount;
+    private final long intervalNanos;
+    private final ConcurrentMap<String, MethodLatency> methods = new ConcurrentHashMap<String, MethodLatency>();
+    private final ConcurrentMap<Long, AtomicLong> completedPerInterval = new ConcurrentHashMap<Long, AtomicLong>();
+    private final PriorityQueue<TimedEvent> slowestEvents;
+    private volatile long slowestEventThreshold = -1;
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong firstStart = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+    public LatencyReport(PlaybackDriver.Listener delegate) {
+        this(delegate, DEFAULT_SLOWEST_EVENTS, TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @param slowestEventCount how many of the slowest events to keep for the report
+     * @param intervalNanos the width of the intervals that throughput is reported over
+     */
+    public LatencyReport(PlaybackDriver.Listener delegate, int slowestEventCount, long intervalNanos) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalNanos);
+        }
+        this.delegate = delegate;
+        this.slowestEventCount = slowestEventCount;
+        this.intervalNanos = intervalNanos;
+        this.slowestEvents = new PriorityQueue<TimedEvent>(Math.max(1, slowestEventCount), TimedEvent.BY_DURATION);
+    }
+
+    public void beforePlayback(Event event) {
+        delegate.beforePlayback(event);
+        firstStart.compareAndSet(Long.MIN_VALUE, System.nanoTime());
+    }
+
+    public void afterPlayback(Event event, long durationNanos) {
+        record(event, System.nanoTime(), durationNanos);
+        delegate.afterPlayback(event, durationNanos);
+    }
+
+    public void playbackException(Event event, Exception exception) {
+        failures.incrementAndGet();
+        delegate.playbackException(event, exception);
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the played back latencies of a method, or null if it has not been played back
+     */
+    public LatencyHistogram getPlaybackLatency(String targetType, String methodName) {
+        MethodLatency latency = methods.get(targetType + "." + methodName);
+        return latency == null ? null : latency.played;
+    }
+
+    /**
+     * @return the slowest events played back so far, slowest first
+     */
+    public List<Event> getSlowestEvents() {
+        List<Event> events = new ArrayList<Event>();
+        for (TimedEvent timedEvent : slowestSorted()) {
+            events.add(timedEvent.event);
+        }
+        return events;
+    }
+
+    public void writeReport(PrintStream out) {
+        List<Map.Entry<String, MethodLatency>> byTotalTime = new ArrayList<Map.Entry<String, MethodLatency>>(methods.entrySet());
+        Collections.sort(byTotalTime, new Comparator<Map.Entry<String, MethodLatency>>() {
+            public int compare(Map.Entry<String, MethodLatency> first, Map.Entry<String, MethodLatency> second) {
+                return Double.compare(totalTime(second.getValue().played), totalTime(first.getValue().played));
+            }
+        });
+
+        long played = 0;
+        for (MethodLatency latency : methods.values()) {
+            played += latency.played.getCount();
+        }
+        double seconds = firstStart.get() == Long.MIN_VALUE ? 0 : (lastEnd.get() - firstStart.get()) / 1e9;
+        out.printf("Played back %d events in %.3f s (%.1f events/s), %d failed%n", played, seconds,
+                seconds > 0 ? played / seconds : 0.0, failures.get());
+
+        out.println();
+        out.println("Latency per method, in microseconds, by total time spent");
+        out.printf("%-40s %10s %10s %10s %10s %10s %10s %10s%n", "method", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        for (Map.Entry<String, MethodLatency> entry : byTotalTime) {
+            LatencyHistogram histogram = entry.getValue().played;
+            out.printf("%-40s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), histogram.getCount(),
+                    histogram.getMean() / 1000, micros(histogram.getValueAtPercentile(50)),
+                    micros(histogram.getValueAtPercentile(90)), micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMax()));
+        }
+
+        boolean anyRecorded = false;
+        for (MethodLatency latency : methods.values()) {
+            anyRecorded |= latency.recorded.getCount() > 0;
+        }
+        if (anyRecorded) {
+            out.println();
+            out.println("Recorded against played back latency, in microseconds");
+            out.printf("%-40s %12s %12s %8s %12s %12s %8s%n", "method", "recorded p50", "played p50", "change", "recorded p99", "played p99", "change");
+            for (Map.Entry<String, MethodLatency> entry : byTotalTime) {
+                LatencyHistogram recorded = entry.getValue().recorded;
+                LatencyHistogram playedBack = entry.getValue().played;
+                if (recorded.getCount() == 0) {
+                    continue;
+                }
+                long recordedMedian = recorded.getValueAtPercentile(50);
+                long playedMedian = playedBack.getValueAtPercentile(50);
+                long recordedTail = recorded.getValueAtPercentile(99);
+                long playedTail = playedBack.getValueAtPercentile(99);
+                out.printf("%-40s %12.1f %12.1f %8s %12.1f %12.1f %8s%n", entry.getKey(),
+                        micros(recordedMedian), micros(playedMedian), change(recordedMedian, playedMedian),
+                        micros(recordedTail), micros(playedTail), change(recordedTail, playedTail));
+            }
+        }
+
+        out.println();
+        out.println("Slowest events, in microseconds");
+        for (TimedEvent timedEvent : slowestSorted()) {
+            out.printf("%12.1f  %s%n", micros(timedEvent.duration), timedEvent.event);
+        }
+
+        out.println();
+        out.printf("Throughput, in events per second over %.3f s intervals%n", intervalNanos / 1e9);
+        SortedMap<Long, AtomicLong> intervals = new TreeMap<Long, AtomicLong>(completedPerInterval);
+        if (!intervals.isEmpty()) {
+            for (long interval = 0; interval <= intervals.lastKey(); interval++) {
+                AtomicLong completed = intervals.get(interval);
+                long count = completed == null ? 0 : completed.get();
+                out.printf("%10.3f s %12.1f%n", interval * intervalNanos / 1e9, count * 1e9 / intervalNanos);
+            }
+        }
+    }
+
+    private void record(Event event, long end, long duration) {
+        MethodLatency latency = methodLatency(event.getTarget().getType().getTypeName() + "." + event.getMethodName());
+        latency.played.record(duration);
+        if (event.getDuration() != Event.NO_DURATION) {
+            latency.recorded.record(event.getDuration());
+        }
+
+        long interval = (end - firstStart.get()) / intervalNanos;
+        AtomicLong completed = completedPerInterval.get(interval);
+        if (completed == null) {
+            AtomicLong created = new AtomicLong();
+            completed = completedPerInterval.putIfAbsent(interval, created);
+            if (completed == null) {
+                completed = created;
+            }
+        }
+        completed.incrementAndGet();
+
+        long previousEnd;
+        while (end > (previousEnd = lastEnd.get()) && !lastEnd.compareAndSet(previousEnd, end)) {
+            // retry
+        }
+
+        if (duration > slowestEventThreshold && slowestEventCount > 0) {
+            synchronized (slowestEvents) {
+                slowestEvents.add(new TimedEvent(event, duration));
+                if (slowestEvents.size() > slowestEventCount) {
+                    slowestEvents.poll();
+                }
+                if (slowestEvents.size() == slowestEventCount) {
+                    slowestEventThreshold = slowestEvents.peek().duration;
+                }
+            }
+        }
+    }
+
+    private MethodLatency methodLatency(String key) {
+        MethodLatency latency = methods.get(key);
+        if (latency == null) {
+            MethodLatency created = new MethodLatency();
+            latency = methods.putIfAbsent(key, created);
+            if (latency == null) {
+                latency = created;
+            }
+        }
+        return latency;
+    }
+
+    private List<TimedEvent> slowestSorted() {
+        List<TimedEvent> sorted;
+        synchronized (slowestEvents) {
+            sorted = new ArrayList<TimedEvent>(slowestEvents);
+        }
+        Collections.sort(sorted, Collections.reverseOrder(TimedEvent.BY_DURATION));
+        return sorted;
+    }
+
+    private static double totalTime(LatencyHistogram histogram) {
+        return histogram.getMean() * histogram.getCount();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static String change(long recorded, long played) {
+        if (recorded == 0) {
+            return "-";
+        }
+        return String.format("%+.0f%%", (played - recorded) * 100.0 / recorded);
+    }
+
+    private static class MethodLatency {
+        final LatencyHistogram played = new LatencyHistogram();
+        final LatencyHistogram recorded = new LatencyHistogram();
+    }
+
+    private static class TimedEvent {
+        static final Comparator<TimedEvent> BY_DURATION = new Comparator<TimedEvent>() {
+            public int compare(TimedEvent first, TimedEvent second) {
+                return first.duration < second.duration ? -1 : (first.duration == second.duration ? 0 : 1);
+            }
+        };
+
+        final Event event;
+        final long duration;
+
+        TimedEvent(Event event, long duration) {
+            this.event = event;
+            this.duration = duration;
+        }
+    }
+}
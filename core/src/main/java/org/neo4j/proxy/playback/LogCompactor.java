@@ -0,0 +1,490 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.SequencedEvents;
+import org.neo4j.proxy.eventmodel.UnitOfWork;
+import org.neo4j.proxy.eventmodel.UnitsOfWork;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.serialization.BinaryDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.BinarySerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Rewrites a log as the shortest log that leaves the store in the same state when it is played back. Reads,
+ * transactions that did not commit, entities that the log creates and then deletes, and all but the last write
+ * of each property are left out. The log may hold createNode, createRelationshipTo, setProperty, removeProperty
+ * and delete, together with transaction events and reads, as for {@link BatchInsertPlayback}.
+ *
+ * The writes are sorted by entity, keeping their order within each entity, with an external sort: they are
+ * collected until the given number of writes in memory is held, sorted, and spilled as a run to a temporary
+ * binary log, and the runs are then merged. At most the maximum fan-in of runs are open at once; if there are
+ * more, they are first merged in passes into fewer, longer runs. Memory use is bounded by the writes in memory,
+ * a read buffer for each of the runs being merged, the events of the transactions that are open at once, which
+ * are held until each finishes to learn whether it committed, and the properties of a single entity.
+ *
+ * The compacted log deletes the entities that were there before the log started and that the log deletes,
+ * relationships first; then creates the nodes that outlive the log and writes their final properties, and then
+ * does the same for relationships. Its writes are wrapped in transactions of the given number of writes.
+ */
+public class LogCompactor {
+
+    public static final int DEFAULT_WRITES_IN_MEMORY = 100000;
+    public static final int DEFAULT_WRITES_PER_TRANSACTION = 1000;
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+
+    private static final ParameterFactory parameterFactory = new ParameterFactory();
+
+    private static final Comparator<Event> byEntity = new Comparator<Event>() {
+        public int compare(Event first, Event second) {
+            long a = entityId(first);
+            long b = entityId(second);
+            if (a != b) {
+                return a < b ? -1 : 1;
+            }
+            long x = first.getSequenceNumber();
+            long y = second.getSequenceNumber();
+            return x < y ? -1 : (x == y ? 0 : 1);
+        }
+    };
+
+    private final File temporaryDirectory;
+    private final int writesInMemory;
+    private final int writesPerTransaction;
+    private final int maxFanIn;
+    private final List<File> nodeRuns = new ArrayList<File>();
+    private final List<File> relationshipRuns = new ArrayList<File>();
+    private final List<Event> nodeWrites = new ArrayList<Event>();
+    private final List<Event> relationshipWrites = new ArrayList<Event>();
+
+    private Event.Listener output;
+    private long outputSequenceNumber;
+    private int writesInTransaction;
+
+    private long eventsRead;
+    private long writesRead;
+    private long eventsWritten;
+    private long skippedTransactions;
+    private int runs;
+    private int intermediateRuns;
+
+    public LogCompactor(File temporaryDirectory) {
+        this(temporaryDirectory, DEFAULT_WRITES_IN_MEMORY, DEFAULT_WRITES_PER_TRANSACTION, DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * @param writesInMemory how many writes to sort in memory, which is the length of each spilled run
+     * @param maxFanIn how many runs to merge at once, each holding a file open
+     */
+    public LogCompactor(File temporaryDirectory, int writesInMemory, int writesPerTransaction, int maxFanIn) {
+        if (writesInMemory <= 0 || writesPerTransaction <= 0) {
+            throw new IllegalArgumentException("Writes in memory and per transaction must be positive: "
+                    + writesInMemory + ", " + writesPerTransaction);
+        }
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("Must merge at least two runs at once: " + maxFanIn);
+        }
+        this.temporaryDirectory = temporaryDirectory;
+        this.writesInMemory = writesInMemory;
+        this.writesPerTransaction = writesPerTransaction;
+        this.maxFanIn = maxFanIn;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the log holds anything but writes, transaction events and reads, in
+     * which case the output may already have been given some of the compacted log
+     */
+    public void compact(Iterable<Event> events, Event.Listener output) {
+        this.output = output;
+        temporaryDirectory.mkdirs();
+        try {
+            sortIntoRuns(events);
+            mergeDown(nodeRuns);
+            mergeDown(relationshipRuns);
+            for (Entity relationship : entities(relationshipRuns)) {
+                if (relationship.deletion != null) {
+                    write(relationship.deletion);
+                }
+            }
+            for (Entity node : entities(nodeRuns)) {
+                node.writeTo(this);
+            }
+            for (Entity relationship : entities(relationshipRuns)) {
+                relationship.deletion = null;
+                relationship.writeTo(this);
+            }
+            if (writesInTransaction > 0) {
+                endTransaction();
+            }
+        } finally {
+            deleteRuns(nodeRuns);
+            deleteRuns(relationshipRuns);
+        }
+    }
+
+    public long getEventsRead() {
+        return eventsRead;
+    }
+
+    public long getEventsWritten() {
+        return eventsWritten;
+    }
+
+    /**
+     * @return the number of temporary runs the writes were sorted into
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return the number of runs written by merging others, when there were more than the maximum fan-in
+     */
+    public int getIntermediateRuns() {
+        return intermediateRuns;
+    }
+
+    public void writeReport(PrintStream out) {
+        out.printf("Compacted %d events, %d of them committed writes, to %d events in %d sorted runs (%d intermediate)%n",
+                eventsRead, writesRead, eventsWritten, runs, intermediateRuns);
+        out.printf("%d transactions skipped%n", skippedTransactions);
+    }
+
+    private void sortIntoRuns(Iterable<Event> events) {
+        for (UnitOfWork unit : new UnitsOfWork(new SequencedEvents(events))) {
+            eventsRead += unit.getEvents().size();
+            if (!unit.isCommitted()) {
+                if (unit.isTransaction()) {
+                    skippedTransactions++;
+                }
+                continue;
+            }
+            for (Event event : unit.getEvents()) {
+                collect(event);
+            }
+        }
+        spill();
+    }
+
+    private void collect(Event event) {
+        Class targetType = event.getTarget().getType().getWrappedType();
+        String method = event.getMethodName();
+        if (!BatchInsertPlayback.isWrite(targetType, method)) {
+            if (!WritesOnly.isRead(event) && !BatchInsertPlayback.controlsTransaction(method)) {
+                throw new IllegalArgumentException("Not a write-only log, cannot compact " + targetType.getSimpleName() + "." + method);
+            }
+            return;
+        }
+        Event numbered = new Event(event.getTarget(), method, event.getParameters(), event.getResult(),
+                event.getThreadId(), writesRead++, event.getTimestamp(), event.getDuration());
+        if (targetType == Node.class && !"createRelationshipTo".equals(method) || targetType == GraphDatabaseService.class) {
+            nodeWrites.add(numbered);
+        } else {
+            relationshipWrites.add(numbered);
+        }
+        if (nodeWrites.size() + relationshipWrites.size() >= writesInMemory) {
+            spill();
+        }
+    }
+
+    private void spill() {
+        spill(nodeWrites, nodeRuns);
+        spill(relationshipWrites, relationshipRuns);
+    }
+
+    private void spill(List<Event> writes, List<File> runs) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        Collections.sort(writes, byEntity);
+        runs.add(writeRun(writes.iterator()));
+        this.runs++;
+        writes.clear();
+    }
+
+    /**
+     * Merges the runs, at most the maximum fan-in at a time, until there are no more than that left.
+     */
+    private void mergeDown(List<File> runs) {
+        while (runs.size() > maxFanIn) {
+            List<File> merged = new ArrayList<File>();
+            try {
+                for (int i = 0; i < runs.size(); i += maxFanIn) {
+                    List<File> group = runs.subList(i, Math.min(i + maxFanIn, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    MergedRuns writes = new MergedRuns(group);
+                    try {
+                        merged.add(writeRun(writes));
+                    } finally {
+                        writes.close();
+                    }
+                    intermediateRuns++;
+                    deleteRuns(group);
+                }
+            } catch (RuntimeException e) {
+                deleteRuns(merged);
+                throw e;
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+    }
+
+    private File writeRun(Iterator<Event> writes) {
+        try {
+            File run = File.createTempFile("run", ".log", temporaryDirectory);
+            OutputStream stream = new BufferedOutputStream(new FileOutputStream(run));
+            try {
+                BinarySerializer serializer = new BinarySerializer(stream);
+                while (writes.hasNext()) {
+                    serializer.onEvent(writes.next());
+                }
+                serializer.flush();
+            } finally {
+                stream.close();
+            }
+            return run;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void deleteRuns(List<File> runs) {
+        for (File run : runs) {
+            run.delete();
+        }
+    }
+
+    /**
+     * @return the entities written to in the runs, in the order of their recorded ids, each read once
+     */
+    private static Iterable<Entity> entities(final List<File> runs) {
+        return new Iterable<Entity>() {
+            public Iterator<Entity> iterator() {
+                return new EntityIterator(new MergedRuns(runs));
+            }
+        };
+    }
+
+    private void write(Event event) {
+        if (writesInTransaction == 0) {
+            emit(parameterFactory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx",
+                    parameterFactory.fromObjectWithSpecificType(null, Transaction.class));
+        }
+        emit(event.getTarget(), event.getMethodName(), event.getParameters(), event.getResult());
+        if (++writesInTransaction == writesPerTransaction) {
+            endTransaction();
+        }
+    }
+
+    private void endTransaction() {
+        Parameter transaction = parameterFactory.fromObjectWithSpecificType(null, Transaction.class);
+        emit(transaction, "success", parameterFactory.fromObject(null));
+        emit(transaction, "finish", parameterFactory.fromObject(null));
+        writesInTransaction = 0;
+    }
+
+    private void emit(Parameter target, String method, Parameter result) {
+        emit(target, method, new Parameter[0], result);
+    }
+
+    private void emit(Parameter target, String method, Parameter[] parameters, Parameter result) {
+        output.onEvent(new Event(target, method, parameters, result, 1, outputSequenceNumber++));
+        eventsWritten++;
+    }
+
+    /**
+     * The recorded id of the node or relationship a write is to, or of the one it creates.
+     */
+    private static long entityId(Event write) {
+        Parameter entity = write.getMethodName().startsWith("create") ? write.getResult() : write.getTarget();
+        return (Long) entity.getValueForSerialization();
+    }
+
+    /**
+     * The writes to one recorded id, reduced to what outlives the log: the deletion of the entity that was
+     * there before the log started, if the log deletes it, and the creation and final properties of the
+     * entity that has the id at the end.
+     */
+    private static class Entity {
+        Event deletion;
+        Event creation;
+        boolean exists = true;
+        final Map<String, Event> properties = new LinkedHashMap<String, Event>();
+
+        void apply(Event write) {
+            String method = write.getMethodName();
+            if (method.startsWith("create")) {
+                creation = write;
+                exists = true;
+                properties.clear();
+            } else if ("delete".equals(method)) {
+                if (creation == null) {
+                    deletion = write;
+                }
+                creation = null;
+                exists = false;
+                properties.clear();
+            } else {
+                properties.put((String) write.getParameters()[0].getValueForSerialization(), write);
+            }
+        }
+
+        void writeTo(LogCompactor compactor) {
+            if (deletion != null) {
+                compactor.write(deletion);
+            }
+            if (!exists) {
+                return;
+            }
+            if (creation != null) {
+                compactor.write(creation);
+            }
+            for (Event write : properties.values()) {
+                if (creation == null || "setProperty".equals(write.getMethodName())) {
+                    compactor.write(write);
+                }
+            }
+        }
+    }
+
+    private static class EntityIterator implements Iterator<Entity> {
+        private final MergedRuns writes;
+        private Event next;
+
+        EntityIterator(MergedRuns writes) {
+            this.writes = writes;
+            next = writes.hasNext() ? writes.next() : null;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Entity next() {
+            Entity entity = new Entity();
+            long id = entityId(next);
+            do {
+                entity.apply(next);
+                next = writes.hasNext() ? writes.next() : null;
+            } while (next != null && entityId(next) == id);
+            if (next == null) {
+                writes.close();
+            }
+            return entity;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Merges sorted runs, holding the next write of each.
+     */
+    private static class MergedRuns implements Iterator<Event> {
+        private final List<InputStream> streams = new ArrayList<InputStream>();
+        private final PriorityQueue<Head> heads = new PriorityQueue<Head>();
+
+        MergedRuns(List<File> runs) {
+            try {
+                for (File run : runs) {
+                    InputStream stream = new BufferedInputStream(new FileInputStream(run));
+                    streams.add(stream);
+                    Iterator<Event> writes = new BinaryDeserializer(stream).iterator();
+                    if (writes.hasNext()) {
+                        heads.add(new Head(writes.next(), writes));
+                    }
+                }
+            } catch (FileNotFoundException e) {
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        public Event next() {
+            Head head = heads.poll();
+            Event write = head.write;
+            if (head.rest.hasNext()) {
+                heads.add(new Head(head.rest.next(), head.rest));
+            }
+            return write;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        void close() {
+            for (InputStream stream : streams) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    private static class Head implements Comparable<Head> {
+        final Event write;
+        final Iterator<Event> rest;
+
+        Head(Event write, Iterator<Event> rest) {
+            this.write = write;
+            this.rest = rest;
+        }
+
+        public int compareTo(Head other) {
+            return byEntity.compare(write, other.write);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Holds playback ids in a file indexed by recorded id, mapped into memory a page at a time, so that the
+ * mapping for a very large recording lives in the page cache rather than on the heap. The file grows as
+ * the recorded ids reach new pages, and is sparse where the file system allows. Whatever the file held
+ * before is discarded when it is opened.
+ *
+ * The mapped buffers give no guarantee of visibility between threads, so reads and writes of ids are
+ * synchronized; uncontended, that costs little next to playing back the call that needed the id.
+ */
+public class MappedIdMapping implements IdMapping {
+
+    private static final int DEFAULT_PAGE_BITS = 23;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int pageBits;
+    private final int pageMask;
+    private LongBuffer[] pages = new LongBuffer[16];
+
+    public MappedIdMapping(File file) {
+        this(file, DEFAULT_PAGE_BITS);
+    }
+
+    MappedIdMapping(File file, int pageBits) {
+        this.pageBits = pageBits;
+        this.pageMask = (1 << pageBits) - 1;
+        try {
+            this.file = new RandomAccessFile(file, "rw");
+            this.file.setLength(0);
+            this.channel = this.file.getChannel();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized long get(long recordedId) {
+        long pageIndex = recordedId >>> pageBits;
+        if (recordedId < 0 || pageIndex >= pages.length) {
+            return NO_MAPPING;
+        }
+        LongBuffer page = pages[(int) pageIndex];
+        return page == null ? NO_MAPPING : page.get((int) (recordedId & pageMask)) - 1;
+    }
+
+    public synchronized void put(long recordedId, long playbackId) {
+        if (recordedId < 0 || playbackId < 0) {
+            throw new IllegalArgumentException("Ids must not be negative: " + recordedId + " -> " + playbackId);
+        }
+        page(recordedId >>> pageBits).put((int) (recordedId & pageMask), playbackId + 1);
+    }
+
+    /**
+     * Closes the file. The pages stay mapped until they are garbage collected, and must not be used after this.
+     */
+    public synchronized void close() {
+        try {
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Called with the monitor held, as every access to the pages is.
+     */
+    private LongBuffer page(long pageIndex) {
+        if (pageIndex >= pages.length) {
+            if (pageIndex >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Recorded id out of range: " + (pageIndex << pageBits));
+            }
+            int length = pages.length;
+            while (length <= pageIndex) {
+                length = (int) Math.min(Integer.MAX_VALUE, length * 2L);
+            }
+            pages = Arrays.copyOf(pages, length);
+        }
+        LongBuffer page = pages[(int) pageIndex];
+        if (page == null) {
+            long pageBytes = 8L << pageBits;
+            try {
+                page = channel.map(FileChannel.MapMode.READ_WRITE, pageIndex * pageBytes, pageBytes).asLongBuffer();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            pages[(int) pageIndex] = page;
+        }
+        return page;
+    }
+}
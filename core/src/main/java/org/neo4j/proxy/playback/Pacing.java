@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds back each event until the same time has passed since the start of playback as passed between the
+ * first event and this one when they were recorded, divided by the speed. The first event that carries a
+ * timestamp fixes the start, so pacing can be shared between the worker threads of a concurrent playback.
+ */
+class Pacing {
+
+    static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private final double speed;
+    private volatile Origin origin;
+
+    Pacing(double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed must be zero or positive: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    boolean isPaced() {
+        return speed != AS_FAST_AS_POSSIBLE && !Double.isInfinite(speed);
+    }
+
+    void await(Event event) {
+        if (!isPaced() || event.getTimestamp() == Event.NO_TIMESTAMP) {
+            return;
+        }
+        long due = dueTime(event.getTimestamp());
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which an event recorded at the given timestamp should be played back
+     */
+    long dueTime(long timestamp) {
+        Origin start = origin;
+        if (start == null) {
+            synchronized (this) {
+                if (origin == null) {
+                    origin = new Origin(timestamp, System.nanoTime());
+                }
+                start = origin;
+            }
+        }
+        return start.playbackTime + (long) ((timestamp - start.recordedTime) / speed);
+    }
+
+    private static class Origin {
+        final long recordedTime;
+        final long playbackTime;
+
+        Origin(long recordedTime, long playbackTime) {
+            this.recordedTime = recordedTime;
+            this.playbackTime = playbackTime;
+        }
+    }
+}
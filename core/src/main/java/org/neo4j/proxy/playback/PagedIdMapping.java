@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds playback ids in pages of longs indexed by recorded id, allocated as the recorded ids reach them.
+ * Eight bytes per recorded id up to the highest one, which suits the dense ids handed out by Neo4j.
+ */
+public class PagedIdMapping implements IdMapping {
+
+    private static final int DEFAULT_PAGE_BITS = 16;
+
+    private final int pageBits;
+    private final int pageMask;
+    private volatile AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<AtomicLongArray>(16);
+
+    public PagedIdMapping() {
+        this(DEFAULT_PAGE_BITS);
+    }
+
+    PagedIdMapping(int pageBits) {
+        this.pageBits = pageBits;
+        this.pageMask = (1 << pageBits) - 1;
+    }
+
+    public long get(long recordedId) {
+        long pageIndex = recordedId >>> pageBits;
+        AtomicReferenceArray<AtomicLongArray> current = pages;
+        if (recordedId < 0 || pageIndex >= current.length()) {
+            return NO_MAPPING;
+        }
+        AtomicLongArray page = current.get((int) pageIndex);
+        return page == null ? NO_MAPPING : page.get((int) (recordedId & pageMask)) - 1;
+    }
+
+    public void put(long recordedId, long playbackId) {
+        if (recordedId < 0 || playbackId < 0) {
+            throw new IllegalArgumentException("Ids must not be negative: " + recordedId + " -> " + playbackId);
+        }
+        page(recordedId >>> pageBits).set((int) (recordedId & pageMask), playbackId + 1);
+    }
+
+    private AtomicLongArray page(long pageIndex) {
+        AtomicReferenceArray<AtomicLongArray> current = pages;
+        if (pageIndex < current.length()) {
+            AtomicLongArray page = current.get((int) pageIndex);
+            if (page != null) {
+                return page;
+            }
+        }
+        synchronized (this) {
+            current = pages;
+            if (pageIndex >= current.length()) {
+                if (pageIndex >= Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Recorded id out of range: " + (pageIndex << pageBits));
+                }
+                int length = current.length();
+                while (length <= pageIndex) {
+                    length = (int) Math.min(Integer.MAX_VALUE, length * 2L);
+                }
+                AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<AtomicLongArray>(length);
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                pages = grown;
+                current = grown;
+            }
+            AtomicLongArray page = current.get((int) pageIndex);
+            if (page == null) {
+                page = new AtomicLongArray(1 << pageBits);
+                current.set((int) pageIndex, page);
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.SequencedEvents;
+import org.neo4j.proxy.eventmodel.UnitsOfWork;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+public class PlaybackDriver {
+
+    public interface Listener {
+        void beforePlayback(Event event);
+        /**
+         * @param durationNanos how long the call itself took, leaving out decoding its arguments and
+         * capturing its result, so that it can be compared with the recorded duration
+         */
+        void afterPlayback(Event event, long durationNanos);
+        void playbackException(Event event, Exception exception);
+    }
+
+    private PlaybackState playbackState;
+    private final CallSiteCache callSites = new CallSiteCache();
+    private Pacing pacing = new Pacing(Pacing.AS_FAST_AS_POSSIBLE);
+
+    public PlaybackDriver(GraphDatabaseService graphDatabase) {
+        playbackState = new PlaybackState(graphDatabase);
+    }
+
+    /**
+     * @param entityCacheCapacity how many nodes, and how many relationships, to hold on to between events
+     */
+    public PlaybackDriver(GraphDatabaseService graphDatabase, int entityCacheCapacity) {
+        playbackState = new PlaybackState(graphDatabase, entityCacheCapacity);
+    }
+
+    public PlaybackDriver(PlaybackState playbackState) {
+        this.playbackState = playbackState;
+    }
+
+    /**
+     * Reproduces the recorded time between events, scaled by the given speed: 2 plays back twice as fast as
+     * recorded, 0.5 at half speed. Zero, the default, plays back as fast as possible.
+     * Events recorded without a timestamp are never held back.
+     */
+    public void setSpeed(double speed) {
+        pacing = new Pacing(speed);
+    }
+
+    public void playback(Iterable<Event> events) {
+        playback(events, new HaltOnException());
+    }
+
+    public void playback(Iterable<Event> events, Listener listener) {
+        for (Event event : events) {
+            playback(event, playbackState, listener);
+        }
+    }
+
+    /**
+     * Plays back the events of each recorded thread in their own session, running units of work concurrently
+     * on a pool of worker threads. A unit of work starts only once the previous unit of its recorded thread,
+     * and the last unit to touch any of the same nodes or relationships, have been played back.
+     * The listener is called from the worker threads.
+     */
+    public void playbackConcurrently(Iterable<Event> events, int threads, Listener listener) {
+        new ConcurrentPlayback(this, threads).playback(new UnitsOfWork(new SequencedEvents(events)), listener);
+    }
+
+    /**
+     * Plays back only the events that the writes depend on, skipping the rest of the reads; see
+     * {@link WritesOnly}. The events are read twice, once to analyse them and once to play them back.
+     *
+     * @return the analysis, with how many events were skipped
+     */
+    public WritesOnly playbackWritesOnly(Iterable<Event> events, Listener listener) {
+        WritesOnly writesOnly = WritesOnly.analyse(events);
+        playback(writesOnly.filter(events), listener);
+        return writesOnly;
+    }
+
+    /**
+     * Plays back the work of the given number of recorded transactions at a time in one transaction, for
+     * rebuilding a store from a log faster than one commit per recorded transaction allows. Transactions are
+     * played back in the order they finished, with their transaction events left out; those that were rolled
+     * back or never finished are skipped. Events outside transactions are played back within the current batch.
+     *
+     * @return how many commits were merged, and the throughput
+     */
+    public BatchReport playbackInBatches(Iterable<Event> events, int transactionsPerCommit, Listener listener) {
+        return new BatchedPlayback(this, playbackState.getGraphDatabase(), transactionsPerCommit)
+                .playback(new UnitsOfWork(new SequencedEvents(events)), listener);
+    }
+
+    PlaybackState newSession() {
+        return playbackState.newSession();
+    }
+
+    void playback(Event event, PlaybackState state, Listener listener) {
+        pacing.await(event);
+        try {
+            listener.beforePlayback(event);
+
+            Object target = event.getTarget().getValueForPlayback(state);
+            Object[] arguments = decodeParameters(event.getParameters(), state);
+            translateIds(event, arguments, state);
+            Method method = callSites.resolve(event.getTarget().getType().getWrappedType(), event.getMethodName(), arguments);
+
+            long start = System.nanoTime();
+            Object result = method.invoke(target, arguments);
+            long duration = System.nanoTime() - start;
+            state.capture(event, result);
+            state.release(event);
+
+            listener.afterPlayback(event, duration);
+        } catch (InvocationTargetException e) {
+            listener.playbackException(event, e);
+        } catch (IllegalAccessException e) {
+            listener.playbackException(event, e);
+        } catch (RuntimeException e) {
+            listener.playbackException(event, e);
+        }
+    }
+
+    /**
+     * Ids passed to the database are the recorded ones, so look up what those entities are called on playback.
+     */
+    private static void translateIds(Event event, Object[] arguments, PlaybackState state) {
+        if (arguments.length != 1 || event.getTarget().getType().getWrappedType() != GraphDatabaseService.class) {
+            return;
+        }
+        if ("getNodeById".equals(event.getMethodName())) {
+            arguments[0] = state.getPlaybackNodeId((Long) arguments[0]);
+        } else if ("getRelationshipById".equals(event.getMethodName())) {
+            arguments[0] = state.getPlaybackRelationshipId((Long) arguments[0]);
+        }
+    }
+
+    private Object[] decodeParameters(Parameter[] parameters, PlaybackState state) {
+        Object[] decodedParameters = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            decodedParameters[i] = parameters[i].getValueForPlayback(state);
+        }
+        return decodedParameters;
+    }
+
+    public static class HaltOnException implements Listener {
+        public void beforePlayback(Event event) {
+        }
+
+        public void afterPlayback(Event event, long durationNanos) {
+        }
+
+        public void playbackException(Event event, Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.EntityFinder;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.util.*;
+
+/**
+ * What playback has captured so far. A session made by {@link #newSession()} shares the entities captured
+ * by every session, but has its own current transaction and its own iterables and iterators, so that the
+ * events of each recorded thread can be played back on a different thread. Within a session, the depth of
+ * transactions and the iterables and iterators to let go of when the outermost one finishes are kept for
+ * each recorded thread, so that the events of several threads can also be played back in one session.
+ */
+public class PlaybackState implements EntityFinder {
+    private GraphDatabaseService graphDatabase;
+    private EntityCache.NodeCache nodeCache;
+    private EntityCache.RelationshipCache relationshipCache;
+    private Transaction currentTransaction = null;
+    private Map<Class, SurrogateIdentified> entitiesWithSurrogateIdentifiers = new HashMap<Class, SurrogateIdentified>();
+    private Map<Long, RecordedThread> recordedThreads = new HashMap<Long, RecordedThread>();
+
+    public PlaybackState(GraphDatabaseService graphDatabase) {
+        this(graphDatabase, EntityCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param entityCacheCapacity how many nodes, and how many relationships, to hold on to between events
+     */
+    public PlaybackState(GraphDatabaseService graphDatabase, int entityCacheCapacity) {
+        this(graphDatabase, entityCacheCapacity, new PagedIdMapping(), new PagedIdMapping());
+    }
+
+    /**
+     * @param nodeIds where to keep the playback id of each recorded node id
+     * @param relationshipIds where to keep the playback id of each recorded relationship id
+     */
+    public PlaybackState(GraphDatabaseService graphDatabase, int entityCacheCapacity, IdMapping nodeIds, IdMapping relationshipIds) {
+        this(graphDatabase, new EntityCache.NodeCache(graphDatabase, nodeIds, entityCacheCapacity),
+                new EntityCache.RelationshipCache(graphDatabase, relationshipIds, entityCacheCapacity));
+    }
+
+    private PlaybackState(GraphDatabaseService graphDatabase, EntityCache.NodeCache nodeCache, EntityCache.RelationshipCache relationshipCache) {
+        this.graphDatabase = graphDatabase;
+        this.nodeCache = nodeCache;
+        this.relationshipCache = relationshipCache;
+        entitiesWithSurrogateIdentifiers.put(Iterable.class, new SurrogateIdentified());
+        entitiesWithSurrogateIdentifiers.put(Iterator.class, new SurrogateIdentified());
+    }
+
+    public PlaybackState newSession() {
+        return new PlaybackState(graphDatabase, nodeCache, relationshipCache);
+    }
+
+    /**
+     * Captures a result, numbering iterables and iterators in the order they are captured. This matches the
+     * surrogate identifiers recorded by a single thread.
+     */
+    public void capture(Object result) {
+        capture(result, null, 0);
+    }
+
+    /**
+     * Captures a result under the id or surrogate identifier it was recorded with, so that later events find
+     * it even if playback gave it a different id, as the result of a call recorded on thread 0.
+     */
+    public void capture(Parameter recordedResult, Object result) {
+        capture(result, recordedResult, 0);
+    }
+
+    /**
+     * Captures the result of an event under the id or surrogate identifier it was recorded with, on behalf of
+     * the thread that recorded it.
+     */
+    public void capture(Event event, Object result) {
+        capture(result, event.getResult(), event.getThreadId());
+    }
+
+    private void capture(Object result, Parameter recordedResult, long threadId) {
+        if (result instanceof Node) {
+            if (recordedResult != null && recordedResult.getType().getWrappedType() == Node.class) {
+                nodeCache.put((Long) recordedResult.getValueForSerialization(), (Node) result);
+            } else {
+                nodeCache.put((Node) result);
+            }
+        }
+        if (result instanceof Relationship) {
+            if (recordedResult != null && recordedResult.getType().getWrappedType() == Relationship.class) {
+                relationshipCache.put((Long) recordedResult.getValueForSerialization(), (Relationship) result);
+            } else {
+                relationshipCache.put((Relationship) result);
+            }
+        }
+        if (result instanceof Transaction) {
+            currentTransaction = (Transaction) result;
+            recordedThread(threadId).transactionDepth++;
+        }
+        if (result instanceof Iterable) {
+            captureWithSurrogateIdentifier(Iterable.class, result, recordedResult, threadId);
+        }
+        if (result instanceof Iterator) {
+            captureWithSurrogateIdentifier(Iterator.class, result, recordedResult, threadId);
+        }
+    }
+
+    private void captureWithSurrogateIdentifier(Class wrappedType, Object result, Parameter recordedResult, long threadId) {
+        SurrogateIdentified entities = entitiesWithSurrogateIdentifiers.get(wrappedType);
+        int surrogateIdentifier;
+        if (recordedResult == null) {
+            surrogateIdentifier = entities.captured;
+        } else if (recordedResult.getType().getWrappedType() == wrappedType) {
+            surrogateIdentifier = (Integer) recordedResult.getValueForSerialization();
+        } else {
+            entities.captured++;
+            return;
+        }
+        entities.live.put(surrogateIdentifier, result);
+        recordedThread(threadId).captured(wrappedType, surrogateIdentifier);
+        entities.captured++;
+    }
+
+    private RecordedThread recordedThread(long threadId) {
+        RecordedThread recordedThread = recordedThreads.get(threadId);
+        if (recordedThread == null) {
+            recordedThread = new RecordedThread();
+            recordedThreads.put(threadId, recordedThread);
+        }
+        return recordedThread;
+    }
+
+    /**
+     * Lets go of what the recording shows will not be used again, once the event has been played back:
+     * an iterator whose <code>hasNext</code> returned false, and every iterable and iterator captured for the
+     * recorded thread of the event when its outermost transaction finishes.
+     */
+    public void release(Event event) {
+        Class targetType = event.getTarget().getType().getWrappedType();
+        if (targetType == Iterator.class && "hasNext".equals(event.getMethodName())
+                && Boolean.FALSE.equals(event.getResult().getValueForSerialization())) {
+            entitiesWithSurrogateIdentifiers.get(Iterator.class).live.remove((Integer) event.getTarget().getValueForSerialization());
+        } else if (targetType == Transaction.class && "finish".equals(event.getMethodName())) {
+            RecordedThread recordedThread = recordedThreads.get(event.getThreadId());
+            if (recordedThread != null && recordedThread.transactionDepth > 0 && --recordedThread.transactionDepth == 0) {
+                for (int i = 0; i < recordedThread.capturedCount; i++) {
+                    long captured = recordedThread.captured[i];
+                    Class wrappedType = (captured & 1) == 0 ? Iterable.class : Iterator.class;
+                    entitiesWithSurrogateIdentifiers.get(wrappedType).live.remove((int) (captured >> 1));
+                }
+                recordedThreads.remove(event.getThreadId());
+            }
+        }
+    }
+
+    /**
+     * Lets go of every iterable and iterator captured by this session, as finishing its outermost transaction
+     * would.
+     */
+    void releaseSurrogateIdentified() {
+        for (SurrogateIdentified entities : entitiesWithSurrogateIdentifiers.values()) {
+            entities.live.clear();
+        }
+        for (RecordedThread recordedThread : recordedThreads.values()) {
+            recordedThread.capturedCount = 0;
+        }
+    }
+
+    /**
+     * @return how many iterables or iterators are held for the given wrapped type
+     */
+    int countSurrogateIdentified(Class wrappedType) {
+        return entitiesWithSurrogateIdentifiers.get(wrappedType).live.size();
+    }
+
+    public GraphDatabaseService getGraphDatabase() {
+        return graphDatabase;
+    }
+
+    public Transaction getCurrentTransaction() {
+        return currentTransaction;
+    }
+
+    public Node getNode(long id) {
+        return nodeCache.get(id);
+    }
+
+    public Relationship getRelationship(long id) {
+        return relationshipCache.get(id);
+    }
+
+    /**
+     * @return the playback id of the node recorded with the given id, which is the same id if it was not captured
+     */
+    public long getPlaybackNodeId(long recordedId) {
+        return nodeCache.playbackId(recordedId);
+    }
+
+    public long getPlaybackRelationshipId(long recordedId) {
+        return relationshipCache.playbackId(recordedId);
+    }
+
+    public Object findBySurrogateIdentifier(Class wrappedType, int surrogateIdentifier) {
+        return entitiesWithSurrogateIdentifiers.get(wrappedType).live.get(surrogateIdentifier);
+    }
+
+    private static class SurrogateIdentified {
+        final IntObjectMap<Object> live = new IntObjectMap<Object>();
+        int captured;
+    }
+
+    /**
+     * The transaction depth of a recorded thread, and the iterables and iterators captured for it, each as its
+     * surrogate identifier shifted left with the lowest bit set for an iterator.
+     */
+    private static class RecordedThread {
+        int transactionDepth;
+        long[] captured = new long[8];
+        int capturedCount;
+
+        void captured(Class wrappedType, int surrogateIdentifier) {
+            if (capturedCount == captured.length) {
+                captured = Arrays.copyOf(captured, capturedCount * 2);
+            }
+            captured[capturedCount++] = ((long) surrogateIdentifier << 1) | (wrappedType == Iterator.class ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.proxy.eventlog.EventLog;
+import org.neo4j.proxy.eventlog.Segment;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.JacksonDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.ParallelJacksonDeserializer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+public class PlaybackTool {
+    private int threads = 1;
+    private int parserThreads = 2;
+    private int transactionsPerCommit = 0;
+    private boolean batchInsert = false;
+    private boolean writesOnly = false;
+    private double speed = 0;
+    private boolean verbose = false;
+    private int entityCacheCapacity = EntityCache.DEFAULT_CAPACITY;
+    private String idMappingDirectory = null;
+    private long fromSegment = 0;
+
+    public static void main(String[] args) throws FileNotFoundException {
+        PlaybackTool tool = new PlaybackTool();
+        List<String> arguments = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                tool.threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--parser-threads=")) {
+                tool.parserThreads = Integer.parseInt(arg.substring("--parser-threads=".length()));
+            } else if (arg.startsWith("--batch=")) {
+                tool.transactionsPerCommit = Integer.parseInt(arg.substring("--batch=".length()));
+            } else if (arg.startsWith("--speed=")) {
+                tool.speed = Double.parseDouble(arg.substring("--speed=".length()));
+            } else if (arg.startsWith("--entity-cache=")) {
+                tool.entityCacheCapacity = Integer.parseInt(arg.substring("--entity-cache=".length()));
+            } else if (arg.startsWith("--id-mapping-dir=")) {
+                tool.idMappingDirectory = arg.substring("--id-mapping-dir=".length());
+            } else if (arg.startsWith("--from-segment=")) {
+                tool.fromSegment = Long.parseLong(arg.substring("--from-segment=".length()));
+            } else if (arg.equals("--batch-insert")) {
+                tool.batchInsert = true;
+            } else if (arg.equals("--writes-only")) {
+                tool.writesOnly = true;
+            } else if (arg.equals("--verbose")) {
+                tool.verbose = true;
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (arguments.size() == 2) {
+            tool.run(arguments.get(0), arguments.get(1));
+        } else {
+            System.out.println("Usage: java " + PlaybackTool.class + " [--threads=<n>] [--parser-threads=<n>] [--batch=<transactions-per-commit>] [--batch-insert] [--writes-only] [--speed=<multiplier>] [--entity-cache=<entities>] [--id-mapping-dir=<directory>] [--from-segment=<n>] [--verbose] <database-store-directory> <event-log-file-or-directory>");
+        }
+    }
+
+    private void run(String storeDirectory, String eventLog) throws FileNotFoundException {
+        boolean segmented = new File(eventLog).isDirectory();
+        if (transactionsPerCommit > 0 && threads > 1) {
+            throw new IllegalArgumentException("Batched playback runs on a single thread");
+        }
+        if (fromSegment > 0 && !segmented) {
+            throw new IllegalArgumentException("Can only start at a segment of an event log directory");
+        }
+        if (batchInsert) {
+            BatchInsertPlayback playback = new BatchInsertPlayback(storeDirectory);
+            playback.playback(segmented ? new EventLog(new File(eventLog)) : rereadable(eventLog));
+            playback.writeReport(System.out);
+            return;
+        }
+        EmbeddedGraphDatabase database = new EmbeddedGraphDatabase(storeDirectory);
+
+        IdMapping nodeIds;
+        IdMapping relationshipIds;
+        if (idMappingDirectory == null) {
+            nodeIds = new PagedIdMapping();
+            relationshipIds = new PagedIdMapping();
+        } else {
+            File directory = new File(idMappingDirectory);
+            directory.mkdirs();
+            nodeIds = new MappedIdMapping(new File(directory, "node.ids"));
+            relationshipIds = new MappedIdMapping(new File(directory, "relationship.ids"));
+            if (fromSegment > 0) {
+                IdMappingSnapshot.read(snapshotFile(fromSegment), nodeIds, relationshipIds);
+            }
+        }
+        PlaybackDriver driver = new PlaybackDriver(new PlaybackState(database, entityCacheCapacity, nodeIds, relationshipIds));
+        driver.setSpeed(speed);
+        LatencyReport report = new LatencyReport(verbose ? new ConsoleEventLogger() : new PlaybackDriver.HaltOnException());
+        if (segmented) {
+            List<Segment> segments = new ArrayList<Segment>();
+            for (Segment segment : new EventLog(new File(eventLog)).getSegments()) {
+                if (segment.getNumber() >= fromSegment) {
+                    segments.add(segment);
+                }
+            }
+            WritesOnly analysis = writesOnly ? analyse(segments) : null;
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                if (idMappingDirectory != null) {
+                    IdMappingSnapshot.write(snapshotFile(segment.getNumber()), segment.getReferencedNodeIds(),
+                            segment.getReferencedRelationshipIds(), nodeIds, relationshipIds);
+                }
+                playback(driver, analysis == null ? segment : analysis.filter(i, segment), report);
+            }
+        } else if (writesOnly) {
+            Iterable<Event> events = rereadable(eventLog);
+            playback(driver, analyse(Collections.singletonList(events)).filter(events), report);
+        } else {
+            playback(driver, jsonEvents(eventLog), report);
+        }
+        report.writeReport(System.out);
+    }
+
+    /**
+     * Parses on background threads unless there are to be no parser threads, so that parsing overlaps with
+     * playback.
+     */
+    private Iterable<Event> jsonEvents(String eventLog) throws FileNotFoundException {
+        if (parserThreads == 0) {
+            return new JacksonDeserializer(new BufferedReader(new FileReader(eventLog)));
+        }
+        return new ParallelJacksonDeserializer(new FileReader(eventLog), parserThreads);
+    }
+
+    /**
+     * For reading a JSON log more than once, as batch insertion and finding the events writes depend on do.
+     */
+    private Iterable<Event> rereadable(final String eventLog) {
+        return new Iterable<Event>() {
+            public Iterator<Event> iterator() {
+                try {
+                    return jsonEvents(eventLog).iterator();
+                } catch (FileNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Analyses all the streams to be played back at once, so that a write keeps the read that returned the
+     * iterable it uses even when that read is in an earlier segment.
+     */
+    private static WritesOnly analyse(List<? extends Iterable<Event>> parts) {
+        WritesOnly analysis = WritesOnly.analyse(parts);
+        System.out.printf("Skipping %d of %d events that no write depends on%n",
+                analysis.getEvents() - analysis.getNeededEvents(), analysis.getEvents());
+        return analysis;
+    }
+
+    private void playback(PlaybackDriver driver, Iterable<Event> events, LatencyReport report) {
+        if (transactionsPerCommit > 0) {
+            driver.playbackInBatches(events, transactionsPerCommit, report).writeReport(System.out);
+        } else if (threads > 1) {
+            driver.playbackConcurrently(events, threads, report);
+        } else {
+            driver.playback(events, report);
+        }
+    }
+
+    private File snapshotFile(long segmentNumber) {
+        return new File(idMappingDirectory, "snapshot-" + segmentNumber + ".ids");
+    }
+
+    private class ConsoleEventLogger extends PlaybackDriver.HaltOnException {
+        @Override
+        public void beforePlayback(Event event) {
+            System.out.println("Playing back: " + event);
+        }
+    }
+}
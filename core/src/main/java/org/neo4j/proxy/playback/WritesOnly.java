@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Finds the events of a stream that playback needs in order to reproduce the writes in it, so that the
+ * reads nothing depends on can be skipped. Every event is needed except reads: calls of getters, has-methods,
+ * iterator, next and the like. A read is needed all the same if a needed event later uses the iterable or
+ * iterator it returned, and so is every earlier call on such an iterator, to keep it at the same position.
+ * Reads that return nodes and relationships are never needed for that, since playback finds those by id.
+ *
+ * The analysis reads the stream once, remembering a few numbers per event rather than the events, and then
+ * works back from the last event. The stream must be read in the same order when it is filtered. Streams that
+ * are played back one after the other, such as the segments of an event log, are analysed together, since an
+ * iterable returned in one may be used in the next.
+ */
+public class WritesOnly {
+
+    private static final long NONE = -1;
+
+    private final BitSet needed;
+    private final int events;
+    private final int[] partStarts;
+
+    private WritesOnly(BitSet needed, int events, int[] partStarts) {
+        this.needed = needed;
+        this.events = events;
+        this.partStarts = partStarts;
+    }
+
+    public static WritesOnly analyse(Iterable<Event> events) {
+        return analyse(Collections.singletonList(events));
+    }
+
+    /**
+     * @param parts streams in the order they will be played back, to be filtered with {@link #filter(int, Iterable)}
+     */
+    public static WritesOnly analyse(List<? extends Iterable<Event>> parts) {
+        long[] targets = new long[1024];
+        long[] results = new long[1024];
+        Map<Integer, long[]> parameters = new HashMap<Integer, long[]>();
+        BitSet reads = new BitSet();
+        int[] partStarts = new int[parts.size()];
+        int count = 0;
+        for (int part = 0; part < partStarts.length; part++) {
+            partStarts[part] = count;
+            for (Event event : parts.get(part)) {
+                if (count == targets.length) {
+                    targets = Arrays.copyOf(targets, count * 2);
+                    results = Arrays.copyOf(results, count * 2);
+                }
+                targets[count] = surrogate(event.getTarget());
+                results[count] = surrogate(event.getResult());
+                long[] surrogateParameters = surrogates(event.getParameters());
+                if (surrogateParameters != null) {
+                    parameters.put(count, surrogateParameters);
+                }
+                if (isRead(event)) {
+                    reads.set(count);
+                }
+                count++;
+            }
+        }
+
+        BitSet needed = new BitSet(count);
+        Set<Long> neededSurrogates = new HashSet<Long>();
+        for (int i = count - 1; i >= 0; i--) {
+            if (!reads.get(i) || neededSurrogates.contains(targets[i]) || neededSurrogates.contains(results[i])) {
+                needed.set(i);
+                if (targets[i] != NONE) {
+                    neededSurrogates.add(targets[i]);
+                }
+                long[] surrogateParameters = parameters.get(i);
+                if (surrogateParameters != null) {
+                    for (long surrogate : surrogateParameters) {
+                        neededSurrogates.add(surrogate);
+                    }
+                }
+            }
+        }
+        return new WritesOnly(needed, count, partStarts);
+    }
+
+    /**
+     * @return whether the event at the given position of the stream, counting from zero, is needed
+     */
+    public boolean isNeeded(int position) {
+        return needed.get(position);
+    }
+
+    public int getEvents() {
+        return events;
+    }
+
+    public int getNeededEvents() {
+        return needed.cardinality();
+    }
+
+    /**
+     * @return the needed events of the stream, which must be the one that was analysed
+     */
+    public Iterable<Event> filter(Iterable<Event> events) {
+        return filter(0, events);
+    }
+
+    /**
+     * @return the needed events of one of the streams that were analysed together
+     */
+    public Iterable<Event> filter(int part, final Iterable<Event> events) {
+        final int start = partStarts[part];
+        return new Iterable<Event>() {
+            public Iterator<Event> iterator() {
+                final Iterator<Event> source = events.iterator();
+                return new Iterator<Event>() {
+                    private int position = start - 1;
+                    private Event next;
+
+                    public boolean hasNext() {
+                        while (next == null && source.hasNext()) {
+                            Event event = source.next();
+                            if (needed.get(++position)) {
+                                next = event;
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    public Event next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Event event = next;
+                        next = null;
+                        return event;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return whether the event only reads, so that playing it back changes nothing
+     */
+    static boolean isRead(Event event) {
+        String method = event.getMethodName();
+        return method.startsWith("get") || method.startsWith("has") || "iterator".equals(method) || "next".equals(method)
+                || "equals".equals(method) || "hashCode".equals(method) || "toString".equals(method);
+    }
+
+    /**
+     * @return the surrogate identifier of an iterable or iterator, with the type in the lowest bit, or none
+     */
+    private static long surrogate(Parameter parameter) {
+        Class type = parameter.getType().getWrappedType();
+        if (type == Iterable.class) {
+            return ((long) (Integer) parameter.getValueForSerialization()) << 1;
+        }
+        if (type == Iterator.class) {
+            return ((long) (Integer) parameter.getValueForSerialization()) << 1 | 1;
+        }
+        return NONE;
+    }
+
+    private static long[] surrogates(Parameter[] parameters) {
+        long[] surrogates = null;
+        for (int i = 0; i < parameters.length; i++) {
+            long surrogate = surrogate(parameters[i]);
+            if (surrogate != NONE) {
+                if (surrogates == null) {
+                    surrogates = new long[0];
+                }
+                surrogates = Arrays.copyOf(surrogates, surrogates.length + 1);
+                surrogates[surrogates.length - 1] = surrogate;
+            }
+        }
+        return surrogates;
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands events to a bounded ring buffer and returns immediately; a background writer thread drains the buffer
+ * in batches and passes the events on to the delegate listener. The delegate is flushed after each batch if it
+ * implements {@link Flushable}.
+ *
+ * Call {@link #close()} after the recorded database has been shut down, so that buffered events are written.
+ * Events that are being handed over while the listener is closed are still written: the writer keeps going
+ * until no recording thread is inside {@link #onEvent(Event)}.
+ */
+public class AsynchronousListener implements Event.Listener {
+
+    /**
+     * What to do with an event when the ring buffer is full.
+     */
+    public enum BackPressure {
+        /** Wait on the recording thread until the writer has made room. */
+        BLOCK,
+        /** Discard the event and count it, see {@link AsynchronousListener#getDroppedEvents()}. */
+        DROP,
+        /** Pass the event synchronously to a secondary listener, such as a serializer writing a spill file. */
+        SPILL
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final Event.Listener delegate;
+    private final BackPressure backPressure;
+    private final Event.Listener spillListener;
+    private final Object spillLock = new Object();
+    private final BlockingQueue<Event> ringBuffer;
+    private final int batchSize;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong spilledEvents = new AtomicLong();
+    private final AtomicInteger producers = new AtomicInteger();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AsynchronousListener(Event.Listener delegate, int capacity, BackPressure backPressure) {
+        this(delegate, capacity, DEFAULT_BATCH_SIZE, backPressure, null);
+    }
+
+    public AsynchronousListener(Event.Listener delegate, int capacity, Event.Listener spillListener) {
+        this(delegate, capacity, DEFAULT_BATCH_SIZE, BackPressure.SPILL, spillListener);
+    }
+
+    /**
+     * With {@link BackPressure#SPILL}, events that do not fit in the ring buffer are passed to the spill
+     * listener on the recording thread. Calls to the spill listener are serialized, so it need not be
+     * thread-safe, but recording threads that spill at the same time wait for each other.
+     */
+    public AsynchronousListener(Event.Listener delegate, int capacity, int batchSize,
+                                BackPressure backPressure, Event.Listener spillListener) {
+        if (backPressure == BackPressure.SPILL && spillListener == null) {
+            throw new IllegalArgumentException("Spilling requires a spill listener");
+        }
+        this.delegate = delegate;
+        this.backPressure = backPressure;
+        this.spillListener = spillListener;
+        this.ringBuffer = new ArrayBlockingQueue<Event>(capacity);
+        this.batchSize = batchSize;
+        this.writer = new Thread(new Writer(), "Neo4j proxy event writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void onEvent(Event event) {
+        producers.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Listener has been closed");
+            }
+            if (!ringBuffer.offer(event)) {
+                applyBackPressure(event);
+            }
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private void applyBackPressure(Event event) {
+        switch (backPressure) {
+            case BLOCK:
+                try {
+                    ringBuffer.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedEvents.incrementAndGet();
+                }
+                break;
+            case DROP:
+                droppedEvents.incrementAndGet();
+                break;
+            case SPILL:
+                spilledEvents.incrementAndGet();
+                synchronized (spillLock) {
+                    spillListener.onEvent(event);
+                }
+                break;
+        }
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long getSpilledEvents() {
+        return spilledEvents.get();
+    }
+
+    public int getBufferedEvents() {
+        return ringBuffer.size();
+    }
+
+    /**
+     * Stops accepting events, waits for the writer to drain the ring buffer and flushes the delegate.
+     */
+    public void close() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (spillLock) {
+            flush(spillListener);
+        }
+    }
+
+    private static void flush(Event.Listener listener) {
+        if (listener instanceof Flushable) {
+            try {
+                ((Flushable) listener).flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private class Writer implements Runnable {
+        public void run() {
+            List<Event> batch = new ArrayList<Event>(batchSize);
+            while (running || producers.get() > 0 || !ringBuffer.isEmpty()) {
+                try {
+                    Event first = ringBuffer.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                ringBuffer.drainTo(batch, batchSize - 1);
+                try {
+                    for (Event event : batch) {
+                        delegate.onEvent(event);
+                    }
+                    flush(delegate);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                batch.clear();
+            }
+        }
+    }
+}
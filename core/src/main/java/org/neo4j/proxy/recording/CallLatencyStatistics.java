@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.statistics.Latency;
+import org.neo4j.proxy.statistics.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a latency histogram for each method of each target type, from the durations of the events passing
+ * through on their way to the delegate, and registers each histogram as an MBean named
+ * <code>org.neo4j.proxy:type=CallLatency,recording=&lt;name&gt;,target=&lt;type&gt;,method=&lt;method&gt;</code>.
+ * Events without a duration are passed on without being counted. Each event is passed on before it is
+ * counted, and a histogram that cannot be registered, such as when another recording in the same server has
+ * the same name, is logged and kept without its MBean, so that statistics never cost an event of the log.
+ */
+public class CallLatencyStatistics implements Event.Listener {
+
+    public static final String DOMAIN = "org.neo4j.proxy";
+
+    private static final Logger logger = Logger.getLogger(CallLatencyStatistics.class.getName());
+
+    private final String name;
+    private final Event.Listener delegate;
+    private final MBeanServer server;
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+    public CallLatencyStatistics(String name, Event.Listener delegate) {
+        this(name, delegate, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param name distinguishes the MBeans of this recording from those of any other in the same server
+     */
+    public CallLatencyStatistics(String name, Event.Listener delegate, MBeanServer server) {
+        this.name = name;
+        this.delegate = delegate;
+        this.server = server;
+    }
+
+    public void onEvent(Event event) {
+        delegate.onEvent(event);
+        if (event.getDuration() != Event.NO_DURATION) {
+            histogram(event.getTarget().getType().getTypeName(), event.getMethodName()).record(event.getDuration());
+        }
+    }
+
+    /**
+     * @return the histogram, or null if no call has been counted for this method
+     */
+    public LatencyHistogram getHistogram(String targetType, String methodName) {
+        return histograms.get(targetType + "." + methodName);
+    }
+
+    public synchronized void unregister() {
+        try {
+            for (ObjectName objectName : registered) {
+                server.unregisterMBean(objectName);
+            }
+            registered.clear();
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private LatencyHistogram histogram(String targetType, String methodName) {
+        String key = targetType + "." + methodName;
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, created);
+            if (histogram == null) {
+                histogram = created;
+                register(targetType, methodName, created);
+            }
+        }
+        return histogram;
+    }
+
+    private synchronized void register(String targetType, String methodName, LatencyHistogram histogram) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=CallLatency,recording=" + ObjectName.quote(name)
+                    + ",target=" + targetType + ",method=" + methodName);
+            server.registerMBean(new Latency(histogram), objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not register call latency of " + targetType + "." + methodName
+                    + " for recording " + name, e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers events in a lock-free queue per recording thread, and passes a thread's events on to the delegate
+ * in one batch when its buffer is full or the thread finishes a transaction. Only the hand-off holds the
+ * delegate's lock, so concurrent threads do not contend on every event.
+ *
+ * Batches from different threads interleave, so the delegate sees events out of sequence; readers that need
+ * the recorded order should sort by {@link Event#getSequenceNumber()}. Call {@link #flush()} once recording
+ * has finished, to hand off what remains in the buffers of all threads.
+ *
+ * The buffers of threads that have died are handed off and forgotten on flush, and every so often as new
+ * threads start recording, so that a server with a thread per request does not collect them without bound.
+ */
+public class PerThreadBufferingListener implements Event.Listener, Flushable {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final int REGISTRATIONS_BETWEEN_PRUNING = 64;
+
+    private final Event.Listener delegate;
+    private final int batchSize;
+    private final Queue<Buffer> buffers = new ConcurrentLinkedQueue<Buffer>();
+    private final AtomicInteger registrations = new AtomicInteger();
+    private final ThreadLocal<Buffer> threadBuffer = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            if (registrations.incrementAndGet() % REGISTRATIONS_BETWEEN_PRUNING == 0) {
+                pruneDeadThreads();
+            }
+            Buffer buffer = new Buffer(Thread.currentThread());
+            buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    public PerThreadBufferingListener(Event.Listener delegate) {
+        this(delegate, DEFAULT_BATCH_SIZE);
+    }
+
+    public PerThreadBufferingListener(Event.Listener delegate, int batchSize) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+    }
+
+    public void onEvent(Event event) {
+        Buffer buffer = threadBuffer.get();
+        buffer.events.add(event);
+        if (++buffer.size >= batchSize || endsTransaction(event)) {
+            buffer.size = 0;
+            handOff(buffer.events);
+        }
+    }
+
+    private static boolean endsTransaction(Event event) {
+        return "finish".equals(event.getMethodName())
+                && event.getTarget().getType().getWrappedType() == Transaction.class;
+    }
+
+    public void flush() {
+        for (Buffer buffer : buffers) {
+            handOff(buffer.events);
+        }
+        pruneDeadThreads();
+        if (delegate instanceof Flushable) {
+            synchronized (delegate) {
+                try {
+                    ((Flushable) delegate).flush();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A dead thread adds nothing more to its buffer, so once that has been handed off it can be dropped.
+     */
+    private void pruneDeadThreads() {
+        for (Iterator<Buffer> iterator = buffers.iterator(); iterator.hasNext(); ) {
+            Buffer buffer = iterator.next();
+            Thread owner = buffer.owner.get();
+            if (owner == null || !owner.isAlive()) {
+                handOff(buffer.events);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of threads whose buffers are held
+     */
+    int getBufferCount() {
+        return buffers.size();
+    }
+
+    private void handOff(Queue<Event> events) {
+        synchronized (delegate) {
+            Event event;
+            while ((event = events.poll()) != null) {
+                delegate.onEvent(event);
+            }
+        }
+    }
+
+    private static class Buffer {
+        final Queue<Event> events = new ConcurrentLinkedQueue<Event>();
+        final WeakReference<Thread> owner;
+        int size;
+
+        Buffer(Thread owner) {
+            this.owner = new WeakReference<Thread>(owner);
+        }
+    }
+}
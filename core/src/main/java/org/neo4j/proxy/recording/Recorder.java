@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared by the recording wrappers: turns calls that have already been made on the delegates into events,
+ * and wraps any returned entities, transactions, iterables and iterators so that calls on them are recorded too.
+ *
+ * As the dynamic proxy does, the wrappers read {@link #start()} right before calling the delegate, which is the
+ * timestamp of the event, and the duration is measured from there unless durations are not to be measured.
+ * Where the delegate is called as the last argument of a recording method, start is passed just before it, so
+ * that the left to right evaluation of arguments reads the clock after the parameters have been converted.
+ *
+ * As with the dynamic proxy, a call whose arguments or result cannot be converted into parameters is not
+ * recorded, and the unwrapped result is handed back.
+ */
+class Recorder {
+
+    static final Parameter[] NO_PARAMETERS = new Parameter[0];
+
+    private final Event.Listener listener;
+    private final ParameterFactory parameterFactory;
+    private final AtomicLong sequence = new AtomicLong();
+    private final boolean measureDurations;
+
+    Recorder(Event.Listener listener, ParameterFactory parameterFactory, boolean measureDurations) {
+        this.listener = listener;
+        this.parameterFactory = parameterFactory;
+        this.measureDurations = measureDurations;
+    }
+
+    long start() {
+        return System.nanoTime();
+    }
+
+    Parameter target(Object delegate) {
+        return parameterFactory.fromObject(delegate);
+    }
+
+    /**
+     * @return the parameters, or null if an argument could not be converted
+     */
+    Parameter[] parameters(Object argument) {
+        try {
+            return new Parameter[]{parameterFactory.fromObject(argument)};
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    Parameter[] parameters(Object first, Object second) {
+        try {
+            return new Parameter[]{parameterFactory.fromObject(first), parameterFactory.fromObject(second)};
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    void record(Parameter target, String methodName, Parameter[] parameters, long start, Object result) {
+        long duration = durationSince(start);
+        if (parameters == null) {
+            return;
+        }
+        try {
+            listener.onEvent(event(target, methodName, parameters, parameterFactory.fromObject(result), start, duration));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    Node node(Parameter target, String methodName, Parameter[] parameters, long start, Node result) {
+        Parameter resultParameter = recordWithSpecificType(target, methodName, parameters, start, result, Node.class);
+        return resultParameter == null ? result : new RecordingNode(this, result, resultParameter);
+    }
+
+    Relationship relationship(Parameter target, String methodName, Parameter[] parameters, long start, Relationship result) {
+        Parameter resultParameter = recordWithSpecificType(target, methodName, parameters, start, result, Relationship.class);
+        return resultParameter == null ? result : new RecordingRelationship(this, result, resultParameter);
+    }
+
+    Transaction transaction(Parameter target, String methodName, Parameter[] parameters, long start, Transaction result) {
+        Parameter resultParameter = recordWithSpecificType(target, methodName, parameters, start, result, Transaction.class);
+        return resultParameter == null ? result : new RecordingTransaction(this, result, resultParameter);
+    }
+
+    <T> Iterable<T> iterable(Parameter target, String methodName, Parameter[] parameters, long start, Iterable<T> result) {
+        Parameter resultParameter = recordWithSpecificType(target, methodName, parameters, start, result, Iterable.class);
+        return resultParameter == null ? result : new RecordingIterable<T>(this, result, resultParameter);
+    }
+
+    <T> Iterator<T> iterator(Parameter target, String methodName, Parameter[] parameters, long start, Iterator<T> result) {
+        Parameter resultParameter = recordWithSpecificType(target, methodName, parameters, start, result, Iterator.class);
+        return resultParameter == null ? result : new RecordingIterator<T>(this, result, resultParameter);
+    }
+
+    /**
+     * For results whose static type does not say what they are, such as the elements of an iterator.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T element(Parameter target, String methodName, Parameter[] parameters, long start, T result) {
+        if (result instanceof Node) {
+            return (T) node(target, methodName, parameters, start, (Node) result);
+        }
+        if (result instanceof Relationship) {
+            return (T) relationship(target, methodName, parameters, start, (Relationship) result);
+        }
+        record(target, methodName, parameters, start, result);
+        return result;
+    }
+
+    private Parameter recordWithSpecificType(Parameter target, String methodName, Parameter[] parameters, long start, Object result, Class type) {
+        long duration = durationSince(start);
+        if (parameters == null) {
+            return null;
+        }
+        try {
+            Parameter resultParameter = result == null ? parameterFactory.fromObject(null) : parameterFactory.fromObjectWithSpecificType(result, type);
+            listener.onEvent(event(target, methodName, parameters, resultParameter, start, duration));
+            return result == null ? null : resultParameter;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private long durationSince(long start) {
+        return measureDurations ? System.nanoTime() - start : Event.NO_DURATION;
+    }
+
+    private Event event(Parameter target, String methodName, Parameter[] parameters, Parameter result, long start, long duration) {
+        return new Event(target, methodName, parameters, result, Thread.currentThread().getId(), sequence.getAndIncrement(), start, duration);
+    }
+
+    static Node unwrap(Node node) {
+        return node instanceof RecordingNode ? ((RecordingNode) node).delegate : node;
+    }
+
+    static PropertyContainer unwrap(PropertyContainer entity) {
+        return entity instanceof RecordingPropertyContainer ? ((RecordingPropertyContainer) entity).delegate : entity;
+    }
+
+    static Object unwrap(Object object) {
+        return object instanceof RecordingPropertyContainer ? ((RecordingPropertyContainer) object).delegate : object;
+    }
+}
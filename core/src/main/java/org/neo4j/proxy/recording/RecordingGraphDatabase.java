@@ -31,32 +31,65 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RecordingGraphDatabase {
 
     public static GraphDatabaseService create(final Event.Listener listener, final GraphDatabaseService delegate) {
+        return create(listener, delegate, true);
+    }
+
+    /**
+     * @param measureDurations whether to time each call, at the cost of reading the clock a second time; each
+     * event is given the time its call started either way
+     */
+    public static GraphDatabaseService create(final Event.Listener listener, final GraphDatabaseService delegate, boolean measureDurations) {
         final Event.Listener filteredListener = new FilterOutUninterestingMethods(listener);
         ParameterFactory parameterFactory = new ParameterFactory();
-        return createProxy(filteredListener, delegate, parameterFactory.fromObject(delegate), GraphDatabaseService.class, parameterFactory);
+        return createProxy(filteredListener, delegate, parameterFactory.fromObject(delegate), GraphDatabaseService.class, parameterFactory, new AtomicLong(), measureDurations);
+    }
+
+    /**
+     * Records the same calls as {@link #create}, but through hand-written wrappers rather than dynamic proxies.
+     * Arguments are unwrapped before they are passed to the delegate, and equals, hashCode and toString are
+     * not recorded.
+     */
+    public static GraphDatabaseService createWithWrappers(Event.Listener listener, GraphDatabaseService delegate) {
+        return createWithWrappers(listener, delegate, true);
+    }
+
+    public static GraphDatabaseService createWithWrappers(Event.Listener listener, GraphDatabaseService delegate, boolean measureDurations) {
+        return new RecordingGraphDatabaseService(new Recorder(listener, new ParameterFactory(), measureDurations), delegate);
     }
 
     public static <T> T createProxy(final Event.Listener listener, final T delegate, final Parameter targetParameter, final Class aClass, final ParameterFactory parameterFactory) {
+        return createProxy(listener, delegate, targetParameter, aClass, parameterFactory, new AtomicLong(), true);
+    }
+
+    /**
+     * @param sequence shared by every proxy recording the same database, to number the events from all threads
+     */
+    public static <T> T createProxy(final Event.Listener listener, final T delegate, final Parameter targetParameter, final Class aClass, final ParameterFactory parameterFactory, final AtomicLong sequence, final boolean measureDurations) {
 
         //noinspection unchecked
         return (T) Proxy.newProxyInstance(RecordingGraphDatabase.class.getClassLoader(), new Class[]{aClass}, new InvocationHandler() {
             public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
 
+                final long start = System.nanoTime();
                 final Object result = method.invoke(delegate, arguments);
+                final long duration = measureDurations ? System.nanoTime() - start : Event.NO_DURATION;
                 try {
                     if (result instanceof Node || result instanceof Relationship || result instanceof Transaction
                             || result instanceof Iterable || result instanceof Iterator) {
                         Class<?> proxyInterface = chooseProxyInterface(method, result);
                         final Parameter resultParameter = parameterFactory.fromObjectWithSpecificType(result, proxyInterface);
-                        listener.onEvent(new Event(targetParameter, method.getName(), convert(arguments, parameterFactory), resultParameter));
-                        return createProxy(listener, result, resultParameter, proxyInterface, parameterFactory);
+                        listener.onEvent(new Event(targetParameter, method.getName(), convert(arguments, parameterFactory), resultParameter,
+                                Thread.currentThread().getId(), sequence.getAndIncrement(), start, duration));
+                        return createProxy(listener, result, resultParameter, proxyInterface, parameterFactory, sequence, measureDurations);
                     } else {
                         final Parameter resultParameter = parameterFactory.fromObject(result);
-                        listener.onEvent(new Event(targetParameter, method.getName(), convert(arguments, parameterFactory), resultParameter));
+                        listener.onEvent(new Event(targetParameter, method.getName(), convert(arguments, parameterFactory), resultParameter,
+                                Thread.currentThread().getId(), sequence.getAndIncrement(), start, duration));
                     }
                 } catch (RuntimeException e) {
                     e.printStackTrace();
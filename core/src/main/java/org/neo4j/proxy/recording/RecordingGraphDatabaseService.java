@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.KernelEventHandler;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import static org.neo4j.proxy.recording.Recorder.NO_PARAMETERS;
+
+/**
+ * Records calls on a database without reflection. Calls whose arguments or results have no parameter type,
+ * such as event handler registration and the index manager, are passed through unrecorded.
+ */
+class RecordingGraphDatabaseService implements GraphDatabaseService {
+
+    private final Recorder recorder;
+    private final GraphDatabaseService delegate;
+    private final Parameter target;
+
+    RecordingGraphDatabaseService(Recorder recorder, GraphDatabaseService delegate) {
+        this.recorder = recorder;
+        this.delegate = delegate;
+        this.target = recorder.target(delegate);
+    }
+
+    public Node createNode() {
+        return recorder.node(target, "createNode", NO_PARAMETERS, recorder.start(), delegate.createNode());
+    }
+
+    public Node getNodeById(long id) {
+        return recorder.node(target, "getNodeById", recorder.parameters(id), recorder.start(), delegate.getNodeById(id));
+    }
+
+    public Relationship getRelationshipById(long id) {
+        return recorder.relationship(target, "getRelationshipById", recorder.parameters(id), recorder.start(), delegate.getRelationshipById(id));
+    }
+
+    public Node getReferenceNode() {
+        return recorder.node(target, "getReferenceNode", NO_PARAMETERS, recorder.start(), delegate.getReferenceNode());
+    }
+
+    public Iterable<Node> getAllNodes() {
+        return recorder.iterable(target, "getAllNodes", NO_PARAMETERS, recorder.start(), delegate.getAllNodes());
+    }
+
+    public Iterable<RelationshipType> getRelationshipTypes() {
+        return recorder.iterable(target, "getRelationshipTypes", NO_PARAMETERS, recorder.start(), delegate.getRelationshipTypes());
+    }
+
+    public void shutdown() {
+        long start = recorder.start();
+        delegate.shutdown();
+        recorder.record(target, "shutdown", NO_PARAMETERS, start, null);
+    }
+
+    public boolean enableRemoteShell() {
+        long start = recorder.start();
+        boolean result = delegate.enableRemoteShell();
+        recorder.record(target, "enableRemoteShell", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public boolean enableRemoteShell(Map<String, Serializable> initialProperties) {
+        return delegate.enableRemoteShell(initialProperties);
+    }
+
+    public Transaction beginTx() {
+        return recorder.transaction(target, "beginTx", NO_PARAMETERS, recorder.start(), delegate.beginTx());
+    }
+
+    public <T> TransactionEventHandler<T> registerTransactionEventHandler(TransactionEventHandler<T> handler) {
+        return delegate.registerTransactionEventHandler(handler);
+    }
+
+    public <T> TransactionEventHandler<T> unregisterTransactionEventHandler(TransactionEventHandler<T> handler) {
+        return delegate.unregisterTransactionEventHandler(handler);
+    }
+
+    public KernelEventHandler registerKernelEventHandler(KernelEventHandler handler) {
+        return delegate.registerKernelEventHandler(handler);
+    }
+
+    public KernelEventHandler unregisterKernelEventHandler(KernelEventHandler handler) {
+        return delegate.unregisterKernelEventHandler(handler);
+    }
+
+    public IndexManager index() {
+        return delegate.index();
+    }
+
+    public boolean equals(Object other) {
+        return delegate.equals(other instanceof RecordingGraphDatabaseService ? ((RecordingGraphDatabaseService) other).delegate : other);
+    }
+
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import java.util.Iterator;
+
+import static org.neo4j.proxy.recording.Recorder.NO_PARAMETERS;
+
+class RecordingIterator<T> implements Iterator<T> {
+
+    private final Recorder recorder;
+    private final Iterator<T> delegate;
+    private final Parameter target;
+
+    RecordingIterator(Recorder recorder, Iterator<T> delegate, Parameter target) {
+        this.recorder = recorder;
+        this.delegate = delegate;
+        this.target = target;
+    }
+
+    public boolean hasNext() {
+        long start = recorder.start();
+        boolean result = delegate.hasNext();
+        recorder.record(target, "hasNext", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public T next() {
+        return recorder.element(target, "next", NO_PARAMETERS, recorder.start(), delegate.next());
+    }
+
+    public void remove() {
+        long start = recorder.start();
+        delegate.remove();
+        recorder.record(target, "remove", NO_PARAMETERS, start, null);
+    }
+}
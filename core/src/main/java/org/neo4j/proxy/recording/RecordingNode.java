@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import static org.neo4j.proxy.recording.Recorder.NO_PARAMETERS;
+
+class RecordingNode extends RecordingPropertyContainer<Node> implements Node {
+
+    RecordingNode(Recorder recorder, Node delegate, Parameter target) {
+        super(recorder, delegate, target);
+    }
+
+    public long getId() {
+        long start = recorder.start();
+        long result = delegate.getId();
+        recorder.record(target, "getId", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public void delete() {
+        long start = recorder.start();
+        delegate.delete();
+        recorder.record(target, "delete", NO_PARAMETERS, start, null);
+    }
+
+    public Iterable<Relationship> getRelationships() {
+        return recorder.iterable(target, "getRelationships", NO_PARAMETERS, recorder.start(), delegate.getRelationships());
+    }
+
+    public boolean hasRelationship() {
+        long start = recorder.start();
+        boolean result = delegate.hasRelationship();
+        recorder.record(target, "hasRelationship", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public Iterable<Relationship> getRelationships(RelationshipType... types) {
+        return recorder.iterable(target, "getRelationships", recorder.parameters(types), recorder.start(), delegate.getRelationships(types));
+    }
+
+    public Iterable<Relationship> getRelationships(Direction direction, RelationshipType... types) {
+        return recorder.iterable(target, "getRelationships", recorder.parameters(direction, types), recorder.start(), delegate.getRelationships(direction, types));
+    }
+
+    public boolean hasRelationship(RelationshipType... types) {
+        long start = recorder.start();
+        boolean result = delegate.hasRelationship(types);
+        recorder.record(target, "hasRelationship", recorder.parameters(types), start, result);
+        return result;
+    }
+
+    public boolean hasRelationship(Direction direction, RelationshipType... types) {
+        long start = recorder.start();
+        boolean result = delegate.hasRelationship(direction, types);
+        recorder.record(target, "hasRelationship", recorder.parameters(direction, types), start, result);
+        return result;
+    }
+
+    public Iterable<Relationship> getRelationships(Direction dir) {
+        return recorder.iterable(target, "getRelationships", recorder.parameters(dir), recorder.start(), delegate.getRelationships(dir));
+    }
+
+    public boolean hasRelationship(Direction dir) {
+        long start = recorder.start();
+        boolean result = delegate.hasRelationship(dir);
+        recorder.record(target, "hasRelationship", recorder.parameters(dir), start, result);
+        return result;
+    }
+
+    public Iterable<Relationship> getRelationships(RelationshipType type, Direction dir) {
+        return recorder.iterable(target, "getRelationships", recorder.parameters(type, dir), recorder.start(), delegate.getRelationships(type, dir));
+    }
+
+    public boolean hasRelationship(RelationshipType type, Direction dir) {
+        long start = recorder.start();
+        boolean result = delegate.hasRelationship(type, dir);
+        recorder.record(target, "hasRelationship", recorder.parameters(type, dir), start, result);
+        return result;
+    }
+
+    public Relationship getSingleRelationship(RelationshipType type, Direction dir) {
+        return recorder.relationship(target, "getSingleRelationship", recorder.parameters(type, dir), recorder.start(), delegate.getSingleRelationship(type, dir));
+    }
+
+    public Relationship createRelationshipTo(Node otherNode, RelationshipType type) {
+        Node unwrapped = Recorder.unwrap(otherNode);
+        return recorder.relationship(target, "createRelationshipTo", recorder.parameters(unwrapped, type), recorder.start(), delegate.createRelationshipTo(unwrapped, type));
+    }
+
+    /**
+     * Traversals are not recorded.
+     */
+    public Traverser traverse(Traverser.Order traversalOrder, StopEvaluator stopEvaluator, ReturnableEvaluator returnableEvaluator, RelationshipType relationshipType, Direction direction) {
+        return delegate.traverse(traversalOrder, stopEvaluator, returnableEvaluator, relationshipType, direction);
+    }
+
+    public Traverser traverse(Traverser.Order traversalOrder, StopEvaluator stopEvaluator, ReturnableEvaluator returnableEvaluator, RelationshipType firstRelationshipType, Direction firstDirection, RelationshipType secondRelationshipType, Direction secondDirection) {
+        return delegate.traverse(traversalOrder, stopEvaluator, returnableEvaluator, firstRelationshipType, firstDirection, secondRelationshipType, secondDirection);
+    }
+
+    public Traverser traverse(Traverser.Order traversalOrder, StopEvaluator stopEvaluator, ReturnableEvaluator returnableEvaluator, Object... relationshipTypesAndDirections) {
+        return delegate.traverse(traversalOrder, stopEvaluator, returnableEvaluator, relationshipTypesAndDirections);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import static org.neo4j.proxy.recording.Recorder.NO_PARAMETERS;
+
+abstract class RecordingPropertyContainer<T extends PropertyContainer> implements PropertyContainer {
+
+    final Recorder recorder;
+    final T delegate;
+    final Parameter target;
+
+    RecordingPropertyContainer(Recorder recorder, T delegate, Parameter target) {
+        this.recorder = recorder;
+        this.delegate = delegate;
+        this.target = target;
+    }
+
+    public GraphDatabaseService getGraphDatabase() {
+        long start = recorder.start();
+        GraphDatabaseService result = delegate.getGraphDatabase();
+        recorder.record(target, "getGraphDatabase", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public boolean hasProperty(String key) {
+        long start = recorder.start();
+        boolean result = delegate.hasProperty(key);
+        recorder.record(target, "hasProperty", recorder.parameters(key), start, result);
+        return result;
+    }
+
+    public Object getProperty(String key) {
+        long start = recorder.start();
+        Object result = delegate.getProperty(key);
+        recorder.record(target, "getProperty", recorder.parameters(key), start, result);
+        return result;
+    }
+
+    public Object getProperty(String key, Object defaultValue) {
+        long start = recorder.start();
+        Object result = delegate.getProperty(key, defaultValue);
+        recorder.record(target, "getProperty", recorder.parameters(key, defaultValue), start, result);
+        return result;
+    }
+
+    public void setProperty(String key, Object value) {
+        long start = recorder.start();
+        delegate.setProperty(key, value);
+        recorder.record(target, "setProperty", recorder.parameters(key, value), start, null);
+    }
+
+    public Object removeProperty(String key) {
+        long start = recorder.start();
+        Object result = delegate.removeProperty(key);
+        recorder.record(target, "removeProperty", recorder.parameters(key), start, result);
+        return result;
+    }
+
+    public Iterable<String> getPropertyKeys() {
+        return recorder.iterable(target, "getPropertyKeys", NO_PARAMETERS, recorder.start(), delegate.getPropertyKeys());
+    }
+
+    public Iterable<Object> getPropertyValues() {
+        return recorder.iterable(target, "getPropertyValues", NO_PARAMETERS, recorder.start(), delegate.getPropertyValues());
+    }
+
+    public boolean equals(Object other) {
+        return delegate.equals(Recorder.unwrap(other));
+    }
+
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    public String toString() {
+        return delegate.toString();
+    }
+}
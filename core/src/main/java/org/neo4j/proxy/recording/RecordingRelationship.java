@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import static org.neo4j.proxy.recording.Recorder.NO_PARAMETERS;
+
+class RecordingRelationship extends RecordingPropertyContainer<Relationship> implements Relationship {
+
+    RecordingRelationship(Recorder recorder, Relationship delegate, Parameter target) {
+        super(recorder, delegate, target);
+    }
+
+    public long getId() {
+        long start = recorder.start();
+        long result = delegate.getId();
+        recorder.record(target, "getId", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public void delete() {
+        long start = recorder.start();
+        delegate.delete();
+        recorder.record(target, "delete", NO_PARAMETERS, start, null);
+    }
+
+    public Node getStartNode() {
+        return recorder.node(target, "getStartNode", NO_PARAMETERS, recorder.start(), delegate.getStartNode());
+    }
+
+    public Node getEndNode() {
+        return recorder.node(target, "getEndNode", NO_PARAMETERS, recorder.start(), delegate.getEndNode());
+    }
+
+    public Node getOtherNode(Node node) {
+        Node unwrapped = Recorder.unwrap(node);
+        return recorder.node(target, "getOtherNode", recorder.parameters(unwrapped), recorder.start(), delegate.getOtherNode(unwrapped));
+    }
+
+    /**
+     * Not recorded, since there is no parameter type for arrays of nodes.
+     */
+    public Node[] getNodes() {
+        return delegate.getNodes();
+    }
+
+    public RelationshipType getType() {
+        long start = recorder.start();
+        RelationshipType result = delegate.getType();
+        recorder.record(target, "getType", NO_PARAMETERS, start, result);
+        return result;
+    }
+
+    public boolean isType(RelationshipType type) {
+        long start = recorder.start();
+        boolean result = delegate.isType(type);
+        recorder.record(target, "isType", recorder.parameters(type), start, result);
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.neo4j.graphdb.Lock;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+
+import static org.neo4j.proxy.recording.Recorder.NO_PARAMETERS;
+
+class RecordingTransaction implements Transaction {
+
+    private final Recorder recorder;
+    private final Transaction delegate;
+    private final Parameter target;
+
+    RecordingTransaction(Recorder recorder, Transaction delegate, Parameter target) {
+        this.recorder = recorder;
+        this.delegate = delegate;
+        this.target = target;
+    }
+
+    public void failure() {
+        long start = recorder.start();
+        delegate.failure();
+        recorder.record(target, "failure", NO_PARAMETERS, start, null);
+    }
+
+    public void success() {
+        long start = recorder.start();
+        delegate.success();
+        recorder.record(target, "success", NO_PARAMETERS, start, null);
+    }
+
+    public void finish() {
+        long start = recorder.start();
+        delegate.finish();
+        recorder.record(target, "finish", NO_PARAMETERS, start, null);
+    }
+
+    /**
+     * Locks are not recorded, since there is no parameter type for them.
+     */
+    public Lock acquireWriteLock(PropertyContainer entity) {
+        return delegate.acquireWriteLock(Recorder.unwrap(entity));
+    }
+
+    public Lock acquireReadLock(PropertyContainer entity) {
+        return delegate.acquireReadLock(Recorder.unwrap(entity));
+    }
+}
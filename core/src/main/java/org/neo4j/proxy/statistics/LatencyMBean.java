@@ -17,26 +17,23 @@
  * You should have received a copy of the GNU Affero General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
-package org.neo4j.proxy.eventmodel.serialization;
+package org.neo4j.proxy.statistics;
 
-import org.neo4j.proxy.eventmodel.Event;
-
-import java.io.PrintWriter;
+/**
+ * Management view of a {@link LatencyHistogram}.
+ */
+public interface LatencyMBean {
+    long getCount();
 
-public class JacksonSerializer implements Event.Listener {
+    double getMeanNanos();
 
-    private PrintWriter writer;
+    long getMaxNanos();
 
-    public JacksonSerializer(PrintWriter writer) {
-        this.writer = writer;
-    }
+    long getMedianNanos();
 
-    public void onEvent(Event event) {
-        writer.println(JacksonAdaptor.serializeEvent(event).toString());
-    }
+    long get99thPercentileNanos();
 
-    public void flush() {
-        writer.flush();
-    }
+    long get999thPercentileNanos();
 
+    void reset();
 }
@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.neo4j.graphdb.*;
+import org.neo4j.kernel.EmbeddedGraphDatabase;
+import org.neo4j.kernel.EmbeddedReadOnlyGraphDatabase;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.serialization.BinaryDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.BinarySerializer;
+import org.neo4j.proxy.eventmodel.serialization.JacksonDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.JacksonSerializer;
+import org.neo4j.proxy.playback.BatchInsertPlayback;
+import org.neo4j.proxy.playback.BatchReport;
+import org.neo4j.proxy.playback.PlaybackDriver;
+import org.neo4j.proxy.recording.RecordingGraphDatabase;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordReplayTest {
+
+    @Test
+    public void shouldRecordAndPlayback()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        final List<Event> events = new ArrayList<Event>();
+        writeToDatabase(recordedStoreDir, new EventListAccumulator(events));
+        makeAssertionsAboutTheData(recordedStoreDir);
+
+        String playbackStoreDir = "target/playbackDatabase";
+        playbackToDifferentDatabase(events, playbackStoreDir);
+        makeAssertionsAboutTheData(playbackStoreDir);
+    }
+
+    @Test
+    public void shouldRecordAndPlaybackAfterSerialisingEvents()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        JacksonSerializer serializer = new JacksonSerializer(new PrintWriter(byteArrayOutputStream));
+        writeToDatabase(recordedStoreDir, serializer);
+        serializer.flush();
+        makeAssertionsAboutTheData(recordedStoreDir);
+
+        String playbackStoreDir = "target/playbackDatabase";
+        playbackToDifferentDatabase(new JacksonDeserializer(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(byteArrayOutputStream.toByteArray())))), playbackStoreDir);
+        makeAssertionsAboutTheData(playbackStoreDir);
+    }
+
+    @Test
+    public void shouldRecordAndPlaybackAfterBinarySerialisingEvents()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        BinarySerializer serializer = new BinarySerializer(byteArrayOutputStream);
+        writeToDatabase(recordedStoreDir, serializer);
+        serializer.flush();
+        makeAssertionsAboutTheData(recordedStoreDir);
+
+        String playbackStoreDir = "target/playbackDatabase";
+        playbackToDifferentDatabase(new BinaryDeserializer(new ByteArrayInputStream(byteArrayOutputStream.toByteArray())), playbackStoreDir);
+        makeAssertionsAboutTheData(playbackStoreDir);
+    }
+
+    @Test
+    public void shouldPlaybackThreadsConcurrently() throws Exception
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        clean(recordedStoreDir);
+        List<Event> events = Collections.synchronizedList(new ArrayList<Event>());
+        final GraphDatabaseService recordingGraphDatabase = RecordingGraphDatabase.create(new EventListAccumulator(events), new EmbeddedGraphDatabase(recordedStoreDir));
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        Transaction tx = recordingGraphDatabase.beginTx();
+                        try {
+                            Node parent = recordingGraphDatabase.createNode();
+                            parent.setProperty("thread", thread);
+                            Node child = recordingGraphDatabase.createNode();
+                            child.setProperty("thread", thread);
+                            parent.createRelationshipTo(child, RelationshipTypes.working_on);
+                            tx.success();
+                        } finally {
+                            tx.finish();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        recordingGraphDatabase.shutdown();
+
+        String playbackStoreDir = "target/playbackDatabase";
+        clean(playbackStoreDir);
+        EmbeddedGraphDatabase playbackGraphDatabase = new EmbeddedGraphDatabase(playbackStoreDir);
+        new PlaybackDriver(playbackGraphDatabase).playbackConcurrently(events, 4, new PlaybackDriver.HaltOnException());
+
+        int[] nodesPerThread = new int[threads.length];
+        for (Node node : playbackGraphDatabase.getAllNodes()) {
+            if (node.hasProperty("thread")) {
+                nodesPerThread[(Integer) node.getProperty("thread")]++;
+                if (node.hasRelationship(Direction.OUTGOING)) {
+                    Node child = node.getSingleRelationship(RelationshipTypes.working_on, Direction.OUTGOING).getEndNode();
+                    assertEquals(node.getProperty("thread"), child.getProperty("thread"));
+                }
+            }
+        }
+        playbackGraphDatabase.shutdown();
+        for (int count : nodesPerThread) {
+            assertEquals(20, count);
+        }
+    }
+
+    @Test
+    public void shouldLookUpNodesByTheirPlaybackIdInAStoreThatAlreadyHasNodes()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        clean(recordedStoreDir);
+        List<Event> events = new ArrayList<Event>();
+        GraphDatabaseService recordingGraphDatabase = RecordingGraphDatabase.create(new EventListAccumulator(events), new EmbeddedGraphDatabase(recordedStoreDir));
+        Transaction tx = recordingGraphDatabase.beginTx();
+        long nodeId = recordingGraphDatabase.createNode().getId();
+        tx.success();
+        tx.finish();
+        tx = recordingGraphDatabase.beginTx();
+        recordingGraphDatabase.getNodeById(nodeId).setProperty("name", "Mattias");
+        tx.success();
+        tx.finish();
+        recordingGraphDatabase.shutdown();
+
+        String playbackStoreDir = "target/playbackDatabase";
+        clean(playbackStoreDir);
+        EmbeddedGraphDatabase playbackGraphDatabase = new EmbeddedGraphDatabase(playbackStoreDir);
+        tx = playbackGraphDatabase.beginTx();
+        for (int i = 0; i < 5; i++) {
+            playbackGraphDatabase.createNode();
+        }
+        tx.success();
+        tx.finish();
+
+        new PlaybackDriver(playbackGraphDatabase).playback(events);
+
+        int named = 0;
+        for (Node node : playbackGraphDatabase.getAllNodes()) {
+            if (node.hasProperty("name")) {
+                assertTrue(node.getId() != nodeId);
+                named++;
+            }
+        }
+        playbackGraphDatabase.shutdown();
+        assertEquals(1, named);
+    }
+
+    @Test
+    public void shouldMergeCommittedTransactionsAndSkipRolledBackOnesInBatches()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        clean(recordedStoreDir);
+        List<Event> events = new ArrayList<Event>();
+        GraphDatabaseService recordingGraphDatabase = RecordingGraphDatabase.create(new EventListAccumulator(events), new EmbeddedGraphDatabase(recordedStoreDir));
+        for (int i = 0; i < 10; i++) {
+            Transaction tx = recordingGraphDatabase.beginTx();
+            recordingGraphDatabase.createNode().setProperty("number", i);
+            tx.success();
+            tx.finish();
+        }
+        Transaction tx = recordingGraphDatabase.beginTx();
+        recordingGraphDatabase.createNode().setProperty("rolledBack", true);
+        tx.failure();
+        tx.finish();
+        recordingGraphDatabase.shutdown();
+
+        String playbackStoreDir = "target/playbackDatabase";
+        clean(playbackStoreDir);
+        EmbeddedGraphDatabase playbackGraphDatabase = new EmbeddedGraphDatabase(playbackStoreDir);
+        BatchReport report = new PlaybackDriver(playbackGraphDatabase).playbackInBatches(events, 4, new PlaybackDriver.HaltOnException());
+
+        int numbered = 0;
+        for (Node node : playbackGraphDatabase.getAllNodes()) {
+            if (node.hasProperty("number")) {
+                numbered++;
+            }
+            assertTrue(!node.hasProperty("rolledBack"));
+        }
+        playbackGraphDatabase.shutdown();
+        assertEquals(10, numbered);
+        assertEquals(10, report.getRecordedTransactions());
+        assertEquals(3, report.getCommits());
+        assertEquals(7, report.getMergedCommits());
+        assertEquals(1, report.getSkippedTransactions());
+    }
+
+    @Test
+    public void shouldRebuildAStoreThroughTheBatchInserter()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        clean(recordedStoreDir);
+        List<Event> events = new ArrayList<Event>();
+        GraphDatabaseService recordingGraphDatabase = RecordingGraphDatabase.create(new EventListAccumulator(events), new EmbeddedGraphDatabase(recordedStoreDir));
+        Transaction tx = recordingGraphDatabase.beginTx();
+        Node alistair = recordingGraphDatabase.createNode();
+        alistair.setProperty("name", "Alistair");
+        Node mattias = recordingGraphDatabase.createNode();
+        mattias.setProperty("name", "Mattias");
+        Node temporary = recordingGraphDatabase.createNode();
+        temporary.setProperty("name", "Temporary");
+        alistair.createRelationshipTo(mattias, RelationshipTypes.working_on).setProperty("effort", 1d);
+        Relationship doomed = alistair.createRelationshipTo(temporary, RelationshipTypes.working_on);
+        tx.success();
+        tx.finish();
+        tx = recordingGraphDatabase.beginTx();
+        mattias.setProperty("name", "Mattias Persson");
+        alistair.removeProperty("name");
+        doomed.delete();
+        temporary.delete();
+        tx.success();
+        tx.finish();
+        long mattiasId = mattias.getId();
+        recordingGraphDatabase.shutdown();
+
+        String playbackStoreDir = "target/playbackDatabase";
+        clean(playbackStoreDir);
+        BatchInsertPlayback playback = new BatchInsertPlayback(playbackStoreDir);
+        playback.playback(events);
+
+        assertEquals(2, playback.getNodesCreated());
+        assertEquals(1, playback.getRelationshipsCreated());
+        assertEquals(2, playback.getDeletedEntitiesSkipped());
+        EmbeddedGraphDatabase playbackGraphDatabase = new EmbeddedGraphDatabase(playbackStoreDir);
+        Node rebuilt = playbackGraphDatabase.getNodeById(playback.getInsertedNodeId(mattiasId));
+        assertEquals("Mattias Persson", rebuilt.getProperty("name"));
+        Relationship relationship = rebuilt.getSingleRelationship(RelationshipTypes.working_on, Direction.INCOMING);
+        assertEquals(1d, relationship.getProperty("effort"));
+        assertTrue(!relationship.getStartNode().hasProperty("name"));
+        playbackGraphDatabase.shutdown();
+    }
+
+    @Test
+    public void printEventsToConsole()
+    {
+        String recordedStoreDir = "target/recordedDatabase";
+        JacksonSerializer serializer = new JacksonSerializer(new PrintWriter(System.out));
+        writeToDatabase(recordedStoreDir, serializer);
+        serializer.flush();
+    }
+
+    private EmbeddedGraphDatabase playbackToDifferentDatabase(Iterable<Event> events, String playbackStoreDir) {
+        clean(playbackStoreDir);
+
+        EmbeddedGraphDatabase playbackGraphDatabase = new EmbeddedGraphDatabase(playbackStoreDir);
+        new PlaybackDriver(playbackGraphDatabase).playback(events);
+
+        playbackGraphDatabase.shutdown();
+        return playbackGraphDatabase;
+    }
+
+    private void writeToDatabase(String storeDir, Event.Listener listener) {
+        clean(storeDir);
+
+        GraphDatabaseService recordingGraphDatabase = RecordingGraphDatabase.create(listener, new EmbeddedGraphDatabase(storeDir));
+
+        addData(recordingGraphDatabase);
+
+        recordingGraphDatabase.shutdown();
+    }
+
+    private void clean(String storeDir) {
+        try {
+            FileUtils.deleteDirectory(new File(storeDir));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void addData(GraphDatabaseService graphDatabase) {
+        Transaction tx = graphDatabase.beginTx();
+        try {
+            Node storeRefactoring = graphDatabase.createNode();
+
+            Node alistair = graphDatabase.createNode();
+            alistair.setProperty("name", "Alistair");
+            Node chris = graphDatabase.createNode();
+            chris.setProperty("name", "Chris");
+            Node mattias = graphDatabase.createNode();
+            mattias.setProperty("name", "Mattias");
+
+            Relationship relationship1 = alistair.createRelationshipTo(storeRefactoring, RelationshipTypes.working_on);
+            relationship1.setProperty("effort", 1d);
+            Relationship relationship2 = chris.createRelationshipTo(storeRefactoring, RelationshipTypes.working_on);
+            relationship2.setProperty("effort", 1d);
+            Relationship relationship3 = mattias.createRelationshipTo(storeRefactoring, RelationshipTypes.working_on);
+            relationship3.setProperty("effort", 0.5d);
+
+            Iterable<Relationship> relationships = storeRefactoring.getRelationships(RelationshipTypes.working_on, Direction.INCOMING);
+            for (Relationship relationship : relationships) {
+                Node developer = relationship.getStartNode();
+                developer.setProperty("has_worked_on_store_refactoring", true);
+            }
+
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    private void makeAssertionsAboutTheData(String playbackStoreDir) {
+        EmbeddedReadOnlyGraphDatabase readDatabase = new EmbeddedReadOnlyGraphDatabase(playbackStoreDir);
+        Iterable<Relationship> relationships = readDatabase.getNodeById(1).getRelationships(RelationshipTypes.working_on, Direction.INCOMING);
+        int relationshipCount = 0;
+        for (Relationship relationship : relationships) {
+            relationshipCount++;
+            Node developer = relationship.getStartNode();
+            String name = (String) developer.getProperty("name");
+            if (name.equals("Alistair") || name.equals("Chris")) {
+                assertEquals(1.0d, (Double) relationship.getProperty("effort"), 0.01d);
+            } else {
+                assertEquals(0.5d, (Double) relationship.getProperty("effort"), 0.01d);
+            }
+            assertTrue((Boolean) developer.getProperty("has_worked_on_store_refactoring"));
+        }
+        assertEquals(3, relationshipCount);
+        readDatabase.shutdown();
+    }
+
+    public enum RelationshipTypes implements RelationshipType {
+        working_on
+    }
+
+}
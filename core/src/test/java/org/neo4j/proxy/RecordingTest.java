@@ -22,6 +22,8 @@ package org.neo4j.proxy;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.EmbeddedGraphDatabase;
 import org.neo4j.proxy.eventmodel.Event;
@@ -32,6 +34,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class RecordingTest {
     @Test
@@ -52,6 +55,9 @@ public class RecordingTest {
         //then
         assertEquals("beginTx", events.get(0).getMethodName());
         assertEquals("shutdown", events.get(3).getMethodName());
+        for (Event event : events) {
+            assertTrue(event.getDuration() >= 0);
+        }
     }
 
     @Test
@@ -80,6 +86,71 @@ public class RecordingTest {
         assertEquals(2L, events.get(2).getResult().getValueForSerialization());
     }
 
+    @Test
+    public void shouldRecordTheSameEventsWithWrappersAsWithDynamicProxies()
+    {
+        ArrayList<Event> proxyEvents = new ArrayList<Event>();
+        String proxyStoreDir = "target/proxyEvents";
+        clean(proxyStoreDir);
+        createAndReadNode(RecordingGraphDatabase.create(new EventListAccumulator(proxyEvents), new EmbeddedGraphDatabase(proxyStoreDir)));
+
+        ArrayList<Event> wrapperEvents = new ArrayList<Event>();
+        String wrapperStoreDir = "target/wrapperEvents";
+        clean(wrapperStoreDir);
+        createAndReadNode(RecordingGraphDatabase.createWithWrappers(new EventListAccumulator(wrapperEvents), new EmbeddedGraphDatabase(wrapperStoreDir)));
+
+        assertEquals(proxyEvents, wrapperEvents);
+    }
+
+    @Test
+    public void shouldTimeCallsWithWrappersAsWithDynamicProxies()
+    {
+        String storeDir = "target/timedWrapperEvents";
+        clean(storeDir);
+        ArrayList<Event> events = new ArrayList<Event>();
+        long before = System.nanoTime();
+        createAndReadNode(RecordingGraphDatabase.createWithWrappers(new EventListAccumulator(events), new EmbeddedGraphDatabase(storeDir)));
+        long after = System.nanoTime();
+
+        long previousEnd = before;
+        for (Event event : events) {
+            assertTrue(event.getDuration() >= 0);
+            assertTrue(event.getTimestamp() >= previousEnd);
+            previousEnd = event.getTimestamp() + event.getDuration();
+        }
+        assertTrue(previousEnd <= after);
+    }
+
+    @Test
+    public void shouldLeaveDurationsOutWhenAskedTo()
+    {
+        String proxyStoreDir = "target/untimedProxyEvents";
+        clean(proxyStoreDir);
+        ArrayList<Event> events = new ArrayList<Event>();
+        createAndReadNode(RecordingGraphDatabase.create(new EventListAccumulator(events), new EmbeddedGraphDatabase(proxyStoreDir), false));
+        String wrapperStoreDir = "target/untimedWrapperEvents";
+        clean(wrapperStoreDir);
+        createAndReadNode(RecordingGraphDatabase.createWithWrappers(new EventListAccumulator(events), new EmbeddedGraphDatabase(wrapperStoreDir), false));
+
+        for (Event event : events) {
+            assertEquals(Event.NO_DURATION, event.getDuration());
+            assertTrue(event.getTimestamp() != Event.NO_TIMESTAMP);
+        }
+    }
+
+    private void createAndReadNode(GraphDatabaseService database) {
+        Transaction transaction = database.beginTx();
+        Node node = database.createNode();
+        node.setProperty("name", "Alistair");
+        node.getProperty("name");
+        for (Relationship relationship : node.getRelationships()) {
+            relationship.getId();
+        }
+        transaction.success();
+        transaction.finish();
+        database.shutdown();
+    }
+
     private void clean(String storeDir) {
         try {
             FileUtils.deleteDirectory(new File(storeDir));
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.serialization.BinaryDeserializer;
+import org.neo4j.proxy.eventmodel.serialization.Compression;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class EventLogTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    File directory = clean("target/eventLog");
+
+    @Test
+    public void shouldReadBackEveryEventAcrossSegments()
+    {
+        List<Event> written = write(new EventLogWriter(directory, 4096, 100), 5000, true);
+
+        EventLog log = new EventLog(directory);
+        assertTrue(log.getSegments().size() > 1);
+        assertEquals(written, read(log));
+        assertSequenceNumbers(0, 4999, read(log));
+    }
+
+    @Test
+    public void shouldReadOnlyTheEventsInAWindow()
+    {
+        write(new EventLogWriter(directory, 4096, 100), 5000, true);
+
+        EventLog log = new EventLog(directory);
+        assertSequenceNumbers(1234, 1300, read(log.sequenceNumbersBetween(1234, 1300)));
+        assertSequenceNumbers(4000, 4009, read(log.timestampsBetween(1000L * 4000, 1000L * 4009)));
+    }
+
+    @Test
+    public void shouldSeekByWallClockTime() throws InterruptedException
+    {
+        EventLogWriter writer = new EventLogWriter(directory, 1024, 10);
+        writeNow(writer, 0, 100);
+        Thread.sleep(100);
+        Date from = new Date();
+        writeNow(writer, 100, 200);
+        Date to = new Date();
+        Thread.sleep(100);
+        writeNow(writer, 200, 300);
+        writer.close();
+
+        EventLog log = new EventLog(directory);
+        assertTrue(log.getSegments().size() > 1);
+        List<Event> window = read(log.timestampsBetween(new Date(from.getTime() - 40), new Date(to.getTime() + 40)));
+        assertEquals(100, window.size());
+        assertEquals(100, window.get(0).getSequenceNumber());
+        assertEquals(199, window.get(99).getSequenceNumber());
+
+        Segment last = log.getSegments().get(log.getSegments().size() - 1);
+        long recorded = last.currentTimeMillis(read(last).get(0));
+        assertTrue(Math.abs(recorded - to.getTime()) < 100 + 40);
+    }
+
+    @Test
+    public void shouldReadTheUnindexedTailOfASegmentStillBeingWritten()
+    {
+        EventLogWriter writer = new EventLogWriter(directory, EventLogWriter.DEFAULT_SEGMENT_SIZE, 100);
+        write(writer, 250, false);
+        writer.flush();
+
+        assertSequenceNumbers(0, 249, read(new EventLog(directory)));
+        assertSequenceNumbers(220, 230, read(new EventLog(directory).sequenceNumbersBetween(220, 230)));
+    }
+
+    @Test
+    public void shouldWriteSegmentsThatArePlainBinaryLogs() throws IOException
+    {
+        write(new EventLogWriter(directory, EventLogWriter.DEFAULT_SEGMENT_SIZE, 10), 95, true);
+
+        FileInputStream input = new FileInputStream(EventLog.dataFile(directory, 1));
+        try {
+            assertSequenceNumbers(0, 94, read(new BinaryDeserializer(input)));
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void shouldReadCompressedBlocksAndWindowsOfThem()
+    {
+        EventLogWriter writer = new EventLogWriter(directory, 4096, 100);
+        writer.setCompression(Compression.LZ4);
+        List<Event> written = write(writer, 5000, true);
+
+        EventLog log = new EventLog(directory);
+        assertEquals(written, read(log));
+        assertSequenceNumbers(1234, 1300, read(log.sequenceNumbersBetween(1234, 1300)));
+        File uncompressed = clean("target/eventLog-uncompressed");
+        write(new EventLogWriter(uncompressed, 4096, 100), 5000, true);
+        assertTrue(dataLength(directory) < dataLength(uncompressed));
+    }
+
+    @Test
+    public void shouldReadFlushedEventsOfACompressedBlockStillBeingWritten()
+    {
+        EventLogWriter writer = new EventLogWriter(directory, EventLogWriter.DEFAULT_SEGMENT_SIZE, 100);
+        writer.setCompression(Compression.DEFLATE);
+        write(writer, 250, false);
+        writer.flush();
+
+        assertSequenceNumbers(0, 249, read(new EventLog(directory)));
+        writer.close();
+    }
+
+    @Test
+    public void shouldContinueNumberingAfterExistingSegments()
+    {
+        write(new EventLogWriter(directory, 4096, 100), 10, true);
+        write(new EventLogWriter(directory, 4096, 100), 10, true);
+
+        List<Segment> segments = new EventLog(directory).getSegments();
+        assertEquals(2, segments.size());
+        assertEquals(2, segments.get(1).getNumber());
+    }
+
+    private static File clean(String directory)
+    {
+        try {
+            FileUtils.deleteDirectory(new File(directory));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new File(directory);
+    }
+
+    private static long dataLength(File directory)
+    {
+        long length = 0;
+        for (long number : EventLog.segmentNumbers(directory)) {
+            length += EventLog.dataFile(directory, number).length();
+        }
+        return length;
+    }
+
+    private List<Event> write(EventLogWriter writer, int count, boolean close)
+    {
+        List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < count; i++) {
+            Event event = new Event(factory.fromObject(node(i)), i % 2 == 0 ? "getId" : "hasRelationship", new Parameter[0],
+                    factory.fromObject(i % 2 == 0 ? (Object) (long) i : (Object) true), 1, i, 1000L * i, 10);
+            writer.onEvent(event);
+            events.add(event);
+        }
+        if (close) {
+            writer.close();
+        }
+        return events;
+    }
+
+    private void writeNow(EventLogWriter writer, int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            writer.onEvent(new Event(factory.fromObject(node(i)), "getId", new Parameter[0], factory.fromObject((long) i), 1, i, System.nanoTime(), 10));
+        }
+    }
+
+    private List<Event> read(Iterable<Event> events)
+    {
+        List<Event> read = new ArrayList<Event>();
+        for (Event event : events) {
+            read.add(event);
+        }
+        return read;
+    }
+
+    private void assertSequenceNumbers(long from, long to, List<Event> events)
+    {
+        assertEquals(to - from + 1, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(from + i, events.get(i).getSequenceNumber());
+            assertEquals(1000L * (from + i), events.get(i).getTimestamp());
+        }
+    }
+}
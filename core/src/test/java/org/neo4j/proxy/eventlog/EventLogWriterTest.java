@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventlog;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.serialization.Compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class EventLogWriterTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    File directory = clean("target/eventLogWriter");
+    long sequenceNumber = 0;
+
+    @Test
+    public void shouldStartNewSegmentsOnlyBetweenTransactions()
+    {
+        EventLogWriter writer = new EventLogWriter(directory, 512, 1);
+        for (int i = 0; i < 50; i++) {
+            writeTransaction(writer, 1, 10);
+        }
+        writer.close();
+
+        List<Segment> segments = new EventLog(directory).getSegments();
+        assertTrue(segments.size() > 1);
+        for (Segment segment : segments) {
+            List<Event> events = read(segment);
+            assertEquals(0, events.size() % 12);
+            assertEquals("beginTx", events.get(0).getMethodName());
+            assertEquals("finish", events.get(events.size() - 1).getMethodName());
+        }
+    }
+
+    @Test
+    public void shouldStartANewSegmentOnceTheCurrentOneIsTooOld()
+    {
+        EventLogWriter writer = new EventLogWriter(directory);
+        writer.setMaxSegmentAge(0, TimeUnit.MILLISECONDS);
+        writeTransaction(writer, 1, 2);
+        writeTransaction(writer, 1, 2);
+        writeTransaction(writer, 1, 2);
+        writer.close();
+
+        assertEquals(3, new EventLog(directory).getSegments().size());
+    }
+
+    @Test
+    public void shouldPruneTheOldestSegmentsBeyondTheRetention()
+    {
+        EventLogWriter writer = new EventLogWriter(directory, 512, 1);
+        writer.setRetention(Retention.keepSegments(2));
+        writer.setSyncPolicy(SyncPolicy.TRANSACTION);
+        for (int i = 0; i < 50; i++) {
+            writeTransaction(writer, 1, 10);
+        }
+
+        List<Long> numbers = EventLog.segmentNumbers(directory);
+        assertEquals(2, numbers.size());
+        assertTrue(numbers.get(0) > 1);
+        assertTrue(!EventLog.indexFile(directory, 1).exists());
+        assertTrue(!EventLog.referencesFile(directory, 1).exists());
+        writer.close();
+    }
+
+    @Test
+    public void shouldSyncTransactionsOfACompressedBlockThroughTheJournalWithoutEndingTheBlock()
+    {
+        EventLogWriter writer = new EventLogWriter(directory, EventLogWriter.DEFAULT_SEGMENT_SIZE, 100);
+        writer.setCompression(Compression.LZ4);
+        writer.setSyncPolicy(SyncPolicy.TRANSACTION);
+        for (int i = 0; i < 20; i++) {
+            writeTransaction(writer, 1, 10);
+        }
+
+        assertEquals(2, (EventLog.indexFile(directory, 1).length() - ClockAnchor.LENGTH) / Block.INDEX_ENTRY_LENGTH);
+        List<Event> events = read(new EventLog(directory));
+        assertEquals(240, events.size());
+        assertEquals("finish", events.get(events.size() - 1).getMethodName());
+
+        writer.close();
+        assertFalse(EventLog.journalFile(directory, 1).exists());
+        assertEquals(240, read(new EventLog(directory)).size());
+    }
+
+    @Test
+    public void shouldRecordTheEntitiesASegmentUsesWithoutCreatingThem()
+    {
+        EventLogWriter writer = new EventLogWriter(directory);
+        add(writer, factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "createNode", factory.fromObject(node(5)), 1);
+        add(writer, factory.fromObject(node(5)), "hasRelationship", factory.fromObject(true), 1);
+        add(writer, factory.fromObject(node(7)), "hasRelationship", factory.fromObject(true), 1);
+        add(writer, factory.fromObject(node(3)), "hasRelationship", factory.fromObject(true), 1);
+        writer.close();
+
+        Segment segment = new EventLog(directory).getSegments().get(0);
+        assertArrayEquals(new long[]{3, 7}, segment.getReferencedNodeIds());
+        assertArrayEquals(new long[0], segment.getReferencedRelationshipIds());
+    }
+
+    private static File clean(String directory)
+    {
+        try {
+            FileUtils.deleteDirectory(new File(directory));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new File(directory);
+    }
+
+    private void writeTransaction(EventLogWriter writer, long threadId, int operations)
+    {
+        add(writer, factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", factory.fromObjectWithSpecificType(null, Transaction.class), threadId);
+        for (int i = 0; i < operations; i++) {
+            add(writer, factory.fromObject(node(i)), "hasRelationship", factory.fromObject(true), threadId);
+        }
+        add(writer, factory.fromObjectWithSpecificType(null, Transaction.class), "finish", factory.fromObject(null), threadId);
+    }
+
+    private void add(EventLogWriter writer, Parameter target, String methodName, Parameter result, long threadId)
+    {
+        writer.onEvent(new Event(target, methodName, new Parameter[0], result, threadId, sequenceNumber, sequenceNumber * 1000, 10));
+        sequenceNumber++;
+    }
+
+    private List<Event> read(Iterable<Event> events)
+    {
+        List<Event> read = new ArrayList<Event>();
+        for (Event event : events) {
+            read.add(event);
+        }
+        return read;
+    }
+}
@@ -19,15 +19,28 @@
  */
 package org.neo4j.proxy.eventmodel;
 
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
 import org.junit.Test;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Traverser;
 import org.neo4j.proxy.eventmodel.parameter.Parameter;
 import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.parameter.types.ParameterType;
+import org.neo4j.proxy.eventmodel.parameter.types.PrimitiveParameterType;
+import org.neo4j.proxy.eventmodel.serialization.BinaryDecoder;
+import org.neo4j.proxy.eventmodel.serialization.BinaryEncoder;
+import org.neo4j.proxy.eventmodel.serialization.BinaryFormat;
+import org.neo4j.proxy.eventmodel.serialization.JacksonAdaptor;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertEquals;
@@ -67,7 +80,7 @@ public class ParameterFactoryTest {
     public void shouldAcceptArrays()
     {
         assertCanRoundTripArray(new boolean[]{true, false, true});
-        assertCanRoundTripArray(new Boolean[]{true, false, true});
+        assertCanRoundTripArray(new Boolean[]{true, false, null, true});
         assertCanRoundTripArray(new byte[]{Byte.MAX_VALUE, Byte.MIN_VALUE, Byte.MAX_VALUE});
         assertCanRoundTripArray(new Byte[]{Byte.MAX_VALUE, Byte.MIN_VALUE, Byte.MAX_VALUE});
         assertCanRoundTripArray(new int[]{1, 2, 3});
@@ -76,7 +89,54 @@ public class ParameterFactoryTest {
         assertCanRoundTripArray(new Float[]{1.0f, 2.0f, 3.0f});
         assertCanRoundTripArray(new Double[]{1.0d, 2.0d, 3.0d});
         assertCanRoundTripArray(new Double[]{1.0d, 2.0d, 3.0d});
-        assertCanRoundTripArray(new String[]{"These", "are", "strings"});
+        assertCanRoundTripArray(new String[]{"These", "are", null, "strings"});
+    }
+
+    @Test
+    public void shouldRoundTripEveryRegisteredArrayTypeThroughEverySerialization() throws Exception
+    {
+        Map<Class, Object> samples = new HashMap<Class, Object>();
+        samples.put(boolean[].class, new boolean[]{true, false, true});
+        samples.put(Boolean[].class, new Boolean[]{true, false, null, true});
+        samples.put(byte[].class, new byte[]{Byte.MAX_VALUE, 0, Byte.MIN_VALUE});
+        samples.put(Byte[].class, new Byte[]{Byte.MAX_VALUE, 0, null, Byte.MIN_VALUE});
+        samples.put(int[].class, new int[]{Integer.MAX_VALUE, 0, Integer.MIN_VALUE});
+        samples.put(Integer[].class, new Integer[]{Integer.MAX_VALUE, 0, null, Integer.MIN_VALUE});
+        samples.put(long[].class, new long[]{Long.MAX_VALUE, 0, Long.MIN_VALUE});
+        samples.put(Long[].class, new Long[]{Long.MAX_VALUE, 0l, null, Long.MIN_VALUE});
+        samples.put(float[].class, new float[]{1.5f, 2.3f, -0.1f});
+        samples.put(Float[].class, new Float[]{1.5f, 2.3f, null, -0.1f});
+        samples.put(double[].class, new double[]{1.5d, 2.3d, Double.MAX_VALUE});
+        samples.put(Double[].class, new Double[]{1.5d, 2.3d, null, Double.MAX_VALUE});
+        samples.put(String[].class, new String[]{"These", "are", null, "strings"});
+
+        for (ParameterType type : factory.types) {
+            Class wrappedType = type.getWrappedType();
+            if (!(type instanceof PrimitiveParameterType) || !wrappedType.isArray()) {
+                continue;
+            }
+            Object sample = samples.get(wrappedType);
+            assertNotNull("no sample for " + wrappedType.getSimpleName(), sample);
+            Parameter parameter = factory.fromObject(sample);
+            assertArrayValuesEqual(sample, parameter.getValueForPlayback(null));
+            assertArrayValuesEqual(sample, parseParameter(serializeParameter(parameter)).getValueForPlayback(null));
+            assertArrayValuesEqual(sample, viaStreamingJson(parameter).getValueForPlayback(null));
+            assertArrayValuesEqual(sample, viaBinary(parameter).getValueForPlayback(null));
+        }
+    }
+
+    @Test
+    public void shouldWriteByteArraysAsBase64() throws Exception
+    {
+        assertEquals("{\"byte[]\":\"AQID\"}", serializeParameter(factory.fromObject(new byte[]{1, 2, 3})).toString());
+    }
+
+    @Test
+    public void shouldReadByteArraysWrittenAsArraysOfNumbers() throws Exception
+    {
+        JsonParser parser = JacksonAdaptor.jsonFactory().createJsonParser("{\"byte[]\":[1,2,-3]}");
+        parser.nextToken();
+        assertArrayEquals(new byte[]{1, 2, -3}, (byte[]) JacksonAdaptor.readParameter(parser).getValueForPlayback(null));
     }
 
     @Test
@@ -90,6 +150,34 @@ public class ParameterFactoryTest {
         assertEquals(0, iteratorParameter.getValueForSerialization());
     }
 
+    @Test
+    public void shouldPreferIteratorTypeOnEveryLookupOfTheSameClass()
+    {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Iterator.class, factory.fromObject(new BothIterableAndIterator()).getType().getWrappedType());
+        }
+    }
+
+    @Test
+    public void shouldFindEveryRegisteredTypeByName()
+    {
+        for (ParameterType type : factory.types) {
+            assertSame(type, factory.forTypeName(type.getTypeName()));
+        }
+        assertNull(factory.forTypeName("NoSuchType"));
+    }
+
+    @Test
+    public void shouldNotLetTheRegisteredTypesChange()
+    {
+        try {
+            factory.types.add(new PrimitiveParameterType(Short.class));
+            fail("should not have been able to register a type");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
     @Test
     public void shouldAcceptRelationshipType()
     {
@@ -131,6 +219,38 @@ public class ParameterFactoryTest {
         }
     }
 
+    private void assertArrayValuesEqual(Object expected, Object actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertTrue(Arrays.deepEquals(new Object[]{expected}, new Object[]{actual}));
+    }
+
+    private Parameter viaStreamingJson(Parameter parameter) throws IOException {
+        StringWriter json = new StringWriter();
+        JsonGenerator generator = JacksonAdaptor.jsonFactory().createJsonGenerator(json);
+        JacksonAdaptor.writeParameter(parameter, generator);
+        generator.flush();
+
+        JsonParser parser = JacksonAdaptor.jsonFactory().createJsonParser(json.toString());
+        parser.nextToken();
+        return JacksonAdaptor.readParameter(parser);
+    }
+
+    private Parameter viaBinary(Parameter parameter) {
+        Event event = new Event(factory.fromObject(FakeNode.node(1)), "setProperty", new Parameter[]{parameter}, factory.fromObject(null));
+        ByteBuffer records = new BinaryEncoder().encode(event);
+        BinaryDecoder decoder = new BinaryDecoder();
+        while (true) {
+            int length = (int) BinaryFormat.readVarLong(records);
+            ByteBuffer record = records.slice();
+            record.limit(length);
+            records.position(records.position() + length);
+            Event decoded = decoder.decode(record);
+            if (decoded != null) {
+                return decoded.getParameters()[0];
+            }
+        }
+    }
+
     private void assertCanRoundTrip(Object object) {
         assertEquals(object, factory.fromObject(object).getValueForPlayback(null));
         assertEquals(object, parseParameter(serializeParameter(factory.fromObject(object))).getValueForPlayback(null));
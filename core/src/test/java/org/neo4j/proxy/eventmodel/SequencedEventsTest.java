@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class SequencedEventsTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void shouldRestoreSequenceOrder()
+    {
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), sequenceNumbers(new SequencedEvents(events(2, 0, 3, 1, 4))));
+    }
+
+    @Test
+    public void shouldSkipMissingSequenceNumbersOnceReorderLimitIsReached()
+    {
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L), sequenceNumbers(new SequencedEvents(events(3, 2, 4, 5), 2)));
+    }
+
+    @Test
+    public void shouldPassEventsWithoutSequenceNumbersThrough()
+    {
+        assertEquals(Arrays.asList(-1L, -1L), sequenceNumbers(new SequencedEvents(events(-1, -1))));
+    }
+
+    @Test
+    public void shouldStartReleasingEventsOfAStreamThatStartsPartWayThroughTheRecording()
+    {
+        final List<Event> events = new ArrayList<Event>();
+        for (long i = 0; i < 5000; i += 2) {
+            events.addAll(events(500001 + i, 500000 + i));
+        }
+        final int[] read = new int[1];
+        Iterable<Event> counted = new Iterable<Event>() {
+            public Iterator<Event> iterator() {
+                final Iterator<Event> source = events.iterator();
+                return new Iterator<Event>() {
+                    public boolean hasNext() {
+                        return source.hasNext();
+                    }
+
+                    public Event next() {
+                        read[0]++;
+                        return source.next();
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        Iterator<Event> sequenced = new SequencedEvents(counted).iterator();
+
+        assertEquals(500000, sequenced.next().getSequenceNumber());
+        assertEquals(500001, sequenced.next().getSequenceNumber());
+        assertTrue(read[0] < events.size());
+    }
+
+    private List<Event> events(long... sequenceNumbers) {
+        List<Event> events = new ArrayList<Event>();
+        for (long sequenceNumber : sequenceNumbers) {
+            events.add(new Event(factory.fromObject(node(1)), "getId", new Parameter[0], factory.fromObject(1L), 1, sequenceNumber));
+        }
+        return events;
+    }
+
+    private List<Long> sequenceNumbers(Iterable<Event> events) {
+        List<Long> sequenceNumbers = new ArrayList<Long>();
+        for (Event event : events) {
+            sequenceNumbers.add(event.getSequenceNumber());
+        }
+        return sequenceNumbers;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel;
+
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class UnitsOfWorkTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    List<Event> events = new ArrayList<Event>();
+
+    @Test
+    public void shouldGroupEventsOfEachThreadByTopLevelTransaction()
+    {
+        beginTx(1);
+        beginTx(2);
+        setProperty(1);
+        beginTx(1);
+        transaction(1, "success");
+        transaction(1, "finish");
+        transaction(2, "failure");
+        transaction(2, "finish");
+        transaction(1, "success");
+        transaction(1, "finish");
+
+        List<UnitOfWork> units = units();
+
+        assertEquals(2, units.size());
+        assertEquals(2, units.get(0).getThreadId());
+        assertEquals(3, units.get(0).getEvents().size());
+        assertFalse(units.get(0).isCommitted());
+        assertEquals(1, units.get(1).getThreadId());
+        assertEquals(7, units.get(1).getEvents().size());
+        assertTrue(units.get(1).isCommitted());
+    }
+
+    @Test
+    public void shouldNotCommitWhenOnlyNestedTransactionSucceeded()
+    {
+        beginTx(1);
+        beginTx(1);
+        transaction(1, "success");
+        transaction(1, "finish");
+        transaction(1, "finish");
+
+        UnitOfWork unit = units().get(0);
+        assertTrue(unit.isFinished());
+        assertFalse(unit.isCommitted());
+    }
+
+    @Test
+    public void shouldSeparateEventsOutsideTransactionsFromTransactions()
+    {
+        setProperty(1);
+        setProperty(1);
+        beginTx(1);
+        transaction(1, "success");
+        transaction(1, "finish");
+        setProperty(1);
+
+        List<UnitOfWork> units = units();
+
+        assertEquals(3, units.size());
+        assertFalse(units.get(0).isTransaction());
+        assertEquals(2, units.get(0).getEvents().size());
+        assertTrue(units.get(1).isCommitted());
+        assertFalse(units.get(2).isTransaction());
+    }
+
+    @Test
+    public void shouldYieldUnfinishedTransactionsAtTheEnd()
+    {
+        beginTx(1);
+        setProperty(1);
+
+        UnitOfWork unit = units().get(0);
+        assertTrue(unit.isTransaction());
+        assertFalse(unit.isFinished());
+    }
+
+    private List<UnitOfWork> units() {
+        List<UnitOfWork> units = new ArrayList<UnitOfWork>();
+        for (UnitOfWork unit : new UnitsOfWork(events)) {
+            units.add(unit);
+        }
+        return units;
+    }
+
+    private void beginTx(long threadId) {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", new Parameter[0], factory.fromObjectWithSpecificType(null, Transaction.class), threadId);
+    }
+
+    private void transaction(long threadId, String methodName) {
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), methodName, new Parameter[0], factory.fromObject(null), threadId);
+    }
+
+    private void setProperty(long threadId) {
+        add(factory.fromObject(node(1)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null), threadId);
+    }
+
+    private void add(Parameter target, String methodName, Parameter[] parameters, Parameter result, long threadId) {
+        events.add(new Event(target, methodName, parameters, result, threadId, events.size()));
+    }
+}
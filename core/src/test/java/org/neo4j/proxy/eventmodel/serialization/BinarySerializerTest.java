@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class BinarySerializerTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void canRoundTripViaBinary()
+    {
+        List<Event> events = new ArrayList<Event>();
+        events.add(new Event(factory.fromObject(node(20)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null)));
+        events.add(new Event(factory.fromObject(node(20)), "setProperty", new Parameter[]{factory.fromObject("age"), factory.fromObject(-42)}, factory.fromObject(null)));
+        events.add(new Event(factory.fromObject(node(Long.MAX_VALUE)), "getRelationships", new Parameter[]{factory.fromObject(Direction.INCOMING)}, factory.fromObjectWithSpecificType(new ArrayList(), Iterable.class)));
+        events.add(new Event(factory.fromObject(node(21)), "getProperty", new Parameter[]{factory.fromObject("height")}, factory.fromObject(1.85d)));
+
+        assertEquals(events, roundTrip(events));
+    }
+
+    @Test
+    public void shouldRoundTripPrimitiveArraysWithoutLoss()
+    {
+        Object[] values = {
+                new boolean[]{true, false}, new byte[]{Byte.MIN_VALUE, 0, Byte.MAX_VALUE},
+                new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE}, new long[]{Long.MIN_VALUE, Long.MAX_VALUE},
+                new float[]{1.5f, Float.NaN}, new double[]{2.5d, Double.NEGATIVE_INFINITY},
+                new Integer[]{1, -2}, new String[]{"a", "\u00e9t\u00e9"}};
+        List<Event> events = new ArrayList<Event>();
+        for (Object value : values) {
+            events.add(new Event(factory.fromObject(node(1)), "setProperty", new Parameter[]{factory.fromObject("key"), factory.fromObject(value)}, factory.fromObject(null)));
+        }
+
+        List<Event> parsed = roundTrip(events);
+
+        for (int i = 0; i < values.length; i++) {
+            Object parsedValue = parsed.get(i).getParameters()[1].getValueForPlayback(null);
+            assertTrue(Arrays.deepEquals(new Object[]{values[i]}, new Object[]{parsedValue}));
+        }
+    }
+
+    @Test
+    public void shouldDefineMethodNamesAndTypesOnlyOnce()
+    {
+        Event event = new Event(factory.fromObject(node(1)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null));
+        BinaryEncoder encoder = new BinaryEncoder();
+
+        int first = encoder.encode(event).remaining();
+        int second = encoder.encode(event).remaining();
+
+        assertTrue(second < first);
+        assertEquals(second, encoder.encode(event).remaining());
+    }
+
+    @Test
+    public void shouldRoundTripThreadAndSequenceNumber()
+    {
+        List<Event> events = new ArrayList<Event>();
+        events.add(new Event(factory.fromObject(node(1)), "getId", new Parameter[0], factory.fromObject(1L), 17, 0));
+        events.add(new Event(factory.fromObject(node(1)), "getId", new Parameter[0], factory.fromObject(1L), 3, Event.NO_SEQUENCE_NUMBER));
+
+        List<Event> parsed = roundTrip(events);
+
+        assertEquals(17, parsed.get(0).getThreadId());
+        assertEquals(0, parsed.get(0).getSequenceNumber());
+        assertEquals(3, parsed.get(1).getThreadId());
+        assertEquals(Event.NO_SEQUENCE_NUMBER, parsed.get(1).getSequenceNumber());
+    }
+
+    @Test
+    public void shouldRoundTripTimestampsAndDurations()
+    {
+        List<Event> events = new ArrayList<Event>();
+        events.add(new Event(factory.fromObject(node(1)), "getId", new Parameter[0], factory.fromObject(1L), 1, 0, 81234567890L, 2500));
+        events.add(new Event(factory.fromObject(node(1)), "getId", new Parameter[0], factory.fromObject(1L), 1, 1, 81234567000L));
+        events.add(new Event(factory.fromObject(node(1)), "getId", new Parameter[0], factory.fromObject(1L), 1, 2, Event.NO_TIMESTAMP));
+
+        List<Event> parsed = roundTrip(events);
+
+        assertEquals(81234567890L, parsed.get(0).getTimestamp());
+        assertEquals(2500, parsed.get(0).getDuration());
+        assertEquals(Event.NO_DURATION, parsed.get(1).getDuration());
+        assertEquals(81234567000L, parsed.get(1).getTimestamp());
+        assertEquals(Event.NO_TIMESTAMP, parsed.get(2).getTimestamp());
+    }
+
+    @Test
+    public void shouldRoundTripNullElementsOfObjectArrays()
+    {
+        Object[] values = {
+                new Boolean[]{true, null}, new Byte[]{null, 1}, new Integer[]{null, null, 3},
+                new Long[]{1L, null, 3L, null, 5L, null, 7L, null, 9L}, new Float[]{null}, new Double[]{2.5d, null},
+                new String[]{null, "a", null}, new String[0]};
+        List<Event> events = new ArrayList<Event>();
+        for (Object value : values) {
+            events.add(new Event(factory.fromObject(node(1)), "setProperty", new Parameter[]{factory.fromObject("key"), factory.fromObject(value)}, factory.fromObject(null)));
+        }
+
+        List<Event> parsed = roundTrip(events);
+
+        for (int i = 0; i < values.length; i++) {
+            Object parsedValue = parsed.get(i).getParameters()[1].getValueForPlayback(null);
+            assertTrue(Arrays.deepEquals(new Object[]{values[i]}, new Object[]{parsedValue}));
+        }
+    }
+
+    @Test
+    public void shouldRefuseLogsOfAnotherVersion()
+    {
+        byte[] log = new byte[BinaryFormat.HEADER_LENGTH];
+        System.arraycopy(BinaryFormat.MAGIC, 0, log, 0, BinaryFormat.MAGIC.length);
+        log[BinaryFormat.MAGIC.length] = BinaryFormat.VERSION + 1;
+
+        try {
+            new BinaryDeserializer(new ByteArrayInputStream(log)).iterator();
+            fail("should not have read a log of another version");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldRoundTripCompressedBlocks()
+    {
+        List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < 250; i++) {
+            events.add(new Event(factory.fromObject(node(i)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("node " + i)}, factory.fromObject(null), 1, i, 1000L * i, 10));
+        }
+
+        for (Compression compression : Compression.values()) {
+            byte[] compressed = serialize(events, compression);
+            List<Event> parsed = new ArrayList<Event>();
+            for (Event event : new BinaryDeserializer(new ByteArrayInputStream(compressed))) {
+                parsed.add(event);
+            }
+            assertEquals(events, parsed);
+            assertEquals(249, parsed.get(249).getSequenceNumber());
+            assertEquals(249000L, parsed.get(249).getTimestamp());
+            if (compression != Compression.NONE) {
+                assertTrue(compressed.length * 2 < serialize(events).length);
+            }
+        }
+    }
+
+    @Test
+    public void shouldStopAtEndOfInput()
+    {
+        Iterator<Event> events = new BinaryDeserializer(new ByteArrayInputStream(serialize(new ArrayList<Event>()))).iterator();
+        assertFalse(events.hasNext());
+    }
+
+    private List<Event> roundTrip(List<Event> events) {
+        List<Event> parsed = new ArrayList<Event>();
+        for (Event event : new BinaryDeserializer(new ByteArrayInputStream(serialize(events)))) {
+            parsed.add(event);
+        }
+        return parsed;
+    }
+
+    private byte[] serialize(List<Event> events) {
+        return serialize(events, Compression.NONE);
+    }
+
+    private byte[] serialize(List<Event> events, Compression compression) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySerializer serializer = new BinarySerializer(output, compression, 100);
+        for (Event event : events) {
+            serializer.onEvent(event);
+        }
+        serializer.flush();
+        return output.toByteArray();
+    }
+}
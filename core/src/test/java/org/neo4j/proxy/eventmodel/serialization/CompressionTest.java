@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionTest {
+
+    Random random = new Random(42);
+
+    @Test
+    public void lz4ShouldRoundTripRepetitiveRandomAndTinyInput()
+    {
+        assertRoundTrips(Compression.LZ4, repetitive(100000));
+        assertRoundTrips(Compression.LZ4, randomBytes(100000));
+        assertRoundTrips(Compression.LZ4, repeated((byte) 7, 70000));
+        for (int length = 0; length < 20; length++) {
+            assertRoundTrips(Compression.LZ4, repetitive(length));
+        }
+    }
+
+    @Test
+    public void deflateShouldRoundTripRepetitiveAndRandomInput()
+    {
+        assertRoundTrips(Compression.DEFLATE, repetitive(100000));
+        assertRoundTrips(Compression.DEFLATE, randomBytes(100000));
+        assertRoundTrips(Compression.DEFLATE, new byte[0]);
+    }
+
+    @Test
+    public void shouldShrinkRepetitiveInput()
+    {
+        byte[] input = repetitive(100000);
+        assertTrue(Compression.LZ4.compressBlock(input, input.length).remaining() < input.length / 3);
+        assertTrue(Compression.DEFLATE.compressBlock(input, input.length).remaining() < input.length / 3);
+    }
+
+    @Test
+    public void lz4ShouldMatchDecompressedLengthsOfTheBlockFormat()
+    {
+        byte[] compressed = new byte[]{(byte) 0x1F, 'a', 1, 0, 0, 0x10, 'b'};
+        byte[] output = new byte[21];
+        Lz4.decompress(compressed, 0, compressed.length, output);
+
+        byte[] expected = repeated((byte) 'a', 21);
+        expected[20] = 'b';
+        assertArrayEquals(expected, output);
+    }
+
+    private void assertRoundTrips(Compression compression, byte[] input)
+    {
+        ByteBuffer block = compression.compressBlock(input, input.length);
+        BinaryFormat.readVarLong(block);
+        ByteBuffer expanded = Compression.expandBlock(block);
+        assertArrayEquals(input, Arrays.copyOf(expanded.array(), expanded.limit()));
+    }
+
+    private byte[] repetitive(int length)
+    {
+        byte[] bytes = new byte[length];
+        String[] words = {"setProperty", "getNodeById", "Node", "Relationship", "createRelationshipTo", "hasNext"};
+        int i = 0;
+        while (i < length) {
+            byte[] word = (words[random.nextInt(words.length)] + random.nextInt(100)).getBytes();
+            for (int j = 0; j < word.length && i < length; j++) {
+                bytes[i++] = word[j];
+            }
+        }
+        return bytes;
+    }
+
+    private byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] repeated(byte value, int length)
+    {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+import static org.neo4j.proxy.eventmodel.serialization.JacksonAdaptor.parseEvent;
+import static org.neo4j.proxy.eventmodel.serialization.JacksonAdaptor.serializeEvent;
+
+public class JacksonSerializerTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void canRoundTripViaJson()
+    {
+        Event event = new Event(factory.fromObject(node(20)), "method", new Parameter[] {factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null));
+
+        assertEquals(event, parseEvent(serializeEvent(event)));
+
+        System.out.println("serializeEvent(event) = " + serializeEvent(event));
+    }
+
+    @Test
+    public void shouldRoundTripThreadAndSequenceNumber() throws Exception
+    {
+        Event event = new Event(factory.fromObject(node(20)), "getId", new Parameter[0], factory.fromObject(20L), 9, 1234);
+
+        Event parsedTree = parseEvent(serializeEvent(event));
+        Event parsedStream = new JacksonDeserializer(new BufferedReader(new StringReader(serializeEvent(event).toString()))).iterator().next();
+
+        for (Event parsed : new Event[]{parsedTree, parsedStream}) {
+            assertEquals(9, parsed.getThreadId());
+            assertEquals(1234, parsed.getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void shouldRoundTripTimestampAndDuration() throws Exception
+    {
+        Event event = new Event(factory.fromObject(node(20)), "getId", new Parameter[0], factory.fromObject(20L), 9, 1234, 5678901234L, 4321);
+
+        Event parsedTree = parseEvent(serializeEvent(event));
+        Event parsedStream = new JacksonDeserializer(new BufferedReader(new StringReader(serializeEvent(event).toString()))).iterator().next();
+
+        assertEquals(5678901234L, parsedTree.getTimestamp());
+        assertEquals(5678901234L, parsedStream.getTimestamp());
+        assertEquals(4321, parsedTree.getDuration());
+        assertEquals(4321, parsedStream.getDuration());
+    }
+
+    @Test
+    public void shouldReadEventsWrittenWithoutThreadOrSequenceNumber() throws Exception
+    {
+        String json = "{\"target\":{\"Node\":20},\"method\":\"getId\",\"args\":[],\"result\":{\"Long\":20}}";
+
+        Event parsed = new JacksonDeserializer(new BufferedReader(new StringReader(json))).iterator().next();
+
+        assertEquals(0, parsed.getThreadId());
+        assertEquals(Event.NO_SEQUENCE_NUMBER, parsed.getSequenceNumber());
+        assertEquals(Event.NO_TIMESTAMP, parsed.getTimestamp());
+    }
+
+    @Test
+    public void streamingOutputShouldMatchTreeOutput() throws Exception
+    {
+        List<Event> events = variedEvents();
+        events.add(new Event(factory.fromObject(node(20)), "setProperty", new Parameter[]{factory.fromObject("tags"), factory.fromObject(new String[]{"a", "b"})}, factory.fromObject(null)));
+        StringBuilder expected = new StringBuilder();
+        for (Event event : events) {
+            expected.append(serializeEvent(event).toString()).append(System.getProperty("line.separator"));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JacksonSerializer streamSerializer = new JacksonSerializer(bytes);
+        StringWriter string = new StringWriter();
+        JacksonSerializer writerSerializer = new JacksonSerializer(new PrintWriter(string));
+        for (Event event : events) {
+            streamSerializer.onEvent(event);
+            writerSerializer.onEvent(event);
+        }
+        streamSerializer.flush();
+        writerSerializer.flush();
+
+        assertEquals(expected.toString(), new String(bytes.toByteArray(), "UTF-8"));
+        assertEquals(expected.toString(), string.toString());
+    }
+
+    @Test
+    public void canRoundTripViaStreamingJson() throws Exception
+    {
+        List<Event> events = variedEvents();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JacksonSerializer serializer = new JacksonSerializer(bytes);
+        for (Event event : events) {
+            serializer.onEvent(event);
+        }
+        serializer.flush();
+
+        List<Event> parsed = new ArrayList<Event>();
+        for (Event event : new JacksonDeserializer(new BufferedReader(new StringReader(new String(bytes.toByteArray(), "UTF-8"))))) {
+            parsed.add(event);
+        }
+
+        assertEquals(events, parsed);
+    }
+
+    private List<Event> variedEvents() {
+        List<Event> events = new ArrayList<Event>();
+        events.add(new Event(factory.fromObject(node(20)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair \"apcj\" Jones\n")}, factory.fromObject(null)));
+        events.add(new Event(factory.fromObject(node(20)), "setProperty", new Parameter[]{factory.fromObject("height"), factory.fromObject(2.3f)}, factory.fromObject(null)));
+        events.add(new Event(factory.fromObject(node(20)), "getProperty", new Parameter[]{factory.fromObject("count")}, factory.fromObject(Long.MAX_VALUE)));
+        events.add(new Event(factory.fromObject(node(20)), "hasProperty", new Parameter[]{factory.fromObject("count")}, factory.fromObject(true)));
+        return events;
+    }
+
+    @Test
+    public void shouldPrintEachEvent() throws Exception {
+        PrintWriter printWriter = mock(PrintWriter.class);
+
+        Event event = new Event(factory.fromObject(node(20)), "method", new Parameter[] {factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null));
+        new JacksonSerializer(printWriter).onEvent(event);
+
+        verify(printWriter).println(anyString());
+    }
+
+    @Test
+    public void shouldFlushOnClose()
+    {
+        PrintWriter printWriter = mock(PrintWriter.class);
+
+        new JacksonSerializer(printWriter).flush();
+
+        verify(printWriter).flush();
+    }
+
+}
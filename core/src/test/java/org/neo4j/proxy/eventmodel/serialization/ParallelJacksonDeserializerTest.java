@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.eventmodel.serialization;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class ParallelJacksonDeserializerTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void shouldReadEventsInTheOrderTheyWereWritten()
+    {
+        List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < 1000; i++) {
+            events.add(new Event(factory.fromObject(node(i)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("node " + i)}, factory.fromObject(null), 1, i));
+        }
+        String log = serialize(events);
+
+        assertEquals(events, read(new ParallelJacksonDeserializer(new StringReader(log), 3, 1000)));
+        assertEquals(events, read(new ParallelJacksonDeserializer(new StringReader(log), 1, 10)));
+    }
+
+    @Test
+    public void shouldReadNothingFromAnEmptyLog()
+    {
+        assertEquals(0, read(new ParallelJacksonDeserializer(new StringReader(""), 2)).size());
+    }
+
+    @Test
+    public void shouldPassOnFailureToRead()
+    {
+        Reader failing = new Reader() {
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk on fire");
+            }
+
+            public void close() {
+            }
+        };
+        try {
+            read(new ParallelJacksonDeserializer(failing, 2));
+            fail("should have failed");
+        } catch (RuntimeException e) {
+            assertEquals("disk on fire", e.getCause().getMessage());
+        }
+    }
+
+    private String serialize(List<Event> events)
+    {
+        StringWriter log = new StringWriter();
+        JacksonSerializer serializer = new JacksonSerializer(new PrintWriter(log));
+        for (Event event : events) {
+            serializer.onEvent(event);
+        }
+        serializer.flush();
+        return log.toString();
+    }
+
+    private List<Event> read(Iterable<Event> events)
+    {
+        List<Event> read = new ArrayList<Event>();
+        for (Event event : events) {
+            read.add(event);
+        }
+        return read;
+    }
+}
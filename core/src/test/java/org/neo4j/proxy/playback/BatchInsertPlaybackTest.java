@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.parameter.types.StandInRelationshipType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class BatchInsertPlaybackTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    File directory = clean("target/batchInsertPlayback");
+    List<Event> events = new ArrayList<Event>();
+
+    @Test
+    public void shouldRefuseALogThatChangesTheStoreInOtherWays()
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", new Parameter[0], factory.fromObjectWithSpecificType(null, Transaction.class));
+        add(factory.fromObject(node(3)), "getProperty", new Parameter[]{factory.fromObject("name")}, factory.fromObject("Chris"));
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "shutdown", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "success", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "finish", new Parameter[0], factory.fromObject(null));
+
+        try {
+            new BatchInsertPlayback(directory.getPath()).playback(events);
+            fail("should have refused the log");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Not a write-only log, cannot batch insert GraphDatabaseService.shutdown", e.getMessage());
+        }
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void shouldRefuseALogThatDeletesAnEntityItDidNotCreate()
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", new Parameter[0], factory.fromObjectWithSpecificType(null, Transaction.class));
+        add(factory.fromObject(node(5)), "delete", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "createNode", new Parameter[0], factory.fromObject(node(5)));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "success", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "finish", new Parameter[0], factory.fromObject(null));
+
+        try {
+            new BatchInsertPlayback(directory.getPath()).playback(events);
+            fail("should have refused the log");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Cannot batch insert a log that deletes Node 5, which it did not create", e.getMessage());
+        }
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void shouldRefuseALogThatWritesToAnEntityItDidNotCreate()
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", new Parameter[0], factory.fromObjectWithSpecificType(null, Transaction.class));
+        add(factory.fromObject(node(0)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("reference")}, factory.fromObject(null));
+        add(factory.fromObject(node(5)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "success", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "finish", new Parameter[0], factory.fromObject(null));
+
+        try {
+            new BatchInsertPlayback(directory.getPath()).playback(events);
+            fail("should have refused the log");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Cannot batch insert a log that writes to Node 5, which it did not create", e.getMessage());
+        }
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void shouldRefuseALogThatRelatesANodeItDidNotCreate()
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", new Parameter[0], factory.fromObjectWithSpecificType(null, Transaction.class));
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "createNode", new Parameter[0], factory.fromObject(node(6)));
+        add(factory.fromObject(node(6)), "createRelationshipTo", new Parameter[]{factory.fromObject(node(7)), factory.fromObject(new StandInRelationshipType("KNOWS"))}, factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "success", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "finish", new Parameter[0], factory.fromObject(null));
+
+        try {
+            new BatchInsertPlayback(directory.getPath()).playback(events);
+            fail("should have refused the log");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Cannot batch insert a log that relates Node 7, which it did not create", e.getMessage());
+        }
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void shouldRefuseAStoreDirectoryThatIsNotEmpty() throws IOException
+    {
+        directory.mkdirs();
+        new File(directory, "neostore").createNewFile();
+        try {
+            new BatchInsertPlayback(directory.getPath());
+            fail("should have refused the store directory");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Batch insertion needs an empty store directory: " + directory.getPath(), e.getMessage());
+        }
+    }
+
+    private static File clean(String directory)
+    {
+        try {
+            FileUtils.deleteDirectory(new File(directory));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new File(directory);
+    }
+
+    private void add(Parameter target, String methodName, Parameter[] parameters, Parameter result)
+    {
+        events.add(new Event(target, methodName, parameters, result, 1, events.size()));
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CallSiteCacheTest {
+
+    CallSiteCache callSites = new CallSiteCache();
+
+    @Test
+    public void shouldResolveMethodsTakingPrimitiveParameters()
+    {
+        Method method = callSites.resolve(GraphDatabaseService.class, "getNodeById", new Object[]{12L});
+        assertEquals(long.class, method.getParameterTypes()[0]);
+    }
+
+    @Test
+    public void shouldResolveMethodsCalledWithNullArguments()
+    {
+        Method method = callSites.resolve(Node.class, "setProperty", new Object[]{"name", null});
+        assertEquals("setProperty", method.getName());
+    }
+
+    @Test
+    public void shouldResolveEachCallSiteOnlyOnce()
+    {
+        Method first = callSites.resolve(Node.class, "getProperty", new Object[]{"name"});
+        Method second = callSites.resolve(Node.class, "getProperty", new Object[]{"age"});
+        assertSame(first, second);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.proxy.eventmodel.FakeNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EntityCacheTest {
+
+    @Test
+    public void shouldFindCapturedEntitiesWithoutLoadingThem()
+    {
+        LoadCountingCache cache = new LoadCountingCache(16);
+        Node node = new FakeNode(3);
+        cache.put(node);
+
+        assertSame(node, cache.get(3));
+        assertEquals(0, cache.loaded.size());
+    }
+
+    @Test
+    public void shouldReloadEvictedEntitiesByTheirPlaybackId()
+    {
+        LoadCountingCache cache = new LoadCountingCache(4);
+        for (long recordedId = 0; recordedId < 1000; recordedId++) {
+            cache.put(recordedId, new FakeNode(recordedId + 5000));
+        }
+
+        for (long recordedId = 0; recordedId < 1000; recordedId++) {
+            assertEquals(recordedId + 5000, cache.get(recordedId).getId());
+        }
+        assertTrue(cache.loaded.size() >= 1000 - 4);
+        assertEquals(Long.valueOf(5000), cache.loaded.get(0));
+    }
+
+    @Test
+    public void shouldLoadEntitiesThatWereNeverCapturedByTheirOwnId()
+    {
+        LoadCountingCache cache = new LoadCountingCache(4);
+        assertEquals(42, cache.get(42).getId());
+        assertEquals(1, cache.loaded.size());
+    }
+
+    private static class LoadCountingCache extends EntityCache<Node> {
+        final List<Long> loaded = new ArrayList<Long>();
+
+        LoadCountingCache(int capacity) {
+            super(new HashedIdMapping(), capacity);
+        }
+
+        protected Node load(long playbackId) {
+            loaded.add(playbackId);
+            return new FakeNode(playbackId);
+        }
+
+        protected long idOf(Node node) {
+            return node.getId();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdMappingTest {
+
+    @Test
+    public void pagedMappingShouldTranslateIdsAcrossPages()
+    {
+        assertTranslatesIds(new PagedIdMapping(4));
+    }
+
+    @Test
+    public void hashedMappingShouldTranslateIds()
+    {
+        assertTranslatesIds(new HashedIdMapping());
+    }
+
+    @Test
+    public void mappedMappingShouldTranslateIdsAcrossPages() throws IOException
+    {
+        File file = File.createTempFile("ids", ".map");
+        file.deleteOnExit();
+        MappedIdMapping mapping = new MappedIdMapping(file, 4);
+        try {
+            assertTranslatesIds(mapping);
+        } finally {
+            mapping.close();
+        }
+        assertEquals(8 * 16 * 7, file.length());
+    }
+
+    @Test
+    public void mappedMappingShouldForgetTheIdsOfAnEarlierPlayback() throws IOException
+    {
+        File file = File.createTempFile("ids", ".map");
+        file.deleteOnExit();
+        MappedIdMapping earlier = new MappedIdMapping(file, 4);
+        earlier.put(3, 30);
+        earlier.put(40, 400);
+        earlier.close();
+
+        MappedIdMapping mapping = new MappedIdMapping(file, 4);
+        try {
+            assertEquals(IdMapping.NO_MAPPING, mapping.get(3));
+            assertEquals(IdMapping.NO_MAPPING, mapping.get(40));
+            assertTranslatesIds(mapping);
+        } finally {
+            mapping.close();
+        }
+    }
+
+    @Test
+    public void snapshotShouldHoldOnlyTheMappingsOfTheGivenIds() throws IOException
+    {
+        IdMapping nodes = new PagedIdMapping();
+        IdMapping relationships = new PagedIdMapping();
+        nodes.put(1, 10);
+        nodes.put(2, 20);
+        nodes.put(3, 30);
+        relationships.put(5, 50);
+        File file = File.createTempFile("snapshot", ".ids");
+        file.deleteOnExit();
+
+        IdMappingSnapshot.write(file, new long[]{1, 3, 4}, new long[]{5}, nodes, relationships);
+        IdMapping restoredNodes = new HashedIdMapping();
+        IdMapping restoredRelationships = new HashedIdMapping();
+        IdMappingSnapshot.read(file, restoredNodes, restoredRelationships);
+
+        assertEquals(10, restoredNodes.get(1));
+        assertEquals(IdMapping.NO_MAPPING, restoredNodes.get(2));
+        assertEquals(30, restoredNodes.get(3));
+        assertEquals(IdMapping.NO_MAPPING, restoredNodes.get(4));
+        assertEquals(50, restoredRelationships.get(5));
+    }
+
+    private void assertTranslatesIds(IdMapping mapping)
+    {
+        assertEquals(IdMapping.NO_MAPPING, mapping.get(3));
+        mapping.put(0, 100);
+        mapping.put(3, 0);
+        mapping.put(100, 7);
+        mapping.put(3, 5);
+
+        assertEquals(100, mapping.get(0));
+        assertEquals(5, mapping.get(3));
+        assertEquals(7, mapping.get(100));
+        assertEquals(IdMapping.NO_MAPPING, mapping.get(4));
+        assertEquals(IdMapping.NO_MAPPING, mapping.get(1000000));
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IntObjectMapTest {
+
+    @Test
+    public void shouldFindEveryEntryAfterOthersAreRemoved()
+    {
+        IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+        for (int key = 0; key < 10000; key++) {
+            map.put(key, key);
+        }
+        for (int key = 0; key < 10000; key += 3) {
+            map.remove(key);
+        }
+        for (int key = 0; key < 10000; key++) {
+            if (key % 3 == 0) {
+                assertNull(map.get(key));
+            } else {
+                assertEquals(Integer.valueOf(key), map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void shouldStayCompactWhileIdsKeepIncreasing()
+    {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int key = 0; key < 1000000; key++) {
+            map.put(key, "iterator");
+            if (key >= 10) {
+                map.remove(key - 10);
+            }
+        }
+        assertEquals(10, map.size());
+        assertEquals("iterator", map.get(999999));
+        assertNull(map.get(999989));
+    }
+
+    @Test
+    public void shouldEmptyOnClear()
+    {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        map.put(1, "one");
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(1));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class LatencyReportTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void shouldReportLatencyPerMethodAndAgainstTheRecording() throws Exception
+    {
+        LatencyReport report = new LatencyReport(new PlaybackDriver.HaltOnException(), 2, 1000000000L);
+
+        for (int i = 0; i < 5; i++) {
+            play(report, getId(i, 1000), 0);
+        }
+        Event slow = getId(5, 1000);
+        play(report, slow, 20);
+
+        assertEquals(6, report.getPlaybackLatency("Node", "getId").getCount());
+        List<Event> slowest = report.getSlowestEvents();
+        assertEquals(2, slowest.size());
+        assertEquals(slow.getSequenceNumber(), slowest.get(0).getSequenceNumber());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        report.writeReport(new PrintStream(output, true));
+        String text = output.toString();
+        assertTrue(text, text.startsWith("Played back 6 events"));
+        assertTrue(text, text.contains("Recorded against played back latency"));
+        assertTrue(text, text.contains("Node.getId"));
+    }
+
+    @Test
+    public void shouldCountFailuresAndPassThemOn()
+    {
+        final int[] seen = new int[1];
+        LatencyReport report = new LatencyReport(new PlaybackDriver.HaltOnException() {
+            @Override
+            public void playbackException(Event event, Exception e) {
+                seen[0]++;
+            }
+        });
+        report.playbackException(getId(1, Event.NO_DURATION), new RuntimeException());
+        assertEquals(1, report.getFailures());
+        assertEquals(1, seen[0]);
+    }
+
+    private void play(LatencyReport report, Event event, long millis) throws InterruptedException
+    {
+        report.beforePlayback(event);
+        Thread.sleep(millis);
+        report.afterPlayback(event, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private Event getId(long id, long duration)
+    {
+        return new Event(factory.fromObject(node(id)), "getId", new Parameter[0], factory.fromObject(id), 1, id, 0, duration);
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class LogCompactorTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    File directory = clean("target/logCompactor");
+    List<Event> events = new ArrayList<Event>();
+    List<String> compacted = new ArrayList<String>();
+
+    @Test
+    public void shouldKeepOnlyWhatOutlivesTheLog()
+    {
+        beginTx();
+        createNode(5);
+        add(node(5), "setProperty", "name", "a");
+        add(node(0), "setProperty", "count", 1);
+        createNode(6);
+        add(factory.fromObject(node(5)), "createRelationshipTo", new Parameter[]{factory.fromObject(node(6)), knows()}, relationship(9));
+        add(relationship(9), "setProperty", new Parameter[]{factory.fromObject("since"), factory.fromObject(2001)}, factory.fromObject(null));
+        commit();
+
+        beginTx();
+        add(factory.fromObject(node(5)), "getProperty", new Parameter[]{factory.fromObject("name")}, factory.fromObject("a"));
+        add(node(5), "setProperty", "name", "b");
+        add(node(0), "setProperty", "count", 2);
+        add(factory.fromObject(node(0)), "removeProperty", new Parameter[]{factory.fromObject("old")}, factory.fromObject(null));
+        createNode(7);
+        add(factory.fromObject(node(7)), "delete", new Parameter[0], factory.fromObject(null));
+        add(node(5), "setProperty", "tmp", "x");
+        add(factory.fromObject(node(5)), "removeProperty", new Parameter[]{factory.fromObject("tmp")}, factory.fromObject("x"));
+        commit();
+
+        beginTx();
+        add(node(5), "setProperty", "name", "c");
+        add(transaction(), "failure", new Parameter[0], factory.fromObject(null));
+        add(transaction(), "finish", new Parameter[0], factory.fromObject(null));
+
+        beginTx();
+        add(relationship(3), "delete", new Parameter[0], factory.fromObject(null));
+        add(factory.fromObject(node(2)), "delete", new Parameter[0], factory.fromObject(null));
+        createNode(2);
+        commit();
+
+        LogCompactor compactor = new LogCompactor(directory, 2, 100, 2);
+        compactor.compact(events, collector());
+
+        assertEquals(Arrays.asList(
+                "beginTx",
+                "delete Relationship 3",
+                "setProperty Node 0 count=2",
+                "removeProperty Node 0 old",
+                "delete Node 2",
+                "createNode Node 2",
+                "createNode Node 5",
+                "setProperty Node 5 name=b",
+                "createNode Node 6",
+                "createRelationshipTo Relationship 9",
+                "setProperty Relationship 9 since=2001",
+                "success",
+                "finish"), compacted);
+        assertTrue(compactor.getRuns() > 4);
+        assertTrue(compactor.getIntermediateRuns() > 2);
+        assertEquals(events.size(), compactor.getEventsRead());
+        assertEquals(compacted.size(), compactor.getEventsWritten());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void shouldWrapWritesInTransactionsOfTheGivenSize()
+    {
+        beginTx();
+        createNode(1);
+        createNode(2);
+        createNode(3);
+        commit();
+
+        new LogCompactor(directory, 100, 2, LogCompactor.DEFAULT_MAX_FAN_IN).compact(events, collector());
+
+        assertEquals(Arrays.asList(
+                "beginTx", "createNode Node 1", "createNode Node 2", "success", "finish",
+                "beginTx", "createNode Node 3", "success", "finish"), compacted);
+    }
+
+    @Test
+    public void shouldRefuseALogThatChangesTheStoreInOtherWays()
+    {
+        beginTx();
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "shutdown", new Parameter[0], factory.fromObject(null));
+        commit();
+
+        try {
+            new LogCompactor(directory).compact(events, collector());
+            fail("should have refused the log");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Not a write-only log, cannot compact GraphDatabaseService.shutdown", e.getMessage());
+        }
+        assertTrue(compacted.isEmpty());
+    }
+
+    private static File clean(String directory)
+    {
+        try {
+            FileUtils.deleteDirectory(new File(directory));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new File(directory);
+    }
+
+    private Event.Listener collector()
+    {
+        return new Event.Listener() {
+            public void onEvent(Event event) {
+                compacted.add(describe(event));
+            }
+        };
+    }
+
+    private static String describe(Event event)
+    {
+        String method = event.getMethodName();
+        Parameter entity = method.startsWith("create") ? event.getResult() : event.getTarget();
+        if (method.equals("beginTx") || entity.getType().getWrappedType() == Transaction.class) {
+            return method;
+        }
+        String description = method + " " + entity.getType().getTypeName() + " " + entity.getValueForSerialization();
+        Parameter[] parameters = event.getParameters();
+        if ("setProperty".equals(method)) {
+            description += " " + parameters[0].getValueForSerialization() + "=" + parameters[1].getValueForSerialization();
+        } else if ("removeProperty".equals(method)) {
+            description += " " + parameters[0].getValueForSerialization();
+        }
+        return description;
+    }
+
+    private Parameter relationship(long id)
+    {
+        return factory.forTypeName("Relationship").fromSerializedValue("Relationship", id);
+    }
+
+    private Parameter knows()
+    {
+        return factory.forTypeName("RelationshipType").fromSerializedValue("RelationshipType", "KNOWS");
+    }
+
+    private Parameter transaction()
+    {
+        return factory.fromObjectWithSpecificType(null, Transaction.class);
+    }
+
+    private void beginTx()
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", new Parameter[0], transaction());
+    }
+
+    private void commit()
+    {
+        add(transaction(), "success", new Parameter[0], factory.fromObject(null));
+        add(transaction(), "finish", new Parameter[0], factory.fromObject(null));
+    }
+
+    private void createNode(long id)
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "createNode", new Parameter[0], factory.fromObject(node(id)));
+    }
+
+    private void add(Object node, String methodName, String key, Object value)
+    {
+        add(factory.fromObject(node), methodName, new Parameter[]{factory.fromObject(key), factory.fromObject(value)}, factory.fromObject(null));
+    }
+
+    private void add(Parameter target, String methodName, Parameter[] parameters, Parameter result)
+    {
+        events.add(new Event(target, methodName, parameters, result, 1, events.size()));
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LongLongMapTest {
+
+    @Test
+    public void shouldKeepEveryEntryAsItGrows()
+    {
+        LongLongMap map = new LongLongMap(4);
+        for (long key = 0; key < 100000; key++) {
+            map.put(key * 31, key + 7);
+        }
+        assertEquals(100000, map.size());
+        for (long key = 0; key < 100000; key++) {
+            assertEquals(key + 7, map.get(key * 31));
+        }
+        assertEquals(LongLongMap.NO_VALUE, map.get(5));
+    }
+
+    @Test
+    public void shouldReplaceTheValueOfAnExistingKey()
+    {
+        LongLongMap map = new LongLongMap(4);
+        map.put(12, 1);
+        map.put(12, 2);
+        assertEquals(1, map.size());
+        assertEquals(2, map.get(12));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeKeys()
+    {
+        new LongLongMap(4).put(-1, 0);
+    }
+
+    @Test
+    public void shouldRejectNegativeKeysOnLookupRatherThanFindAFreeSlot()
+    {
+        LongLongMap map = new LongLongMap(4);
+        map.put(3, 4);
+        try {
+            map.get(-1);
+            fail("should not have looked up a negative key");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PacingTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void shouldScaleRecordedIntervalsBySpeed()
+    {
+        Pacing pacing = new Pacing(2);
+        long start = pacing.dueTime(1000000000L);
+        assertEquals(start + 500000000L, pacing.dueTime(2000000000L));
+        assertEquals(start + 5000000000L, pacing.dueTime(11000000000L));
+    }
+
+    @Test
+    public void shouldWaitForTheRecordedInterval()
+    {
+        Pacing pacing = new Pacing(1);
+        long before = System.nanoTime();
+        pacing.await(event(0));
+        pacing.await(event(50000000L));
+        assertTrue(System.nanoTime() - before >= 50000000L);
+    }
+
+    @Test
+    public void shouldNotPaceWhenPlayingBackAsFastAsPossible()
+    {
+        assertFalse(new Pacing(Pacing.AS_FAST_AS_POSSIBLE).isPaced());
+        assertFalse(new Pacing(Double.POSITIVE_INFINITY).isPaced());
+        assertTrue(new Pacing(0.5).isPaced());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeSpeed()
+    {
+        new Pacing(-1);
+    }
+
+    private Event event(long timestamp)
+    {
+        return new Event(factory.fromObject("target"), "toString", new Parameter[0], factory.fromObject("target"), 1, 0, timestamp);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Lock;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PlaybackStateTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    PlaybackState state = new PlaybackState(null);
+
+    @Test
+    public void shouldReleaseAnIteratorOnceItIsExhausted()
+    {
+        Iterator<Object> iterator = Collections.emptyList().iterator();
+        Parameter recorded = factory.fromObjectWithSpecificType(iterator, Iterator.class);
+        int surrogate = (Integer) recorded.getValueForSerialization();
+        state.capture(recorded, iterator);
+        assertSame(iterator, state.findBySurrogateIdentifier(Iterator.class, surrogate));
+
+        state.release(new Event(recorded, "hasNext", new Parameter[0], factory.fromObject(true)));
+        assertSame(iterator, state.findBySurrogateIdentifier(Iterator.class, surrogate));
+
+        state.release(new Event(recorded, "hasNext", new Parameter[0], factory.fromObject(false)));
+        assertNull(state.findBySurrogateIdentifier(Iterator.class, surrogate));
+    }
+
+    @Test
+    public void shouldReleaseIterablesAndIteratorsWhenTheOutermostTransactionFinishes()
+    {
+        Parameter outer = captureTransaction();
+        Parameter inner = captureTransaction();
+        for (int i = 0; i < 3; i++) {
+            Iterable<Object> iterable = new ArrayList<Object>();
+            state.capture(factory.fromObjectWithSpecificType(iterable, Iterable.class), iterable);
+        }
+        assertEquals(3, state.countSurrogateIdentified(Iterable.class));
+
+        state.release(new Event(inner, "finish", new Parameter[0], factory.fromObject(null)));
+        assertEquals(3, state.countSurrogateIdentified(Iterable.class));
+
+        state.release(new Event(outer, "finish", new Parameter[0], factory.fromObject(null)));
+        assertEquals(0, state.countSurrogateIdentified(Iterable.class));
+    }
+
+    @Test
+    public void shouldOnlyReleaseTheIterablesOfTheRecordedThreadWhoseOutermostTransactionFinishes()
+    {
+        Parameter first = captureTransaction(1);
+        captureIterable(1);
+        Parameter second = captureTransaction(2);
+        captureIterable(2);
+        captureIterable(2);
+        assertEquals(3, state.countSurrogateIdentified(Iterable.class));
+
+        state.release(new Event(first, "finish", new Parameter[0], factory.fromObject(null), 1, 0));
+        assertEquals(2, state.countSurrogateIdentified(Iterable.class));
+
+        state.release(new Event(second, "finish", new Parameter[0], factory.fromObject(null), 2, 0));
+        assertEquals(0, state.countSurrogateIdentified(Iterable.class));
+    }
+
+    private void captureIterable(long threadId)
+    {
+        Iterable<Object> iterable = new ArrayList<Object>();
+        Parameter recorded = factory.fromObjectWithSpecificType(iterable, Iterable.class);
+        state.capture(new Event(factory.fromObject(null), "getAllNodes", new Parameter[0], recorded, threadId, 0), iterable);
+    }
+
+    private Parameter captureTransaction(long threadId)
+    {
+        Transaction transaction = newTransaction();
+        Parameter recorded = factory.fromObject(transaction);
+        state.capture(new Event(factory.fromObject(null), "beginTx", new Parameter[0], recorded, threadId, 0), transaction);
+        return recorded;
+    }
+
+    private Parameter captureTransaction()
+    {
+        Transaction transaction = newTransaction();
+        Parameter recorded = factory.fromObject(transaction);
+        state.capture(recorded, transaction);
+        return recorded;
+    }
+
+    private Transaction newTransaction()
+    {
+        return new Transaction() {
+            public void failure() {
+            }
+
+            public void success() {
+            }
+
+            public void finish() {
+            }
+
+            public Lock acquireWriteLock(PropertyContainer entity) {
+                return null;
+            }
+
+            public Lock acquireReadLock(PropertyContainer entity) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.playback;
+
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+import org.neo4j.proxy.eventmodel.parameter.types.SurrogateIdentifierParameterType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class WritesOnlyTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    List<Event> events = new ArrayList<Event>();
+
+    @Test
+    public void shouldSkipReadsThatNoWriteDependsOn()
+    {
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "beginTx", factory.fromObjectWithSpecificType(null, Transaction.class));
+        add(factory.fromObjectWithSpecificType(null, GraphDatabaseService.class), "getNodeById", factory.fromObject(node(1)), factory.fromObject(1L));
+        add(factory.fromObject(node(1)), "getProperty", factory.fromObject("Alistair"), factory.fromObject("name"));
+        add(factory.fromObject(node(1)), "hasProperty", factory.fromObject(true), factory.fromObject("name"));
+        add(factory.fromObject(node(1)), "setProperty", factory.fromObject(null), factory.fromObject("name"), factory.fromObject("Chris"));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "success", factory.fromObject(null));
+        add(factory.fromObjectWithSpecificType(null, Transaction.class), "finish", factory.fromObject(null));
+
+        WritesOnly writesOnly = WritesOnly.analyse(events);
+
+        assertEquals(7, writesOnly.getEvents());
+        assertEquals(4, writesOnly.getNeededEvents());
+        assertEquals(Arrays.asList("beginTx", "setProperty", "success", "finish"), methods(writesOnly.filter(events)));
+    }
+
+    @Test
+    public void shouldKeepTheIterablesAndIteratorsThatAWriteUses()
+    {
+        add(factory.fromObject(node(1)), "getRelationships", surrogate(Iterable.class, 0));
+        add(surrogate(Iterable.class, 0), "iterator", surrogate(Iterator.class, 0));
+        add(surrogate(Iterator.class, 0), "hasNext", factory.fromObject(true));
+        add(surrogate(Iterator.class, 0), "next", factory.fromObject(node(2)));
+        add(surrogate(Iterator.class, 0), "remove", factory.fromObject(null));
+        add(surrogate(Iterator.class, 0), "hasNext", factory.fromObject(false));
+        add(factory.fromObject(node(1)), "getRelationships", surrogate(Iterable.class, 1));
+        add(surrogate(Iterable.class, 1), "iterator", surrogate(Iterator.class, 1));
+        add(surrogate(Iterator.class, 1), "next", factory.fromObject(node(3)));
+        add(factory.fromObject(node(3)), "delete", factory.fromObject(null));
+
+        WritesOnly writesOnly = WritesOnly.analyse(events);
+
+        assertEquals(Arrays.asList("getRelationships", "iterator", "hasNext", "next", "remove", "delete"), methods(writesOnly.filter(events)));
+        assertEquals(true, writesOnly.isNeeded(4));
+        assertEquals(false, writesOnly.isNeeded(5));
+        assertEquals(false, writesOnly.isNeeded(8));
+    }
+
+    @Test
+    public void shouldKeepAReadInAnEarlierSegmentThatAWriteInALaterOneDependsOn()
+    {
+        add(factory.fromObject(node(1)), "getRelationships", surrogate(Iterable.class, 0));
+        add(factory.fromObject(node(1)), "getProperty", factory.fromObject("Alistair"), factory.fromObject("name"));
+        List<Event> first = new ArrayList<Event>(events);
+        events.clear();
+        add(surrogate(Iterable.class, 0), "iterator", surrogate(Iterator.class, 0));
+        add(surrogate(Iterator.class, 0), "next", factory.fromObject(node(2)));
+        add(surrogate(Iterator.class, 0), "remove", factory.fromObject(null));
+        List<Event> second = new ArrayList<Event>(events);
+
+        WritesOnly writesOnly = WritesOnly.analyse(Arrays.asList(first, second));
+
+        assertEquals(5, writesOnly.getEvents());
+        assertEquals(Arrays.asList("getRelationships"), methods(writesOnly.filter(0, first)));
+        assertEquals(Arrays.asList("iterator", "next", "remove"), methods(writesOnly.filter(1, second)));
+    }
+
+    private Parameter surrogate(Class type, int identifier)
+    {
+        return new Parameter(new SurrogateIdentifierParameterType(type), identifier);
+    }
+
+    private void add(Parameter target, String methodName, Parameter result, Parameter... parameters)
+    {
+        events.add(new Event(target, methodName, parameters, result, 1, events.size()));
+    }
+
+    private List<String> methods(Iterable<Event> events)
+    {
+        List<String> methods = new ArrayList<String>();
+        for (Event event : events) {
+            methods.add(event.getMethodName());
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class AsynchronousListenerTest {
+
+    ParameterFactory factory = new ParameterFactory();
+
+    @Test
+    public void shouldDeliverAllEventsInOrderAfterClose()
+    {
+        List<Event> delivered = Collections.synchronizedList(new ArrayList<Event>());
+        AsynchronousListener listener = new AsynchronousListener(new Accumulator(delivered), 16, AsynchronousListener.BackPressure.BLOCK);
+
+        List<Event> sent = new ArrayList<Event>();
+        for (int i = 0; i < 1000; i++) {
+            Event event = event(i);
+            sent.add(event);
+            listener.onEvent(event);
+        }
+        listener.close();
+
+        assertEquals(sent, delivered);
+        assertEquals(0, listener.getDroppedEvents());
+    }
+
+    @Test
+    public void shouldDeliverEveryAcceptedEventWhenClosedWhileThreadsAreRecording() throws Exception
+    {
+        List<Event> delivered = Collections.synchronizedList(new ArrayList<Event>());
+        final AsynchronousListener listener = new AsynchronousListener(new Accumulator(delivered), 4, AsynchronousListener.BackPressure.BLOCK);
+        final AtomicLong accepted = new AtomicLong();
+        final CountDownLatch recording = new CountDownLatch(4);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    recording.countDown();
+                    try {
+                        for (long i = 0; ; i++) {
+                            listener.onEvent(event(i));
+                            accepted.incrementAndGet();
+                        }
+                    } catch (IllegalStateException closed) {
+                        // the listener was closed
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        recording.await();
+        Thread.sleep(20);
+        listener.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(accepted.get() > 0);
+        assertEquals(accepted.get(), delivered.size());
+        assertEquals(0, listener.getBufferedEvents());
+    }
+
+    @Test
+    public void shouldDropAndCountEventsWhenBufferIsFull() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockedListener blocked = new BlockedListener(release);
+        AsynchronousListener listener = new AsynchronousListener(blocked, 2, 1, AsynchronousListener.BackPressure.DROP, null);
+
+        listener.onEvent(event(0));
+        blocked.started.await();
+        for (int i = 1; i <= 10; i++) {
+            listener.onEvent(event(i));
+        }
+        release.countDown();
+        listener.close();
+
+        assertEquals(8, listener.getDroppedEvents());
+        assertEquals(3, blocked.delivered.size());
+    }
+
+    @Test
+    public void shouldSpillEventsWhenBufferIsFull() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockedListener blocked = new BlockedListener(release);
+        List<Event> spilled = new ArrayList<Event>();
+        AsynchronousListener listener = new AsynchronousListener(blocked, 2, 1, AsynchronousListener.BackPressure.SPILL, new Accumulator(spilled));
+
+        listener.onEvent(event(0));
+        blocked.started.await();
+        for (int i = 1; i <= 10; i++) {
+            listener.onEvent(event(i));
+        }
+        release.countDown();
+        listener.close();
+
+        assertEquals(8, listener.getSpilledEvents());
+        assertEquals(8, spilled.size());
+        assertEquals(3, blocked.delivered.size());
+    }
+
+    @Test
+    public void shouldSpillFromOneRecordingThreadAtATime() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockedListener blocked = new BlockedListener(release);
+        final SingleThreadedListener spill = new SingleThreadedListener();
+        final AsynchronousListener listener = new AsynchronousListener(blocked, 1, 1, AsynchronousListener.BackPressure.SPILL, spill);
+
+        listener.onEvent(event(0));
+        blocked.started.await();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 100; i++) {
+                        listener.onEvent(event(i));
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        release.countDown();
+        listener.close();
+
+        assertFalse(spill.overlapped);
+        assertEquals(listener.getSpilledEvents(), spill.calls.get());
+    }
+
+    private Event event(long nodeId) {
+        return new Event(factory.fromObject(node(nodeId)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null));
+    }
+
+    private static class Accumulator implements Event.Listener {
+        private final List<Event> events;
+
+        Accumulator(List<Event> events) {
+            this.events = events;
+        }
+
+        public void onEvent(Event event) {
+            events.add(event);
+        }
+    }
+
+    private static class SingleThreadedListener implements Event.Listener {
+        final AtomicInteger concurrentCalls = new AtomicInteger();
+        volatile boolean overlapped;
+        final AtomicLong calls = new AtomicLong();
+
+        public void onEvent(Event event) {
+            if (concurrentCalls.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            Thread.yield();
+            calls.incrementAndGet();
+            concurrentCalls.decrementAndGet();
+        }
+    }
+
+    private static class BlockedListener implements Event.Listener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        final List<Event> delivered = Collections.synchronizedList(new ArrayList<Event>());
+
+        BlockedListener(CountDownLatch release) {
+            this.release = release;
+        }
+
+        public void onEvent(Event event) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            delivered.add(event);
+        }
+    }
+}
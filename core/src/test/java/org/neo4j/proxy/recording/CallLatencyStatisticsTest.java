@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.junit.Test;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class CallLatencyStatisticsTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+
+    @Test
+    public void shouldCountDurationsPerTargetTypeAndMethod() throws Exception
+    {
+        List<Event> passedOn = new ArrayList<Event>();
+        CallLatencyStatistics statistics = new CallLatencyStatistics("test", new Collect(passedOn), server);
+
+        statistics.onEvent(getId(1, 100));
+        statistics.onEvent(getId(2, 300));
+        statistics.onEvent(getId(3, Event.NO_DURATION));
+
+        assertEquals(3, passedOn.size());
+        assertEquals(2, statistics.getHistogram("Node", "getId").getCount());
+        assertEquals(300, statistics.getHistogram("Node", "getId").getMax());
+        assertNull(statistics.getHistogram("Node", "delete"));
+
+        ObjectName name = new ObjectName("org.neo4j.proxy:type=CallLatency,recording=\"test\",target=Node,method=getId");
+        assertEquals(2L, server.getAttribute(name, "Count"));
+        assertEquals(300L, server.getAttribute(name, "MaxNanos"));
+
+        statistics.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void shouldPassEventsOnWhenTheirHistogramCannotBeRegistered()
+    {
+        List<Event> passedOn = new ArrayList<Event>();
+        CallLatencyStatistics first = new CallLatencyStatistics("test", new Collect(new ArrayList<Event>()), server);
+        CallLatencyStatistics second = new CallLatencyStatistics("test", new Collect(passedOn), server);
+
+        first.onEvent(getId(1, 100));
+        second.onEvent(getId(2, 300));
+
+        assertEquals(1, passedOn.size());
+        assertEquals(1, second.getHistogram("Node", "getId").getCount());
+        first.unregister();
+        second.unregister();
+    }
+
+    private Event getId(long id, long duration)
+    {
+        return new Event(factory.fromObject(node(id)), "getId", new Parameter[0], factory.fromObject(id), 1, id, 0, duration);
+    }
+
+    private static class Collect implements Event.Listener {
+        private final List<Event> events;
+
+        Collect(List<Event> events) {
+            this.events = events;
+        }
+
+        public void onEvent(Event event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2002-2011 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.proxy.recording;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.proxy.eventmodel.Event;
+import org.neo4j.proxy.eventmodel.parameter.Parameter;
+import org.neo4j.proxy.eventmodel.parameter.ParameterFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.proxy.eventmodel.FakeNode.node;
+
+public class PerThreadBufferingListenerTest {
+
+    ParameterFactory factory = new ParameterFactory();
+    AtomicLong sequence = new AtomicLong();
+
+    @Test
+    public void shouldDeliverEveryEventFromEveryThreadInThreadOrder() throws Exception
+    {
+        final List<Event> delivered = new ArrayList<Event>();
+        final PerThreadBufferingListener listener = new PerThreadBufferingListener(new Event.Listener() {
+            public void onEvent(Event event) {
+                delivered.add(event);
+            }
+        }, 7);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        listener.onEvent(event());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        listener.flush();
+
+        assertEquals(8000, delivered.size());
+        Map<Long, Long> lastSequenceNumberByThread = new HashMap<Long, Long>();
+        for (Event event : delivered) {
+            Long last = lastSequenceNumberByThread.put(event.getThreadId(), event.getSequenceNumber());
+            assertTrue(last == null || last < event.getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void shouldForgetTheBuffersOfThreadsThatHaveDied() throws Exception
+    {
+        final List<Event> delivered = new ArrayList<Event>();
+        final PerThreadBufferingListener listener = new PerThreadBufferingListener(new Event.Listener() {
+            public void onEvent(Event event) {
+                delivered.add(event);
+            }
+        }, 100);
+
+        for (int i = 0; i < 200; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    listener.onEvent(event());
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        assertTrue(listener.getBufferCount() < 200);
+        listener.flush();
+
+        assertEquals(200, delivered.size());
+        assertEquals(0, listener.getBufferCount());
+    }
+
+    @Test
+    public void shouldHandOffWhenTransactionFinishes()
+    {
+        final List<Event> delivered = new ArrayList<Event>();
+        PerThreadBufferingListener listener = new PerThreadBufferingListener(new Event.Listener() {
+            public void onEvent(Event event) {
+                delivered.add(event);
+            }
+        }, 100);
+
+        listener.onEvent(event());
+        assertEquals(0, delivered.size());
+        listener.onEvent(new Event(factory.fromObjectWithSpecificType(null, Transaction.class), "finish", new Parameter[0], factory.fromObject(null)));
+        assertEquals(2, delivered.size());
+    }
+
+    private Event event() {
+        return new Event(factory.fromObject(node(1)), "setProperty", new Parameter[]{factory.fromObject("name"), factory.fromObject("Alistair")}, factory.fromObject(null),
+                Thread.currentThread().getId(), sequence.getAndIncrement());
+    }
+}